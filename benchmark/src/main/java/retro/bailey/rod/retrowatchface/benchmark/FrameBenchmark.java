@@ -0,0 +1,101 @@
+package retro.bailey.rod.retrowatchface.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import retro.bailey.rod.retrowatchface.render.BarGeometry;
+import retro.bailey.rod.retrowatchface.render.FaceRenderer;
+import retro.bailey.rod.retrowatchface.render.RecordingFaceCanvas;
+import retro.bailey.rod.retrowatchface.render.TimeTextFormatter;
+
+/**
+ * Cost of the platform independent part of drawing one full frame of the watch face - formatting
+ * the time, hashing the frame and issuing the bars, time, day name and date to the canvas - with and
+ * without seconds, on round and square screens. Run with the gc profiler (as the jmh task does) to
+ * also get the bytes allocated per frame, which should be zero.
+ * <p/>
+ * The canvas only records what it is asked to draw, so fonts, colors and text sizes make no
+ * difference here. The only part of a theme that changes the work is whether it shows seconds, so
+ * that is all that is varied. The cost of rasterizing each theme's text can only be measured on a
+ * device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /**
+     * Whether the time includes seconds, as it does for themes that show them.
+     */
+    @Param({"false", "true"})
+    public boolean showSeconds;
+
+    /**
+     * Width and height of the surface in px.
+     */
+    @Param({"320"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean round;
+
+    private FaceRenderer renderer;
+
+    private RecordingFaceCanvas canvas;
+
+    private char[] dayName;
+    private int dayNameLength;
+
+    private char[] date;
+    private int dateLength;
+
+    // Advances one second per frame, so every digit of the time gets drawn
+    private int secondOfDay;
+
+    @Setup
+    public void setUp() {
+        TimeTextFormatter formatter = new TimeTextFormatter(Locale.ENGLISH);
+        renderer = new FaceRenderer(formatter);
+
+        // A "flat tyre" chin at the bottom of round screens, as on the Moto 360
+        int bottomInsetPx = round ? size / 10 : 0;
+        canvas = new RecordingFaceCanvas(new BarGeometry(size, size, round, bottomInsetPx));
+
+        // Longest day and date, formatted once a day on the watch
+        dayName = new char[formatter.getMaxDayNameLength()];
+        dayNameLength = formatter.formatDayName(3, dayName);
+        date = new char[formatter.getMaxDateLength()];
+        dateLength = formatter.formatDate(28, 8, date);
+    }
+
+    @Benchmark
+    public int drawFrame() {
+        secondOfDay = (secondOfDay + 1) % SECONDS_PER_DAY;
+
+        canvas.reset();
+        renderer.drawFrame(canvas,
+                secondOfDay / 3600, (secondOfDay / 60) % 60, secondOfDay % 60, showSeconds, true, false,
+                dayName, dayNameLength,
+                date, dateLength);
+
+        // Returned so the JIT can't discard the frame
+        return canvas.getOpCount();
+    }
+}
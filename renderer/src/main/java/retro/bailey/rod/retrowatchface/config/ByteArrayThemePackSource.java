@@ -0,0 +1,23 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.io.EOFException;
+
+/**
+ * {@link ThemePackSource} holding the whole pack in memory.
+ */
+public class ByteArrayThemePackSource implements ThemePackSource {
+
+    private final byte[] pack;
+
+    public ByteArrayThemePackSource(byte[] pack) {
+        this.pack = pack;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer) throws EOFException {
+        if ((position < 0) || (position + buffer.length > pack.length)) {
+            throw new EOFException("Read of " + buffer.length + " bytes at " + position + " is past end of pack");
+        }
+        System.arraycopy(pack, (int) position, buffer, 0, buffer.length);
+    }
+}
@@ -0,0 +1,93 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link ThemeCatalog} read from a theme pack, which holds only the pack's index - the name,
+ * record offset and content hash of each theme - until a theme is asked for. Each theme is then
+ * read from the pack on first use and kept, so memory use and time spent reading grow with the
+ * themes used rather than the size of the catalog.
+ * <p/>
+ * Made by {@link ThemePackReader#readCatalog}. Safe to use from any thread.
+ */
+public class LazyThemeCatalog implements ThemeCatalog {
+
+    private final String[] fonts;
+
+    private final String[] names;
+
+    private final int[] offsets;
+
+    // CRC32 of each theme's record, written by the pack compiler
+    private final int[] contentHashes;
+
+    private final Map<String, Integer> indexByName;
+
+    private final ThemePackSource source;
+
+    // Themes read so far, or null where not yet read. Guarded by this.
+    private final PackedTheme[] themes;
+
+    private int loadedCount;
+
+    LazyThemeCatalog(String[] fonts, String[] names, int[] offsets, int[] contentHashes,
+                     Map<String, Integer> indexByName, ThemePackSource source) {
+        this.fonts = fonts;
+        this.names = names;
+        this.offsets = offsets;
+        this.contentHashes = contentHashes;
+        this.indexByName = indexByName;
+        this.source = source;
+        this.themes = new PackedTheme[names.length];
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public String getName(int index) {
+        return names[index];
+    }
+
+    @Override
+    public int getContentHash(int index) {
+        return contentHashes[index];
+    }
+
+    /**
+     * @throws IllegalStateException if the theme can't be read, which only happens if the pack is
+     *                               broken, as it is validated when compiled
+     */
+    @Override
+    public synchronized PackedTheme get(int index) {
+        PackedTheme theme = themes[index];
+        if (theme == null) {
+            byte[] record = new byte[ThemePackReader.RECORD_LENGTH];
+            try {
+                source.read(offsets[index], record);
+                theme = ThemePackReader.readTheme(names[index], record, fonts);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read theme " + names[index], e);
+            }
+            themes[index] = theme;
+            loadedCount++;
+        }
+        return theme;
+    }
+
+    @Override
+    public int indexOf(String name) {
+        Integer index = (name == null) ? null : indexByName.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * @return Number of themes read from the pack so far
+     */
+    public synchronized int getLoadedCount() {
+        return loadedCount;
+    }
+}
@@ -0,0 +1,54 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ThemeCatalog} of themes that are already loaded.
+ */
+public class ListThemeCatalog implements ThemeCatalog {
+
+    private final List<PackedTheme> themes;
+
+    private final Map<String, Integer> indexByName;
+
+    /**
+     * @param themes Themes, with unique names. Copied.
+     */
+    public ListThemeCatalog(List<PackedTheme> themes) {
+        this.themes = new ArrayList<PackedTheme>(themes);
+        this.indexByName = new HashMap<String, Integer>(themes.size() * 2);
+
+        for (int i = 0; i < themes.size(); i++) {
+            indexByName.put(themes.get(i).name, i);
+        }
+    }
+
+    @Override
+    public int size() {
+        return themes.size();
+    }
+
+    @Override
+    public String getName(int index) {
+        return themes.get(index).name;
+    }
+
+    @Override
+    public int getContentHash(int index) {
+        return themes.get(index).contentHash();
+    }
+
+    @Override
+    public PackedTheme get(int index) {
+        return themes.get(index);
+    }
+
+    @Override
+    public int indexOf(String name) {
+        Integer index = (name == null) ? null : indexByName.get(name);
+        return (index == null) ? -1 : index;
+    }
+}
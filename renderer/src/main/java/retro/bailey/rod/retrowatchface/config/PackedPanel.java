@@ -0,0 +1,43 @@
+package retro.bailey.rod.retrowatchface.config;
+
+/**
+ * One panel (day, time or date bar) of a {@link PackedTheme}. All values are already parsed, so
+ * they can be applied to a Paint directly.
+ */
+public class PackedPanel {
+    public final int backgroundColor;
+    public final int textColor;
+    // Asset path of the font eg. "fonts/Ultra.ttf". Themes sharing a font share this instance.
+    public final String textFont;
+    // Text size in sp
+    public final float textSize;
+
+    public PackedPanel(int backgroundColor, int textColor, String textFont, float textSize) {
+        this.backgroundColor = backgroundColor;
+        this.textColor = textColor;
+        this.textFont = textFont;
+        this.textSize = textSize;
+    }
+
+    /**
+     * @return Hash of the panel's values, the same from one run to the next
+     */
+    public int contentHash() {
+        int hash = backgroundColor;
+        hash = (31 * hash) + textColor;
+        hash = (31 * hash) + ((textFont == null) ? 0 : textFont.hashCode());
+        return (31 * hash) + Float.floatToIntBits(textSize);
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer buf = new StringBuffer(super.toString() + ":");
+
+        buf.append("backgroundColor=" + Integer.toHexString(backgroundColor));
+        buf.append(",textColor=" + Integer.toHexString(textColor));
+        buf.append(",textFont=" + textFont);
+        buf.append(",textSize=" + textSize);
+
+        return buf.toString();
+    }
+}
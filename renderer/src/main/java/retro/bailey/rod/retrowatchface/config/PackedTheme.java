@@ -0,0 +1,57 @@
+package retro.bailey.rod.retrowatchface.config;
+
+/**
+ * A theme as loaded from the binary theme pack (assets/themes.bin) compiled from themes.json at
+ * build time. Colors are packed ARGB ints and text sizes are floats, so nothing needs parsing when
+ * the theme is applied.
+ */
+public class PackedTheme {
+    public final String name;
+    public final int backgroundColor;
+    public final PackedPanel day;
+    public final PackedPanel time;
+    public final PackedPanel date;
+    public final boolean showSeconds;
+
+    // Worked out once, as caches look it up often
+    private final int contentHash;
+
+    public PackedTheme(String name, int backgroundColor, PackedPanel day, PackedPanel time, PackedPanel date,
+                       boolean showSeconds) {
+        this.name = name;
+        this.backgroundColor = backgroundColor;
+        this.day = day;
+        this.time = time;
+        this.date = date;
+        this.showSeconds = showSeconds;
+
+        int hash = name.hashCode();
+        hash = (31 * hash) + backgroundColor;
+        hash = (31 * hash) + day.contentHash();
+        hash = (31 * hash) + time.contentHash();
+        hash = (31 * hash) + date.contentHash();
+        this.contentHash = (31 * hash) + (showSeconds ? 1 : 0);
+    }
+
+    /**
+     * @return Hash of everything that affects how the theme looks, which is the same from one run
+     * to the next, so can key caches kept on disk
+     */
+    public int contentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer buf = new StringBuffer(super.toString() + ":");
+
+        buf.append("name=" + name);
+        buf.append(",backgroundColor=" + Integer.toHexString(backgroundColor));
+        buf.append(",day=" + day);
+        buf.append(",time=" + time);
+        buf.append(",date=" + date);
+        buf.append(",showSeconds=" + showSeconds);
+
+        return buf.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package retro.bailey.rod.retrowatchface.config;
+
+/**
+ * An ordered collection of themes, as shown in the theme selection list. The name and content hash
+ * of every theme are always at hand, but a theme's {@link PackedTheme} may only be made when it is
+ * first asked for, so that a large catalog costs little until its themes are used.
+ */
+public interface ThemeCatalog {
+
+    /**
+     * @return Number of themes
+     */
+    int size();
+
+    /**
+     * @return Name of the theme at the given position, without loading the theme
+     */
+    String getName(int index);
+
+    /**
+     * @return Hash of the content of the theme at the given position, without loading the theme.
+     * Changes whenever the theme does, and is the same from one run to the next.
+     */
+    int getContentHash(int index);
+
+    /**
+     * @return Theme at the given position, loading it if need be
+     */
+    PackedTheme get(int index);
+
+    /**
+     * @return Position of the named theme, or -1 if there is no such theme
+     */
+    int indexOf(String name);
+}
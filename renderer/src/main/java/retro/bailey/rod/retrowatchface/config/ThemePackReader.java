@@ -0,0 +1,143 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the binary theme pack written by the compileThemePack Gradle task (see wear/themes.gradle
+ * for the format). The pack is read field by field with no reflection or string parsing.
+ * <p/>
+ * The pack starts with an index of theme names and where each theme's record is, so
+ * {@link #readCatalog} can read just the index and leave each theme to be read when it is first
+ * used.
+ */
+public class ThemePackReader {
+
+    /**
+     * Name of the theme pack in the assets folder.
+     */
+    public static final String ASSET_NAME = "themes.bin";
+
+    private static final int MAGIC = 0x5254484D; // 'RTHM'
+
+    private static final int VERSION = 2;
+
+    private static final int FLAG_SHOW_SECONDS = 0x01;
+
+    // Background color, text color, font index, text size
+    private static final int PANEL_LENGTH = 4 + 4 + 2 + 4;
+
+    /**
+     * Length of each theme's record: background color, flags and three panels.
+     */
+    static final int RECORD_LENGTH = 4 + 1 + (3 * PANEL_LENGTH);
+
+    /**
+     * Reads all the themes from the given stream, which is left open.
+     *
+     * @return Themes in the order they appear in themes.json
+     * @throws IOException if the stream can't be read or isn't a theme pack this reader understands
+     */
+    public static List<PackedTheme> read(InputStream inputStream) throws IOException {
+        byte[] pack = readFully(inputStream);
+        LazyThemeCatalog catalog = readCatalog(new ByteArrayInputStream(pack), new ByteArrayThemePackSource(pack));
+
+        List<PackedTheme> themes = new ArrayList<PackedTheme>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            themes.add(catalog.get(i));
+        }
+        return themes;
+    }
+
+    /**
+     * Reads the index at the start of a theme pack, and nothing more.
+     *
+     * @param inputStream The pack, from the start. Left open, and not read past the index, so it is
+     *                    read unbuffered; wrap it in a BufferedInputStream if it is slow to read a
+     *                    few bytes at a time and nothing else will be read from it.
+     * @param source      Where the themes are read from when they are first asked for
+     * @throws IOException if the stream can't be read or isn't a theme pack this reader understands
+     */
+    public static LazyThemeCatalog readCatalog(InputStream inputStream, ThemePackSource source) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a theme pack");
+        }
+
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported theme pack version " + version);
+        }
+
+        String[] fonts = new String[in.readUnsignedShort()];
+        for (int i = 0; i < fonts.length; i++) {
+            fonts[i] = in.readUTF();
+        }
+
+        int themeCount = in.readUnsignedShort();
+        String[] names = new String[themeCount];
+        int[] offsets = new int[themeCount];
+        int[] contentHashes = new int[themeCount];
+        Map<String, Integer> indexByName = new HashMap<String, Integer>(themeCount * 2);
+
+        for (int i = 0; i < themeCount; i++) {
+            names[i] = in.readUTF();
+            offsets[i] = in.readInt();
+            contentHashes[i] = in.readInt();
+
+            if (indexByName.put(names[i], i) != null) {
+                throw new IOException("Duplicate theme name " + names[i]);
+            }
+        }
+
+        return new LazyThemeCatalog(fonts, names, offsets, contentHashes, indexByName, source);
+    }
+
+    /**
+     * Parses a theme's record.
+     *
+     * @param record {@link #RECORD_LENGTH} bytes read from the theme's offset
+     */
+    static PackedTheme readTheme(String name, byte[] record, String[] fonts) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+        int backgroundColor = in.readInt();
+        int flags = in.readUnsignedByte();
+        PackedPanel day = readPanel(in, fonts);
+        PackedPanel time = readPanel(in, fonts);
+        PackedPanel date = readPanel(in, fonts);
+
+        return new PackedTheme(name, backgroundColor, day, time, date, (flags & FLAG_SHOW_SECONDS) != 0);
+    }
+
+    private static PackedPanel readPanel(DataInputStream in, String[] fonts) throws IOException {
+        int backgroundColor = in.readInt();
+        int textColor = in.readInt();
+        int fontIndex = in.readUnsignedShort();
+        float textSize = in.readFloat();
+
+        if (fontIndex >= fonts.length) {
+            throw new IOException("Bad font index " + fontIndex);
+        }
+
+        return new PackedPanel(backgroundColor, textColor, fonts[fontIndex], textSize);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,17 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.io.IOException;
+
+/**
+ * Random access to the bytes of a theme pack, so that a {@link LazyThemeCatalog} can read one
+ * theme without reading the rest. Must be safe to use from any thread.
+ */
+public interface ThemePackSource {
+
+    /**
+     * Fills the buffer with the bytes of the pack starting at the given position.
+     *
+     * @throws IOException if they can't be read, including if the pack ends first
+     */
+    void read(long position, byte[] buffer) throws IOException;
+}
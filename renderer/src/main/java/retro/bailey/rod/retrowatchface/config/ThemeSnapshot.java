@@ -0,0 +1,115 @@
+package retro.bailey.rod.retrowatchface.config;
+
+/**
+ * The little of a theme needed to start up in it - the colors of the background and bars, and the
+ * fonts to start loading - saved whenever a theme is applied. A newly created engine draws its first
+ * frame from the snapshot of the theme it last used, without waiting for the theme pack or fonts.
+ */
+public final class ThemeSnapshot {
+
+    // Bumped whenever the encoding changes, so an old snapshot is ignored rather than misread
+    private static final String VERSION = "1";
+
+    private static final int FIELD_COUNT = 9;
+
+    public final String name;
+    public final int backgroundColor;
+    public final int dayBackgroundColor;
+    public final int timeBackgroundColor;
+    public final int dateBackgroundColor;
+    // Asset paths of the fonts, or null for the default font
+    public final String dayFont;
+    public final String timeFont;
+    public final String dateFont;
+
+    public ThemeSnapshot(String name, int backgroundColor,
+                         int dayBackgroundColor, int timeBackgroundColor, int dateBackgroundColor,
+                         String dayFont, String timeFont, String dateFont) {
+        this.name = name;
+        this.backgroundColor = backgroundColor;
+        this.dayBackgroundColor = dayBackgroundColor;
+        this.timeBackgroundColor = timeBackgroundColor;
+        this.dateBackgroundColor = dateBackgroundColor;
+        this.dayFont = dayFont;
+        this.timeFont = timeFont;
+        this.dateFont = dateFont;
+    }
+
+    /**
+     * @return Snapshot of the given theme
+     */
+    public static ThemeSnapshot of(PackedTheme theme) {
+        return new ThemeSnapshot(theme.name, theme.backgroundColor,
+                theme.day.backgroundColor, theme.time.backgroundColor, theme.date.backgroundColor,
+                theme.day.textFont, theme.time.textFont, theme.date.textFont);
+    }
+
+    /**
+     * @return The snapshot as a single string, for saving in preferences
+     */
+    public String encode() {
+        return VERSION + '\n' + name
+                + '\n' + Integer.toHexString(backgroundColor)
+                + '\n' + Integer.toHexString(dayBackgroundColor)
+                + '\n' + Integer.toHexString(timeBackgroundColor)
+                + '\n' + Integer.toHexString(dateBackgroundColor)
+                + '\n' + encodeFont(dayFont)
+                + '\n' + encodeFont(timeFont)
+                + '\n' + encodeFont(dateFont);
+    }
+
+    /**
+     * @param encoded As returned by {@link #encode}, or null
+     * @return The snapshot, or null if there wasn't one or it can't be read eg. because it was saved
+     * by an older version
+     */
+    public static ThemeSnapshot decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        String[] fields = encoded.split("\n", -1);
+        if ((fields.length != FIELD_COUNT) || !VERSION.equals(fields[0])) {
+            return null;
+        }
+
+        try {
+            return new ThemeSnapshot(fields[1], decodeColor(fields[2]),
+                    decodeColor(fields[3]), decodeColor(fields[4]), decodeColor(fields[5]),
+                    decodeFont(fields[6]), decodeFont(fields[7]), decodeFont(fields[8]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String encodeFont(String font) {
+        return (font == null) ? "" : font;
+    }
+
+    private static String decodeFont(String field) {
+        return field.isEmpty() ? null : field;
+    }
+
+    private static int decodeColor(String field) {
+        // Parsed as a long, as ARGB colors with alpha above 7f don't fit in a positive int
+        return (int) Long.parseLong(field, 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ThemeSnapshot)) {
+            return false;
+        }
+        return encode().equals(((ThemeSnapshot) o).encode());
+    }
+
+    @Override
+    public int hashCode() {
+        return encode().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ThemeSnapshot:" + encode().replace('\n', ',');
+    }
+}
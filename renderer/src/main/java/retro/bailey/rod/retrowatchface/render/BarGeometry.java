@@ -0,0 +1,245 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Bounds of the three bars on a surface of a particular size and shape, and of the part of each bar
+ * that is visible on screen and so can hold text. Pure arithmetic, so it can be worked out (and
+ * tested and benchmarked) off the device. Never modified once created.
+ */
+public final class BarGeometry {
+
+    /**
+     * Multiply the width of the square by this scaling factor to get the size of the margin in pixels.
+     * The margin is the gap around the outside of all elements, and the vertical gap between the
+     * horizontal inner elements.
+     */
+    private static final float SCALE_FACTOR_MARGIN_PX = 0.025F;
+
+    /**
+     * Multiply the width of the square by this scaling factor to get the vertical height of the
+     * top and bottom elements in pixels.
+     */
+    private static final float SCALE_FACTOR_VERTICAL_TOP_AND_BOTTOM_ELEMENTS_PX = 0.2255F;
+
+    private static final float SCALE_FACTOR_VERTICAL_MIDDLE_ELEMENT_PX = 0.4486F;
+
+    /**
+     * Fraction of the height of the top or bottom bar given to its complication, when it has one.
+     * The complication takes the inner edge of the bar, nearest the middle, which is the wider one
+     * on a round screen.
+     */
+    private static final float COMPLICATION_HEIGHT_FRACTION = 0.4F;
+
+    /**
+     * An axis aligned rectangle in px, with the same conventions as android.graphics.Rect - right and
+     * bottom are exclusive.
+     */
+    public static final class Box {
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+
+        public Box(int left, int top, int right, int bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        public int width() {
+            return right - left;
+        }
+
+        public int height() {
+            return bottom - top;
+        }
+
+        public float exactCenterX() {
+            return (left + right) * 0.5F;
+        }
+
+        public float exactCenterY() {
+            return (top + bottom) * 0.5F;
+        }
+
+        @Override
+        public String toString() {
+            return "Box(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+        }
+    }
+
+    public final int width;
+    public final int height;
+    public final boolean round;
+    // Pixels at the bottom of the surface that can't be seen eg. the "chin" of some round watches
+    public final int bottomInsetPx;
+
+    public final Box topBar;
+    public final Box middleBar;
+    public final Box bottomBar;
+
+    // The part of each bar that is actually visible, less a margin at each end. On a round screen
+    // this excludes the corners of the bar that are cut off by the edge of the screen.
+    public final Box dayTextBounds;
+    public final Box timeTextBounds;
+    public final Box dateTextBounds;
+
+    // The visible part of the strip of the top or bottom bar given to a complication, less a margin
+    // at each end, or null if the bar has no complication
+    public final Box dayComplicationBounds;
+    public final Box dateComplicationBounds;
+
+    // Horizontal center of all text
+    public final float centerX;
+
+    /**
+     * @param width         Width of the surface in px
+     * @param height        Height of the surface in px
+     * @param round         true if the screen is round
+     * @param bottomInsetPx Height in px of the invisible area at the bottom of the surface
+     */
+    public BarGeometry(int width, int height, boolean round, int bottomInsetPx) {
+        this(width, height, round, bottomInsetPx, false, false);
+    }
+
+    /**
+     * @param width            Width of the surface in px
+     * @param height           Height of the surface in px
+     * @param round            true if the screen is round
+     * @param bottomInsetPx    Height in px of the invisible area at the bottom of the surface
+     * @param dayComplication  true to make room for a complication in the top bar, beneath the day
+     * @param dateComplication true to make room for a complication in the bottom bar, above the date
+     */
+    public BarGeometry(int width, int height, boolean round, int bottomInsetPx,
+                       boolean dayComplication, boolean dateComplication) {
+        this.width = width;
+        this.height = height;
+        this.round = round;
+        this.bottomInsetPx = bottomInsetPx;
+
+        int visibleHeight = height - bottomInsetPx;
+        int marginPx = (int) (SCALE_FACTOR_MARGIN_PX * width);
+        int shortBarHeightPx = (int) (SCALE_FACTOR_VERTICAL_TOP_AND_BOTTOM_ELEMENTS_PX * width);
+        int tallBarHeightPx = (int) (SCALE_FACTOR_VERTICAL_MIDDLE_ELEMENT_PX * width);
+
+        // Top bar contains the name of the day of week
+        topBar = new Box(marginPx, marginPx, width - marginPx, marginPx + shortBarHeightPx);
+
+        // Middle bar contains the time
+        middleBar = new Box(marginPx, marginPx * 2 + shortBarHeightPx, width - marginPx, marginPx * 2 + shortBarHeightPx + tallBarHeightPx);
+
+        // Bottom bar contains the date
+        bottomBar = new Box(marginPx, visibleHeight - marginPx - shortBarHeightPx, width - marginPx, visibleHeight - marginPx);
+
+        centerX = width / 2.0F;
+
+        timeTextBounds = visiblePart(middleBar, marginPx);
+
+        if (dayComplication) {
+            int splitY = topBar.bottom - (int) (COMPLICATION_HEIGHT_FRACTION * topBar.height());
+            dayTextBounds = visiblePart(new Box(topBar.left, topBar.top, topBar.right, splitY), marginPx);
+            dayComplicationBounds = visiblePart(new Box(topBar.left, splitY, topBar.right, topBar.bottom), marginPx);
+        } else {
+            dayTextBounds = visiblePart(topBar, marginPx);
+            dayComplicationBounds = null;
+        }
+
+        if (dateComplication) {
+            int splitY = bottomBar.top + (int) (COMPLICATION_HEIGHT_FRACTION * bottomBar.height());
+            dateComplicationBounds = visiblePart(new Box(bottomBar.left, bottomBar.top, bottomBar.right, splitY), marginPx);
+            dateTextBounds = visiblePart(new Box(bottomBar.left, splitY, bottomBar.right, bottomBar.bottom), marginPx);
+        } else {
+            dateTextBounds = visiblePart(bottomBar, marginPx);
+            dateComplicationBounds = null;
+        }
+    }
+
+    /**
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     * @return Bounds of the bar the panel is drawn in
+     */
+    public Box bar(int panel) {
+        switch (panel) {
+            case FaceCanvas.PANEL_DAY:
+                return topBar;
+            case FaceCanvas.PANEL_TIME:
+                return middleBar;
+            case FaceCanvas.PANEL_DATE:
+                return bottomBar;
+            default:
+                throw new IllegalArgumentException("Unknown panel " + panel);
+        }
+    }
+
+    /**
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     * @return Bounds of the visible part of the bar the panel is drawn in
+     */
+    public Box textBounds(int panel) {
+        switch (panel) {
+            case FaceCanvas.PANEL_DAY:
+                return dayTextBounds;
+            case FaceCanvas.PANEL_TIME:
+                return timeTextBounds;
+            case FaceCanvas.PANEL_DATE:
+                return dateTextBounds;
+            default:
+                throw new IllegalArgumentException("Unknown panel " + panel);
+        }
+    }
+
+    /**
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     * @return Bounds of the visible part of the panel's complication, or null if it has none
+     */
+    public Box complicationBounds(int panel) {
+        switch (panel) {
+            case FaceCanvas.PANEL_DAY:
+                return dayComplicationBounds;
+            case FaceCanvas.PANEL_TIME:
+                return null;
+            case FaceCanvas.PANEL_DATE:
+                return dateComplicationBounds;
+            default:
+                throw new IllegalArgumentException("Unknown panel " + panel);
+        }
+    }
+
+    /**
+     * @return true if this geometry was computed for the given surface and insets. The bars are
+     * the same whether or not they have complications.
+     */
+    public boolean isFor(int width, int height, boolean round, int bottomInsetPx) {
+        return (this.width == width) && (this.height == height) && (this.round == round)
+                && (this.bottomInsetPx == bottomInsetPx);
+    }
+
+    /**
+     * @return The part of the bar that is visible on screen, less a margin at each end.
+     */
+    private Box visiblePart(Box bar, int marginPx) {
+        int left = bar.left + marginPx;
+        int right = bar.right - marginPx;
+
+        if (round) {
+            // The narrowest part of the bar is the edge furthest from the center of the screen.
+            // Only the chord of the circle at that edge is visible all the way down the bar.
+            float radius = width / 2.0F;
+            float furthestEdgeY = Math.max(Math.abs(bar.top - radius), Math.abs(bar.bottom - radius));
+            float halfChord = (float) Math.sqrt(Math.max(0, (radius * radius) - (furthestEdgeY * furthestEdgeY)));
+            left = Math.max(left, (int) Math.ceil(radius - halfChord) + marginPx);
+            right = Math.min(right, (int) Math.floor(radius + halfChord) - marginPx);
+            if (right < left) {
+                left = right = (int) radius;
+            }
+        }
+        return new Box(left, bar.top, right, bar.bottom);
+    }
+
+    @Override
+    public String toString() {
+        return "BarGeometry:width=" + width + ",height=" + height + ",round=" + round + ",bottomInsetPx=" + bottomInsetPx
+                + ",topBar=" + topBar + ",middleBar=" + middleBar + ",bottomBar=" + bottomBar
+                + ",dayComplicationBounds=" + dayComplicationBounds + ",dateComplicationBounds=" + dateComplicationBounds;
+    }
+}
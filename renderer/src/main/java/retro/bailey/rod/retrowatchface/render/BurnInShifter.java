@@ -0,0 +1,61 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves what is drawn in ambient mode by a few pixels every minute, on screens that need burn-in
+ * protection, so that no pixel is lit for long at a stretch. The offset walks around the 3x3 grid
+ * of positions at -max, 0 and +max pixels from the center in each direction, one step each
+ * minute, so the face never jumps further than one step at a time.
+ * <p/>
+ * The offset depends only on the time, so any frame drawn in the same minute is in the same place.
+ */
+public class BurnInShifter {
+
+    // Offsets in units of the maximum shift, visited in turn one per minute. Each is next to the last.
+    private static final int[] STEPS_X = {0, 1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] STEPS_Y = {0, 0, 1, 1, 1, 0, -1, -1, -1};
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int maxShiftPx;
+
+    private boolean enabled;
+
+    /**
+     * @param maxShiftPx Furthest the face is moved from its usual place, in each direction
+     */
+    public BurnInShifter(int maxShiftPx) {
+        this.maxShiftPx = maxShiftPx;
+    }
+
+    /**
+     * @param enabled true if the screen needs burn-in protection. If false the offset is always 0.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Horizontal offset in px for the minute containing timeMs
+     */
+    public int getOffsetX(long timeMs) {
+        return enabled ? STEPS_X[step(timeMs)] * maxShiftPx : 0;
+    }
+
+    /**
+     * @return Vertical offset in px for the minute containing timeMs
+     */
+    public int getOffsetY(long timeMs) {
+        return enabled ? STEPS_Y[step(timeMs)] * maxShiftPx : 0;
+    }
+
+    private static int step(long timeMs) {
+        long minute = timeMs / MINUTE_MS;
+        return (int) (((minute % STEPS_X.length) + STEPS_X.length) % STEPS_X.length);
+    }
+}
@@ -0,0 +1,150 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Remembers the text last drawn in each panel of a retained frame, so that the next frame only
+ * redraws what has changed. Each panel is compared with what it showed last time: unchanged
+ * panels need nothing drawn, and where only some digits of a panel have changed - and every other
+ * char is where it was - just the changed digits need redrawing, eg. "12:37" to "12:38" changes
+ * one.
+ * <p/>
+ * Anything that changes how a panel looks other than its text - the theme, the surface size -
+ * must {@link #invalidateAll} so that every panel is drawn again in full, or {@link #invalidate}
+ * just the panel it affects, eg. for new complication data in its bar.
+ */
+public class DirtyTracker {
+
+    /**
+     * The panel shows the same text as last time, and needn't be drawn.
+     */
+    public static final int UNCHANGED = 0;
+
+    /**
+     * Only digits changed, each to another digit. Those from {@link #getFirstChanged} to
+     * {@link #getLastChanged} need drawing.
+     */
+    public static final int CHANGED_DIGITS = 1;
+
+    /**
+     * The whole panel needs drawing.
+     */
+    public static final int CHANGED_ALL = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final char[][] lastText = new char[FaceCanvas.PANEL_COUNT][INITIAL_CAPACITY];
+
+    private final int[] lastCount = new int[FaceCanvas.PANEL_COUNT];
+
+    private final boolean[] valid = new boolean[FaceCanvas.PANEL_COUNT];
+
+    private int firstChanged;
+
+    private int lastChanged;
+
+    /**
+     * Forgets what every panel shows, so that each is {@link #CHANGED_ALL} next time.
+     */
+    public void invalidateAll() {
+        for (int panel = 0; panel < FaceCanvas.PANEL_COUNT; panel++) {
+            valid[panel] = false;
+        }
+    }
+
+    /**
+     * Forgets what the given panel shows, so that it is {@link #CHANGED_ALL} next time.
+     *
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     */
+    public void invalidate(int panel) {
+        valid[panel] = false;
+    }
+
+    /**
+     * @return false if nothing has been drawn since {@link #invalidateAll}
+     */
+    public boolean isAnyValid() {
+        for (int panel = 0; panel < FaceCanvas.PANEL_COUNT; panel++) {
+            if (valid[panel]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the text about to be drawn in a panel with what it showed last time, then remembers
+     * the new text as what it shows.
+     *
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     * @return {@link #UNCHANGED}, {@link #CHANGED_DIGITS} or {@link #CHANGED_ALL}
+     */
+    public int update(int panel, char[] text, int start, int count) {
+        int result = compare(panel, text, start, count);
+        if (result != UNCHANGED) {
+            remember(panel, text, start, count);
+        }
+        return result;
+    }
+
+    /**
+     * @return Index, from start, of the first char that changed in the last {@link #update} that
+     * returned {@link #CHANGED_DIGITS}
+     */
+    public int getFirstChanged() {
+        return firstChanged;
+    }
+
+    /**
+     * @return Index, from start, of the last char that changed in the last {@link #update} that
+     * returned {@link #CHANGED_DIGITS}
+     */
+    public int getLastChanged() {
+        return lastChanged;
+    }
+
+    private int compare(int panel, char[] text, int start, int count) {
+        if (!valid[panel] || (lastCount[panel] != count)) {
+            return CHANGED_ALL;
+        }
+
+        char[] last = lastText[panel];
+        int first = -1;
+        int lastIndex = -1;
+
+        for (int i = 0; i < count; i++) {
+            char was = last[i];
+            char is = text[start + i];
+            if (was == is) {
+                continue;
+            }
+            if (!isDigit(was) || !isDigit(is)) {
+                // Something other than a digit changed, which may move everything around it
+                return CHANGED_ALL;
+            }
+            if (first < 0) {
+                first = i;
+            }
+            lastIndex = i;
+        }
+
+        if (first < 0) {
+            return UNCHANGED;
+        }
+        firstChanged = first;
+        lastChanged = lastIndex;
+        return CHANGED_DIGITS;
+    }
+
+    private void remember(int panel, char[] text, int start, int count) {
+        if (lastText[panel].length < count) {
+            lastText[panel] = new char[count];
+        }
+        System.arraycopy(text, start, lastText[panel], 0, count);
+        lastCount[panel] = count;
+        valid[panel] = true;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+}
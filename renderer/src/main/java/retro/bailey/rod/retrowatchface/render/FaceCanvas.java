@@ -0,0 +1,45 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * The few drawing operations a frame of the watch face is made of. {@link FaceRenderer} draws
+ * through this so that the same drawing code runs on the device (against an android.graphics.Canvas)
+ * and on the JVM (against {@link RecordingFaceCanvas}) for tests and benchmarks.
+ * <p/>
+ * Where the bars are, and the fonts, colors and sizes of the text in them, are up to the
+ * implementation.
+ */
+public interface FaceCanvas {
+
+    /**
+     * Top bar, containing the day name eg. "Monday"
+     */
+    int PANEL_DAY = 0;
+
+    /**
+     * Middle bar, containing the time eg. "12:37"
+     */
+    int PANEL_TIME = 1;
+
+    /**
+     * Bottom bar, containing the date eg. "12 June"
+     */
+    int PANEL_DATE = 2;
+
+    int PANEL_COUNT = 3;
+
+    /**
+     * Fills the background and the three bars, replacing everything previously drawn. In ambient
+     * mode, this may just clear the screen.
+     */
+    void drawBars();
+
+    /**
+     * Draws text centered in a bar, in that bar's font, color and size.
+     *
+     * @param panel One of the PANEL_ constants
+     * @param text  Buffer holding the text. Not modified or kept.
+     * @param start Index of the first char to draw
+     * @param count Number of chars to draw
+     */
+    void drawPanelText(int panel, char[] text, int start, int count);
+}
@@ -0,0 +1,152 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Draws one frame of the watch face - the bars, then the time, day name and date - onto a
+ * {@link FaceCanvas}. Holds only the buffer the time is formatted into, so drawing a frame
+ * allocates nothing. If given a {@link FrameProfiler}, tells it when each of those phases starts
+ * and ends.
+ */
+public class FaceRenderer {
+
+    private TimeTextFormatter timeTextFormatter;
+
+    private char[] timeChars;
+
+    // Length of the time last drawn in timeChars
+    private int timeLength;
+
+    // Null if phases aren't being profiled
+    private FrameProfiler profiler;
+
+    // Hash of the text drawn in the last frame
+    private long lastFrameSignature;
+
+    public FaceRenderer(TimeTextFormatter timeTextFormatter) {
+        setTimeTextFormatter(timeTextFormatter);
+    }
+
+    /**
+     * Formats the time with the given formatter from now on, eg. because the locale has changed.
+     */
+    public void setTimeTextFormatter(TimeTextFormatter timeTextFormatter) {
+        this.timeTextFormatter = timeTextFormatter;
+        timeChars = new char[timeTextFormatter.getMaxTimeLength()];
+    }
+
+    /**
+     * @param profiler Told about each phase of every frame drawn from now on. Null for none.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * @return Hash of all the text drawn in the last frame. Two frames with the same signature, drawn
+     * with the same fonts and colors, look the same (barring hash collisions).
+     */
+    public long getLastFrameSignature() {
+        return lastFrameSignature;
+    }
+
+    /**
+     * Draws a whole frame.
+     *
+     * @param hour          0 to 23
+     * @param minute        0 to 59
+     * @param second        0 to 59
+     * @param showSeconds   true to show H:MM:SS rather than H:MM
+     * @param use24Hour     true for a 24 hour clock
+     * @param showAmPm      true to follow a 12 hour time with AM or PM
+     * @param dayName       Buffer holding the day name eg. "Monday"
+     * @param dayNameLength Number of chars of the day name
+     * @param date          Buffer holding the date eg. "12 June"
+     * @param dateLength    Number of chars of the date
+     */
+    public void drawFrame(FaceCanvas canvas,
+                          int hour, int minute, int second, boolean showSeconds, boolean use24Hour, boolean showAmPm,
+                          char[] dayName, int dayNameLength,
+                          char[] date, int dateLength) {
+        FrameProfiler profiler = this.profiler;
+
+        if (profiler == null) {
+            drawBars(canvas);
+            drawTimeInMiddleBar(canvas, hour, minute, second, showSeconds, use24Hour, showAmPm);
+            drawDayInTopBar(canvas, dayName, dayNameLength);
+            drawDateInBottomBar(canvas, date, dateLength);
+        } else {
+            profiler.beginPhase(FrameProfiler.PHASE_BACKGROUND);
+            drawBars(canvas);
+            profiler.endPhase(FrameProfiler.PHASE_BACKGROUND);
+
+            profiler.beginPhase(FrameProfiler.PHASE_TIME);
+            drawTimeInMiddleBar(canvas, hour, minute, second, showSeconds, use24Hour, showAmPm);
+            profiler.endPhase(FrameProfiler.PHASE_TIME);
+
+            profiler.beginPhase(FrameProfiler.PHASE_DAY);
+            drawDayInTopBar(canvas, dayName, dayNameLength);
+            profiler.endPhase(FrameProfiler.PHASE_DAY);
+
+            profiler.beginPhase(FrameProfiler.PHASE_DATE);
+            drawDateInBottomBar(canvas, date, dateLength);
+            profiler.endPhase(FrameProfiler.PHASE_DATE);
+        }
+
+        lastFrameSignature = hash(hash(hash(17, timeChars, timeLength), dayName, dayNameLength), date, dateLength);
+    }
+
+    /**
+     * Draws a frame in ambient mode - the background, then just the hours and minutes. Not
+     * profiled, as ambient frames are drawn once a minute at most.
+     *
+     * @param hour      0 to 23
+     * @param minute    0 to 59
+     * @param use24Hour true for a 24 hour clock
+     * @param showAmPm  true to follow a 12 hour time with AM or PM
+     */
+    public void drawAmbientFrame(FaceCanvas canvas, int hour, int minute, boolean use24Hour, boolean showAmPm) {
+        drawBars(canvas);
+        drawTimeInMiddleBar(canvas, hour, minute, 0, false, use24Hour, showAmPm);
+
+        lastFrameSignature = hash(17, timeChars, timeLength);
+    }
+
+    /**
+     * Draws the background and the three bars.
+     */
+    public void drawBars(FaceCanvas canvas) {
+        canvas.drawBars();
+    }
+
+    /**
+     * Draws the time in the middle bar running horizontally across the middle of the screen.
+     */
+    public void drawTimeInMiddleBar(FaceCanvas canvas, int hour, int minute, int second,
+                                    boolean showSeconds, boolean use24Hour, boolean showAmPm) {
+        int timeLength = timeTextFormatter.formatTime(hour, minute, second, showSeconds, use24Hour, showAmPm,
+                timeChars);
+        canvas.drawPanelText(FaceCanvas.PANEL_TIME, timeChars, 0, timeLength); // "12:37"
+        this.timeLength = timeLength;
+    }
+
+    /**
+     * Draws the full name of the day of the week (eg. "Monday") in the center of the top bar.
+     */
+    public void drawDayInTopBar(FaceCanvas canvas, char[] dayName, int dayNameLength) {
+        canvas.drawPanelText(FaceCanvas.PANEL_DAY, dayName, 0, dayNameLength);
+    }
+
+    /**
+     * Draws the date (eg. "12 June") in the bottom bar running horizontally across the bottom of the
+     * screen.
+     */
+    public void drawDateInBottomBar(FaceCanvas canvas, char[] date, int dateLength) {
+        canvas.drawPanelText(FaceCanvas.PANEL_DATE, date, 0, dateLength);
+    }
+
+    private static long hash(long hash, char[] text, int length) {
+        for (int i = 0; i < length; i++) {
+            hash = (31 * hash) + text[i];
+        }
+        return (31 * hash) + length;
+    }
+}
@@ -0,0 +1,195 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Keeps track of the time flipping over like a split-flap display: when asked to, each digit that
+ * differs from the last frame's flips from the old digit to the new one over a fixed duration. Fed
+ * the time text and frame time of every frame, it says how far through the flip each frame is and
+ * which digits are flipping.
+ * <p/>
+ * Only digits flip. If anything else changes, eg. "9:59" to "10:00", the new time just replaces the
+ * old.
+ */
+public class FlipTracker {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long durationMs;
+
+    // Time text of the last frame
+    private char[] lastText = new char[INITIAL_CAPACITY];
+    private int lastCount;
+    private boolean haveLastText;
+
+    // Time text being flipped from
+    private char[] fromText = new char[INITIAL_CAPACITY];
+    private int fromCount;
+
+    private boolean[] flipped = new boolean[INITIAL_CAPACITY];
+
+    private int firstFlipped;
+
+    private int lastFlipped;
+
+    private long startTimeMs;
+
+    private boolean flipping;
+
+    private float progress = 1;
+
+    /**
+     * @param durationMs How long a flip takes. 0 for no flips.
+     */
+    public FlipTracker(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Forgets the last frame's text and stops any flip, eg. because the frame it was drawn in has
+     * been thrown away.
+     */
+    public void reset() {
+        haveLastText = false;
+        flipping = false;
+        progress = 1;
+    }
+
+    /**
+     * Call with the time text of each frame, before it is drawn.
+     *
+     * @param frameTimeMs Time of the frame, from a monotonic clock
+     * @param flipChanges true to flip digits that differ from the last frame's, false to replace
+     *                    them straight away
+     * @return true if the frame shows part of a flip, including its last frame, so the flipping
+     * digits need drawing
+     */
+    public boolean update(char[] text, int start, int count, long frameTimeMs, boolean flipChanges) {
+        if (!sameAsLast(text, start, count)) {
+            flipping = flipChanges && (durationMs > 0) && haveLastText && findFlipped(text, start, count);
+            if (flipping) {
+                System.arraycopy(lastText, 0, fromText, 0, lastCount);
+                fromCount = lastCount;
+                startTimeMs = frameTimeMs;
+            }
+            remember(text, start, count);
+        }
+
+        if (!flipping) {
+            progress = 1;
+            return false;
+        }
+
+        progress = Math.max(0, Math.min(1, (float) (frameTimeMs - startTimeMs) / durationMs));
+        if (progress >= 1) {
+            flipping = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a flip is under way and has frames left to draw
+     */
+    public boolean isFlipping() {
+        return flipping;
+    }
+
+    /**
+     * @return How far through the flip the last frame was, from 0 to 1. 1 if there is no flip.
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return The text being flipped from, starting at index 0. Only valid during a flip.
+     */
+    public char[] getFromText() {
+        return fromText;
+    }
+
+    /**
+     * @return Length of the text being flipped from, which is that of the text being flipped to
+     */
+    public int getFromCount() {
+        return fromCount;
+    }
+
+    /**
+     * @param index Index of a char in the time text, from start
+     * @return true if the char is flipping
+     */
+    public boolean isFlipped(int index) {
+        return flipped[index];
+    }
+
+    /**
+     * @return Index, from start, of the first char flipping
+     */
+    public int getFirstFlipped() {
+        return firstFlipped;
+    }
+
+    /**
+     * @return Index, from start, of the last char flipping
+     */
+    public int getLastFlipped() {
+        return lastFlipped;
+    }
+
+    private boolean sameAsLast(char[] text, int start, int count) {
+        if (!haveLastText || (lastCount != count)) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (lastText[i] != text[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the chars that differ from the last text.
+     *
+     * @return false if anything other than digits differs
+     */
+    private boolean findFlipped(char[] text, int start, int count) {
+        if (lastCount != count) {
+            return false;
+        }
+        if (flipped.length < count) {
+            flipped = new boolean[count];
+            fromText = new char[count];
+        }
+
+        firstFlipped = -1;
+        for (int i = 0; i < count; i++) {
+            char was = lastText[i];
+            char is = text[start + i];
+            flipped[i] = (was != is);
+            if (!flipped[i]) {
+                continue;
+            }
+            if (!isDigit(was) || !isDigit(is)) {
+                return false;
+            }
+            if (firstFlipped < 0) {
+                firstFlipped = i;
+            }
+            lastFlipped = i;
+        }
+        return firstFlipped >= 0;
+    }
+
+    private void remember(char[] text, int start, int count) {
+        if (lastText.length < count) {
+            lastText = new char[count];
+        }
+        System.arraycopy(text, start, lastText, 0, count);
+        lastCount = count;
+        haveLastText = true;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+}
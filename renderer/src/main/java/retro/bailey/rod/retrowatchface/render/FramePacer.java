@@ -0,0 +1,89 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Paces the frames of an animation at a fixed rate. Frames are due at whole multiples of the frame
+ * interval after the first, and each frame is told how long to wait for the next, so a frame drawn
+ * a little late doesn't push back the ones after it. A frame drawn a whole interval or more late
+ * has missed the frames that were due in between, which are counted so the animation can be
+ * checked against its frame budget.
+ * <p/>
+ * Times are passed in rather than read from a clock, and should all come from the same monotonic
+ * clock eg. SystemClock.uptimeMillis().
+ */
+public class FramePacer {
+
+    private final long frameIntervalMs;
+
+    private boolean running;
+
+    private long startTimeMs;
+
+    // Number of frame intervals from the start to the latest frame drawn
+    private long lastSlot;
+
+    private int frameCount;
+
+    private int missedFrameCount;
+
+    /**
+     * @param frameIntervalMs Time between frames
+     */
+    public FramePacer(long frameIntervalMs) {
+        this.frameIntervalMs = frameIntervalMs;
+    }
+
+    /**
+     * Counts a frame just drawn. The first frame after {@link #stop} starts a new run.
+     *
+     * @param nowMs Time the frame was drawn
+     * @return Delay until the next frame is due
+     */
+    public long onFrame(long nowMs) {
+        if (!running) {
+            running = true;
+            startTimeMs = nowMs;
+            lastSlot = 0;
+            frameCount = 1;
+            missedFrameCount = 0;
+            return frameIntervalMs;
+        }
+
+        long slot = (nowMs - startTimeMs) / frameIntervalMs;
+        if (slot > lastSlot + 1) {
+            missedFrameCount += (int) (slot - lastSlot - 1);
+        }
+        // A frame drawn early, eg. for a tap, shares its slot with the one before
+        lastSlot = Math.max(lastSlot, slot);
+        frameCount++;
+
+        return startTimeMs + ((lastSlot + 1) * frameIntervalMs) - nowMs;
+    }
+
+    /**
+     * Ends the run. The counts of the run are kept until the next one starts.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * @return true between the first frame of a run and {@link #stop}
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return Frames drawn in the current or last run
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Frames missed in the current or last run
+     */
+    public int getMissedFrameCount() {
+        return missedFrameCount;
+    }
+}
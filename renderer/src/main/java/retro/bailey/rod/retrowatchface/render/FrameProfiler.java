@@ -0,0 +1,40 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Told by {@link FaceRenderer} when each phase of drawing a frame starts and ends, eg. to time the
+ * phases or mark them in a trace. Implementations must not allocate, as they're called several
+ * times a frame.
+ */
+public interface FrameProfiler {
+
+    /**
+     * Filling the background and bars
+     */
+    int PHASE_BACKGROUND = 0;
+
+    /**
+     * Formatting and drawing the time
+     */
+    int PHASE_TIME = 1;
+
+    /**
+     * Drawing the day name
+     */
+    int PHASE_DAY = 2;
+
+    /**
+     * Drawing the date
+     */
+    int PHASE_DATE = 3;
+
+    int PHASE_COUNT = 4;
+
+    /**
+     * Names of the phases, indexed by the PHASE_ constants
+     */
+    String[] PHASE_NAMES = {"background", "time", "day", "date"};
+
+    void beginPhase(int phase);
+
+    void endPhase(int phase);
+}
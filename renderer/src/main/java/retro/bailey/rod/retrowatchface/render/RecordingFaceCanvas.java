@@ -0,0 +1,117 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * A {@link FaceCanvas} that draws nothing, but records each operation and where on a surface of the
+ * given geometry it would have drawn. For checking and benchmarking the drawing code on the JVM.
+ * <p/>
+ * Storage for the operations is allocated up front, so recording a frame allocates nothing.
+ * Operations beyond the capacity are counted but not recorded.
+ */
+public class RecordingFaceCanvas implements FaceCanvas {
+
+    public static final int OP_BARS = 0;
+
+    public static final int OP_TEXT = 1;
+
+    private static final int CAPACITY = 16;
+
+    private static final int MAX_TEXT_LENGTH = 32;
+
+    private final BarGeometry geometry;
+
+    private final int[] opTypes = new int[CAPACITY];
+    private final int[] panels = new int[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private final StringBuilder[] texts = new StringBuilder[CAPACITY];
+
+    private int opCount;
+
+    public RecordingFaceCanvas(BarGeometry geometry) {
+        this.geometry = geometry;
+        for (int i = 0; i < CAPACITY; i++) {
+            texts[i] = new StringBuilder(MAX_TEXT_LENGTH);
+        }
+    }
+
+    /**
+     * Forgets all recorded operations, ready for the next frame.
+     */
+    public void reset() {
+        opCount = 0;
+    }
+
+    @Override
+    public void drawBars() {
+        record(OP_BARS, -1, 0, 0, null, 0, 0);
+    }
+
+    @Override
+    public void drawPanelText(int panel, char[] text, int start, int count) {
+        BarGeometry.Box bounds = geometry.textBounds(panel);
+        record(OP_TEXT, panel, geometry.centerX, bounds.exactCenterY(), text, start, count);
+    }
+
+    private void record(int opType, int panel, float x, float y, char[] text, int start, int count) {
+        if (opCount < CAPACITY) {
+            opTypes[opCount] = opType;
+            panels[opCount] = panel;
+            xs[opCount] = x;
+            ys[opCount] = y;
+            texts[opCount].setLength(0);
+            if (text != null) {
+                texts[opCount].append(text, start, count);
+            }
+        }
+        opCount++;
+    }
+
+    /**
+     * @return Number of operations since the last reset, including any not recorded
+     */
+    public int getOpCount() {
+        return opCount;
+    }
+
+    /**
+     * @return One of the OP_ constants
+     */
+    public int getOpType(int index) {
+        return opTypes[checkIndex(index)];
+    }
+
+    /**
+     * @return FaceCanvas.PANEL_ constant of a text operation, -1 for other operations
+     */
+    public int getPanel(int index) {
+        return panels[checkIndex(index)];
+    }
+
+    /**
+     * @return Text of a text operation, empty for other operations
+     */
+    public CharSequence getText(int index) {
+        return texts[checkIndex(index)];
+    }
+
+    /**
+     * @return Horizontal center of a text operation
+     */
+    public float getX(int index) {
+        return xs[checkIndex(index)];
+    }
+
+    /**
+     * @return Vertical center of a text operation
+     */
+    public float getY(int index) {
+        return ys[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if ((index < 0) || (index >= Math.min(opCount, CAPACITY))) {
+            throw new IndexOutOfBoundsException("No recorded operation " + index + " of " + opCount);
+        }
+        return index;
+    }
+}
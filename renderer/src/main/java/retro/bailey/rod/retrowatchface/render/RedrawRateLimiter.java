@@ -0,0 +1,75 @@
+package retro.bailey.rod.retrowatchface.render;
+
+/**
+ * Limits how often something other than the time - eg. complication data, which can arrive several
+ * times a minute - can cause a frame to be drawn. The first change after a quiet spell is drawn
+ * straight away. Changes that follow within the minimum interval of the last frame are held back and
+ * drawn together by a single frame once the interval is up, and a frame drawn for any other reason
+ * in the meantime shows them too, so the held back redraw can be dropped.
+ * <p/>
+ * Times are passed in rather than read from a clock, and should all come from the same monotonic
+ * clock eg. SystemClock.uptimeMillis().
+ */
+public class RedrawRateLimiter {
+
+    /**
+     * Returned by {@link #request} when a redraw is already on its way.
+     */
+    public static final long ALREADY_PENDING = -1;
+
+    private final long minIntervalMs;
+
+    private boolean anyFrameDrawn;
+
+    private long lastFrameMs;
+
+    private boolean pending;
+
+    /**
+     * @param minIntervalMs Least time between frames drawn for requested redraws
+     */
+    public RedrawRateLimiter(long minIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * Asks for a frame to show a change.
+     *
+     * @param nowMs Time of the change
+     * @return 0 to redraw now, the delay after which to redraw, or {@link #ALREADY_PENDING} if a
+     * redraw already asked for will show the change
+     */
+    public long request(long nowMs) {
+        if (pending) {
+            return ALREADY_PENDING;
+        }
+        pending = true;
+
+        if (!anyFrameDrawn) {
+            return 0;
+        }
+        return Math.max(0, lastFrameMs + minIntervalMs - nowMs);
+    }
+
+    /**
+     * Counts a frame just drawn, for whatever reason. It shows every change requested so far.
+     *
+     * @param nowMs Time the frame was drawn
+     * @return true if a redraw was pending, and the frame has made it unnecessary
+     */
+    public boolean onFrame(long nowMs) {
+        anyFrameDrawn = true;
+        lastFrameMs = nowMs;
+
+        boolean wasPending = pending;
+        pending = false;
+        return wasPending;
+    }
+
+    /**
+     * Forgets any pending redraw, eg. when it was cancelled because the face isn't visible.
+     */
+    public void reset() {
+        pending = false;
+    }
+}
@@ -0,0 +1,246 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats the time, day name and date shown on the watch face into caller supplied char[] buffers
+ * so that nothing is allocated while drawing a frame. Day and month names are looked up once, when
+ * the formatter is created, for the locale given, and so are the samples text is sized to fit.
+ */
+public class TimeTextFormatter {
+
+    // Indexed by weekday, 0 = Sunday (same as android.text.format.Time.weekDay)
+    private final char[][] dayNames = new char[7][];
+
+    // Indexed by month, 0 = January (same as android.text.format.Time.month)
+    private final char[][] monthNames = new char[12][];
+
+    private final char[] amMarker;
+    private final char[] pmMarker;
+
+    private final Locale locale;
+
+    private final int maxTimeLength;
+    private final int maxDayNameLength;
+    private final int maxDateLength;
+
+    // Samples text is sized to fit, made once so each is the same array every time it is asked for.
+    // Time samples are indexed by (showSeconds ? 2 : 0) + (showAmPm ? 1 : 0).
+    private final String[] dayNameSamples;
+    private final String[] dateSamples;
+    private final String[][] timeSamples = new String[4][];
+
+    public TimeTextFormatter(Locale locale) {
+        this.locale = locale;
+        DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+
+        // DateFormatSymbols weekdays are indexed from Calendar.SUNDAY (1)
+        String[] weekdays = symbols.getWeekdays();
+        int maxDay = 0;
+        for (int i = 0; i < dayNames.length; i++) {
+            dayNames[i] = weekdays[i + 1].toCharArray();
+            maxDay = Math.max(maxDay, dayNames[i].length);
+        }
+        maxDayNameLength = maxDay;
+
+        String[] months = symbols.getMonths();
+        int maxMonth = 0;
+        for (int i = 0; i < monthNames.length; i++) {
+            monthNames[i] = months[i].toCharArray();
+            maxMonth = Math.max(maxMonth, monthNames[i].length);
+        }
+        // "31 " + month name
+        maxDateLength = 3 + maxMonth;
+
+        String[] amPm = symbols.getAmPmStrings();
+        amMarker = amPm[0].toCharArray();
+        pmMarker = amPm[1].toCharArray();
+        // "12:37:59 " + AM/PM marker
+        maxTimeLength = 9 + Math.max(amMarker.length, pmMarker.length);
+
+        dayNameSamples = buildDayNameSamples();
+        dateSamples = buildDateSamples();
+        for (int i = 0; i < timeSamples.length; i++) {
+            timeSamples[i] = buildTimeSamples((i & 2) != 0, (i & 1) != 0);
+        }
+    }
+
+    /**
+     * @return Locale whose names this formatter uses
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return Size of buffer needed to hold any time for this formatter's locale.
+     */
+    public int getMaxTimeLength() {
+        return maxTimeLength;
+    }
+
+    /**
+     * @return Size of buffer needed to hold any day name for this formatter's locale.
+     */
+    public int getMaxDayNameLength() {
+        return maxDayNameLength;
+    }
+
+    /**
+     * @return Size of buffer needed to hold any date for this formatter's locale.
+     */
+    public int getMaxDateLength() {
+        return maxDateLength;
+    }
+
+    /**
+     * @return Every day name, for sizing the text they are drawn in. The same array every time, so
+     * it can be used as a cache key. Must not be modified.
+     */
+    public String[] getDayNameSamples() {
+        return dayNameSamples;
+    }
+
+    /**
+     * @return A date in each month with the widest possible day of the month, for sizing the text
+     * dates are drawn in. The same array every time, so it can be used as a cache key. Must not be
+     * modified.
+     */
+    public String[] getDateSamples() {
+        return dateSamples;
+    }
+
+    /**
+     * @return A time made of each digit in turn eg. "00:00", "11:11", for sizing the text times are
+     * drawn in. Only the widths of these matter, not whether they are valid times. The same array
+     * for the same arguments every time, so it can be used as a cache key. Must not be modified.
+     */
+    public String[] getTimeSamples(boolean showSeconds, boolean showAmPm) {
+        return timeSamples[(showSeconds ? 2 : 0) + (showAmPm ? 1 : 0)];
+    }
+
+    private String[] buildDayNameSamples() {
+        String[] samples = new String[dayNames.length];
+        for (int i = 0; i < dayNames.length; i++) {
+            samples[i] = new String(dayNames[i]);
+        }
+        return samples;
+    }
+
+    private String[] buildDateSamples() {
+        char[] buffer = new char[maxDateLength];
+        String[] samples = new String[monthNames.length * 10];
+        for (int month = 0; month < monthNames.length; month++) {
+            // Days 21 to 30 cover every digit in the second place and the widest in the first
+            for (int digit = 0; digit < 10; digit++) {
+                int monthDay = (digit == 0) ? 30 : 20 + digit;
+                samples[(month * 10) + digit] = new String(buffer, 0, formatDate(monthDay, month, buffer));
+            }
+        }
+        return samples;
+    }
+
+    private String[] buildTimeSamples(boolean showSeconds, boolean showAmPm) {
+        String[] samples = new String[showAmPm ? 20 : 10];
+        for (int digit = 0; digit < 10; digit++) {
+            StringBuilder sample = new StringBuilder();
+            sample.append(digit).append(digit).append(':').append(digit).append(digit);
+            if (showSeconds) {
+                sample.append(':').append(digit).append(digit);
+            }
+
+            if (showAmPm) {
+                samples[digit] = sample + " " + new String(amMarker);
+                samples[digit + 10] = sample + " " + new String(pmMarker);
+            } else {
+                samples[digit] = sample.toString();
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Writes the time into the given buffer eg. "9:05", "21:05", "9:05 PM" or "9:05:33".
+     *
+     * @param hour        Hour of day, 0-23
+     * @param minute      Minute of hour, 0-59
+     * @param second      Second of minute, 0-59. Ignored unless showSeconds is true.
+     * @param showSeconds true to append ":SS" to the time
+     * @param use24Hour   true for a 0-23 hour, false for a 1-12 hour
+     * @param showAmPm    true to append the AM/PM marker. Ignored if use24Hour is true.
+     * @param out         Buffer of at least {@link #getMaxTimeLength()} chars
+     * @return Number of chars written to out
+     */
+    public int formatTime(int hour, int minute, int second, boolean showSeconds,
+                          boolean use24Hour, boolean showAmPm, char[] out) {
+        int displayHour = hour;
+        if (!use24Hour) {
+            displayHour = hour % 12;
+            if (displayHour == 0) {
+                displayHour = 12;
+            }
+        }
+
+        int length = appendNumber(displayHour, out, 0);
+        out[length++] = ':';
+        length = appendTwoDigits(minute, out, length);
+
+        if (showSeconds) {
+            out[length++] = ':';
+            length = appendTwoDigits(second, out, length);
+        }
+
+        if (!use24Hour && showAmPm) {
+            char[] marker = (hour < 12) ? amMarker : pmMarker;
+            out[length++] = ' ';
+            length = appendChars(marker, out, length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes the full name of the day of the week into the given buffer eg. "Tuesday".
+     *
+     * @param weekDay Day of week, 0 = Sunday
+     * @param out     Buffer of at least {@link #getMaxDayNameLength()} chars
+     * @return Number of chars written to out
+     */
+    public int formatDayName(int weekDay, char[] out) {
+        return appendChars(dayNames[weekDay], out, 0);
+    }
+
+    /**
+     * Writes the day of the month and the full month name into the given buffer eg. "7 June".
+     *
+     * @param monthDay Day of month, 1-31
+     * @param month    Month, 0 = January
+     * @param out      Buffer of at least {@link #getMaxDateLength()} chars
+     * @return Number of chars written to out
+     */
+    public int formatDate(int monthDay, int month, char[] out) {
+        int length = appendNumber(monthDay, out, 0);
+        out[length++] = ' ';
+        return appendChars(monthNames[month], out, length);
+    }
+
+    private static int appendNumber(int value, char[] out, int offset) {
+        if (value >= 10) {
+            return appendTwoDigits(value, out, offset);
+        }
+        out[offset] = (char) ('0' + value);
+        return offset + 1;
+    }
+
+    private static int appendTwoDigits(int value, char[] out, int offset) {
+        out[offset] = (char) ('0' + (value / 10));
+        out[offset + 1] = (char) ('0' + (value % 10));
+        return offset + 2;
+    }
+
+    private static int appendChars(char[] chars, char[] out, int offset) {
+        System.arraycopy(chars, 0, out, offset, chars.length);
+        return offset + chars.length;
+    }
+}
@@ -0,0 +1,153 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import retro.bailey.rod.retrowatchface.config.ThemeCatalog;
+import retro.bailey.rod.retrowatchface.render.FrameProfiler;
+
+/**
+ * How long frames take to draw, overall and in each phase, and how many have been drawn in each mode
+ * and theme. Recorded into fixed size histograms so that it can stay on all the time without
+ * allocating, and printed by {@link #dump}.
+ * <p/>
+ * Frames are recorded on the main thread, while dumps come from a binder thread, so all access is
+ * synchronized. The lock is never contended except during a dump.
+ */
+public class FrameStats implements FrameProfiler {
+
+    public static final int MODE_INTERACTIVE = 0;
+
+    public static final int MODE_AMBIENT = 1;
+
+    private static final String[] MODE_NAMES = {"interactive", "ambient"};
+
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASE_COUNT];
+
+    private final LatencyHistogram[] frameHistograms = new LatencyHistogram[MODE_NAMES.length];
+
+    // Time the current phase of each kind started, from System.nanoTime()
+    private final long[] phaseStartNanos = new long[PHASE_COUNT];
+
+    // Frames drawn in each theme, by position in the theme catalog. Grows as themes further down
+    // the catalog are used, so the catalog needn't be opened to create the stats.
+    private long[] themeFrameCounts = new long[0];
+
+    // Flip animations of the time, and the frames drawn and missed in them
+    private long flipCount;
+    private long flipFrameCount;
+    private long flipMissedFrameCount;
+
+    private long startTimeMs = System.currentTimeMillis();
+
+    public FrameStats() {
+        for (int i = 0; i < phaseHistograms.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < frameHistograms.length; i++) {
+            frameHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public synchronized void beginPhase(int phase) {
+        phaseStartNanos[phase] = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void endPhase(int phase) {
+        phaseHistograms[phase].record(System.nanoTime() - phaseStartNanos[phase]);
+    }
+
+    /**
+     * Records a whole frame.
+     *
+     * @param mode       MODE_INTERACTIVE or MODE_AMBIENT
+     * @param themeIndex Position in the theme catalog of the theme the frame was drawn in, or -1 if
+     *                   not known
+     * @param frameNanos How long the frame took to draw
+     */
+    public synchronized void recordFrame(int mode, int themeIndex, long frameNanos) {
+        frameHistograms[mode].record(frameNanos);
+        if (themeIndex >= 0) {
+            if (themeIndex >= themeFrameCounts.length) {
+                themeFrameCounts = Arrays.copyOf(themeFrameCounts, themeIndex + 1);
+            }
+            themeFrameCounts[themeIndex]++;
+        }
+    }
+
+    /**
+     * Records a flip animation of the time, once it has finished.
+     *
+     * @param frameCount       Frames drawn in the flip
+     * @param missedFrameCount Frames due in the flip that weren't drawn in time
+     */
+    public synchronized void recordFlip(int frameCount, int missedFrameCount) {
+        flipCount++;
+        flipFrameCount += frameCount;
+        flipMissedFrameCount += missedFrameCount;
+    }
+
+    /**
+     * @return Frames missed in flip animations since the last reset
+     */
+    public synchronized long getFlipMissedFrameCount() {
+        return flipMissedFrameCount;
+    }
+
+    /**
+     * @return Number of frames drawn in the given mode since the last reset
+     */
+    public synchronized long getFrameCount(int mode) {
+        return frameHistograms[mode].getCount();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : phaseHistograms) {
+            histogram.reset();
+        }
+        for (LatencyHistogram histogram : frameHistograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < themeFrameCounts.length; i++) {
+            themeFrameCounts[i] = 0;
+        }
+        flipCount = 0;
+        flipFrameCount = 0;
+        flipMissedFrameCount = 0;
+        startTimeMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Prints the stats in a human readable form, for dumpsys.
+     *
+     * @param themes Catalog the theme indexes passed to {@link #recordFrame} are positions in
+     */
+    public synchronized void dump(PrintWriter writer, String prefix, ThemeCatalog themes) {
+        writer.println(prefix + "Frame stats for the last "
+                + ((System.currentTimeMillis() - startTimeMs) / 1000) + "s:");
+
+        for (int mode = 0; mode < frameHistograms.length; mode++) {
+            writer.println(prefix + "  " + MODE_NAMES[mode] + " frames: " + frameHistograms[mode]);
+        }
+
+        writer.println(prefix + "  Flips: " + flipCount + ", frames drawn: " + flipFrameCount
+                + ", frames missed: " + flipMissedFrameCount);
+
+        writer.println(prefix + "  Interactive frame phases:");
+        for (int phase = 0; phase < phaseHistograms.length; phase++) {
+            writer.println(prefix + "    " + PHASE_NAMES[phase] + ": " + phaseHistograms[phase]);
+        }
+
+        writer.println(prefix + "  Frames by theme:");
+        for (int i = 0; (i < themeFrameCounts.length) && (i < themes.size()); i++) {
+            if (themeFrameCounts[i] > 0) {
+                writer.println(prefix + "    " + themes.getName(i) + ": " + themeFrameCounts[i]);
+            }
+        }
+    }
+}
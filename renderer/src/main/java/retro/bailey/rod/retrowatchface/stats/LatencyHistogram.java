@@ -0,0 +1,137 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import java.util.Locale;
+
+/**
+ * Counts durations into a fixed set of buckets, so that percentiles can be read off without keeping
+ * every sample. Buckets grow geometrically from 1 microsecond to 1 second, each 10% wider than the
+ * last, so a percentile is never more than 10% above the true value. The maximum is exact.
+ * <p/>
+ * All storage is allocated up front, so recording a duration allocates nothing. Not thread safe.
+ */
+public class LatencyHistogram {
+
+    private static final long MIN_BUCKET_NANOS = 1000L;
+
+    private static final long MAX_BUCKET_NANOS = 1000000000L;
+
+    private static final double BUCKET_GROWTH = 1.1;
+
+    // Upper bound (inclusive) of each bucket, ascending. The last bucket takes everything larger.
+    private static final long[] BUCKET_LIMITS_NANOS = bucketLimits();
+
+    private final long[] counts = new long[BUCKET_LIMITS_NANOS.length + 1];
+
+    private long count;
+
+    private long maxNanos;
+
+    private long totalNanos;
+
+    private static long[] bucketLimits() {
+        int bucketCount = (int) Math.ceil(Math.log((double) MAX_BUCKET_NANOS / MIN_BUCKET_NANOS) / Math.log(BUCKET_GROWTH)) + 1;
+        long[] limits = new long[bucketCount];
+        double limit = MIN_BUCKET_NANOS;
+        for (int i = 0; i < bucketCount; i++) {
+            limits[i] = (long) limit;
+            limit *= BUCKET_GROWTH;
+        }
+        return limits;
+    }
+
+    /**
+     * Adds a duration to the histogram. Negative durations count as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * @return Index of the first bucket whose limit is at least nanos
+     */
+    private static int bucketOf(long nanos) {
+        int low = 0;
+        int high = BUCKET_LIMITS_NANOS.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (BUCKET_LIMITS_NANOS[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param percentile 0 to 100 eg. 99 for the 99th percentile
+     * @return Upper bound of the duration below which the given percentage of samples fall, or 0
+     * if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil((percentile / 100.0) * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // The bucket's limit, but never more than the largest duration actually seen
+                return (i < BUCKET_LIMITS_NANOS.length) ? Math.min(BUCKET_LIMITS_NANOS[i], maxNanos) : maxNanos;
+            }
+        }
+        return maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return (count == 0) ? 0 : totalNanos / count;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        maxNanos = 0;
+        totalNanos = 0;
+    }
+
+    /**
+     * @return eg. "n=1200 p50=0.41ms p90=0.52ms p99=1.30ms max=3.02ms"
+     */
+    @Override
+    public String toString() {
+        return "n=" + count
+                + " p50=" + millis(getPercentileNanos(50))
+                + " p90=" + millis(getPercentileNanos(90))
+                + " p99=" + millis(getPercentileNanos(99))
+                + " max=" + millis(maxNanos);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.2fms", nanos / 1000000.0);
+    }
+}
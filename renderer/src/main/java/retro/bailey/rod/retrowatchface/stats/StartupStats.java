@@ -0,0 +1,88 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import java.io.PrintWriter;
+
+/**
+ * How long newly created engines take to reach each stage of starting up, measured from the
+ * creation of the engine, and printed by {@link #dump}.
+ * <p/>
+ * Stages are recorded on the main thread, while dumps come from a binder thread, so all access is
+ * synchronized.
+ */
+public class StartupStats {
+
+    /**
+     * First frame drawn - the background and bars of the theme last used, or blank if not known.
+     */
+    public static final int STAGE_FIRST_FRAME = 0;
+
+    /**
+     * Theme pack opened and the theme to use read from it.
+     */
+    public static final int STAGE_THEME_LOADED = 1;
+
+    /**
+     * First frame drawn in full, with the theme's fonts and glyph caches.
+     */
+    public static final int STAGE_FULL_FIDELITY = 2;
+
+    public static final int STAGE_COUNT = 3;
+
+    private static final String[] STAGE_NAMES = {"firstFrame", "themeLoaded", "fullFidelity"};
+
+    private final LatencyHistogram[] stageHistograms = new LatencyHistogram[STAGE_COUNT];
+
+    // First frames that were drawn from a saved theme snapshot rather than blank
+    private long snapshotFirstFrameCount;
+
+    public StartupStats() {
+        for (int i = 0; i < stageHistograms.length; i++) {
+            stageHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records an engine reaching a stage.
+     *
+     * @param stage             One of the STAGE_ constants
+     * @param sinceCreatedNanos Time since the engine was created
+     */
+    public synchronized void record(int stage, long sinceCreatedNanos) {
+        stageHistograms[stage].record(sinceCreatedNanos);
+    }
+
+    /**
+     * Counts a first frame drawn from a saved theme snapshot. Record the stage too.
+     */
+    public synchronized void countSnapshotFirstFrame() {
+        snapshotFirstFrameCount++;
+    }
+
+    /**
+     * @return Number of engines that have reached the given stage since the last reset
+     */
+    public synchronized long getCount(int stage) {
+        return stageHistograms[stage].getCount();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : stageHistograms) {
+            histogram.reset();
+        }
+        snapshotFirstFrameCount = 0;
+    }
+
+    /**
+     * Prints the stats in a human readable form, for dumpsys.
+     */
+    public synchronized void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Startup stats:");
+        for (int stage = 0; stage < stageHistograms.length; stage++) {
+            writer.println(prefix + "  " + STAGE_NAMES[stage] + ": " + stageHistograms[stage]);
+        }
+        writer.println(prefix + "  First frames from a saved theme: " + snapshotFirstFrameCount);
+    }
+}
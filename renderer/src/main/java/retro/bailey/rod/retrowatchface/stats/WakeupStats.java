@@ -0,0 +1,224 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Counts what wakes the watch face up and whether the frames it then draws show anything new, so
+ * that changes to how often it redraws can be checked with numbers. Everything is counted
+ * separately for each state the face can be in - not visible, visible in ambient mode and visible
+ * in interactive mode - along with how long it has spent in each, giving wakeups per hour.
+ * <p/>
+ * A frame is "wasted" if it looks exactly the same as the frame before it.
+ * <p/>
+ * Times are passed in rather than read from a clock, and should all come from the same monotonic
+ * clock eg. SystemClock.elapsedRealtime(). Counted on the main thread and read from a binder
+ * thread, so all access is synchronized.
+ */
+public class WakeupStats {
+
+    public static final int STATE_INVISIBLE = 0;
+    public static final int STATE_AMBIENT = 1;
+    public static final int STATE_INTERACTIVE = 2;
+    public static final int STATE_COUNT = 3;
+
+    private static final String[] STATE_NAMES = {"invisible", "ambient", "interactive"};
+
+    /**
+     * Messages handled by the engine's handler
+     */
+    public static final int COUNTER_HANDLER_MESSAGES = 0;
+
+    /**
+     * invalidate() calls from the interactive mode update timer
+     */
+    public static final int COUNTER_UPDATE_TIME_INVALIDATES = 1;
+
+    /**
+     * invalidate() calls from onTimeTick, ie. the once a minute ambient mode wakeup
+     */
+    public static final int COUNTER_TIME_TICK_INVALIDATES = 2;
+
+    /**
+     * invalidate() calls from onTapCommand
+     */
+    public static final int COUNTER_TAP_INVALIDATES = 3;
+
+    /**
+     * Frames drawn
+     */
+    public static final int COUNTER_FRAMES = 4;
+
+    /**
+     * Frames that were the same as the frame before
+     */
+    public static final int COUNTER_UNCHANGED_FRAMES = 5;
+
+    /**
+     * invalidate() calls for the next frame of a flip animation
+     */
+    public static final int COUNTER_FLIP_INVALIDATES = 6;
+
+    /**
+     * invalidate() calls for complication data that changed what is shown
+     */
+    public static final int COUNTER_COMPLICATION_INVALIDATES = 7;
+
+    public static final int COUNTER_COUNT = 8;
+
+    private static final String[] COUNTER_NAMES = {"handlerMessages", "updateTimeInvalidates",
+            "timeTickInvalidates", "tapInvalidates", "frames", "unchangedFrames", "flipInvalidates",
+            "complicationInvalidates"};
+
+    private static final double MS_PER_HOUR = 60 * 60 * 1000;
+
+    private final long[][] counts = new long[STATE_COUNT][COUNTER_COUNT];
+
+    // Time spent in each state, not counting the time since the current state was entered
+    private final long[] stateDurationMs = new long[STATE_COUNT];
+
+    private int state = STATE_INVISIBLE;
+
+    private long stateStartMs;
+
+    private long lastFrameSignature;
+
+    private boolean haveLastFrame;
+
+    /**
+     * @param nowMs Current time. Counting starts in the invisible state.
+     */
+    public WakeupStats(long nowMs) {
+        stateStartMs = nowMs;
+    }
+
+    /**
+     * Switches to the given state, if not already in it.
+     *
+     * @param state One of the STATE_ constants
+     * @param nowMs Current time
+     */
+    public synchronized void setState(int state, long nowMs) {
+        if (state == this.state) {
+            return;
+        }
+        stateDurationMs[this.state] += nowMs - stateStartMs;
+        this.state = state;
+        stateStartMs = nowMs;
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Adds one to a counter for the current state.
+     *
+     * @param counter One of the COUNTER_ constants, other than the frame counters which are
+     *                updated by {@link #onFrame}
+     */
+    public synchronized void increment(int counter) {
+        counts[state][counter]++;
+    }
+
+    /**
+     * Counts a frame drawn in the current state.
+     *
+     * @param signature Summary of everything that affects how the frame looks, such that two
+     *                  frames with the same signature look the same
+     */
+    public synchronized void onFrame(long signature) {
+        counts[state][COUNTER_FRAMES]++;
+        if (haveLastFrame && (signature == lastFrameSignature)) {
+            counts[state][COUNTER_UNCHANGED_FRAMES]++;
+        }
+        lastFrameSignature = signature;
+        haveLastFrame = true;
+    }
+
+    /**
+     * Makes the next frame count as changed, eg. because the surface has been recreated and is no
+     * longer showing the last frame.
+     */
+    public synchronized void forgetLastFrame() {
+        haveLastFrame = false;
+    }
+
+    /**
+     * @return Value of a counter for a state, since the last reset
+     */
+    public synchronized long getCount(int state, int counter) {
+        return counts[state][counter];
+    }
+
+    /**
+     * @return Wakeups - handler messages, time ticks and taps - in the given state, since the last
+     * reset
+     */
+    public synchronized long getWakeups(int state) {
+        long[] stateCounts = counts[state];
+        return stateCounts[COUNTER_HANDLER_MESSAGES] + stateCounts[COUNTER_TIME_TICK_INVALIDATES]
+                + stateCounts[COUNTER_TAP_INVALIDATES];
+    }
+
+    /**
+     * @return Fraction (0 to 1) of the frames drawn in the given state that were the same as the
+     * frame before, or 0 if no frames have been drawn
+     */
+    public synchronized double getWastedFrameRatio(int state) {
+        long frames = counts[state][COUNTER_FRAMES];
+        return (frames == 0) ? 0 : (double) counts[state][COUNTER_UNCHANGED_FRAMES] / frames;
+    }
+
+    /**
+     * @return Time spent in the given state since the last reset
+     */
+    public synchronized long getDurationMs(int state, long nowMs) {
+        long durationMs = stateDurationMs[state];
+        if (state == this.state) {
+            durationMs += nowMs - stateStartMs;
+        }
+        return durationMs;
+    }
+
+    /**
+     * @return Average wakeups per hour spent in the given state, or 0 if no time has been spent in it
+     */
+    public synchronized double getWakeupsPerHour(int state, long nowMs) {
+        long durationMs = getDurationMs(state, nowMs);
+        return (durationMs <= 0) ? 0 : getWakeups(state) * MS_PER_HOUR / durationMs;
+    }
+
+    /**
+     * Zeroes all counts and durations. The current state is kept.
+     */
+    public synchronized void reset(long nowMs) {
+        for (int i = 0; i < STATE_COUNT; i++) {
+            for (int j = 0; j < COUNTER_COUNT; j++) {
+                counts[i][j] = 0;
+            }
+            stateDurationMs[i] = 0;
+        }
+        stateStartMs = nowMs;
+    }
+
+    /**
+     * Prints the stats in a human readable form, for dumpsys.
+     */
+    public synchronized void dump(PrintWriter writer, String prefix, long nowMs) {
+        writer.println(prefix + "Wakeup stats (current state " + STATE_NAMES[state] + "):");
+
+        for (int state = 0; state < STATE_COUNT; state++) {
+            StringBuilder line = new StringBuilder(prefix).append("  ").append(STATE_NAMES[state]).append(": ");
+            line.append(String.format(Locale.US, "%.1fmin wakeups/h=%.1f wasted=%.1f%%",
+                    getDurationMs(state, nowMs) / 60000.0,
+                    getWakeupsPerHour(state, nowMs),
+                    getWastedFrameRatio(state) * 100));
+
+            for (int counter = 0; counter < COUNTER_COUNT; counter++) {
+                line.append(' ').append(COUNTER_NAMES[counter]).append('=').append(counts[state][counter]);
+            }
+            writer.println(line);
+        }
+    }
+}
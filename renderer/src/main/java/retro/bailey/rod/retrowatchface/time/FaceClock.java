@@ -0,0 +1,155 @@
+package retro.bailey.rod.retrowatchface.time;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Where the watch face gets the time from, so that tests and soak runs can use a
+ * {@link VirtualFaceClock} instead of the real one.
+ * <p/>
+ * {@link #update} reads the time and breaks it down into the local hour, minute, day etc. in the
+ * clock's time zone, which are then read by the getters. All but the second only change once a
+ * minute, so they are worked out once per local minute and reused by every update until the next
+ * one. Updates within a minute allocate nothing and don't touch the calendar.
+ */
+public abstract class FaceClock {
+
+    private static final long MS_PER_MINUTE = 60 * 1000;
+
+    private final Calendar calendar;
+
+    private TimeZone timeZone;
+
+    private long timeMs;
+
+    // The cached fields are for local times from minuteStartMs (inclusive) to minuteStartMs plus a
+    // minute (exclusive). Nothing is cached unless valid.
+    private long minuteStartMs;
+    private boolean valid;
+
+    private int year;
+    private int month;
+    private int dayOfMonth;
+    private int dayOfWeek;
+    private int hour;
+    private int minute;
+    private int second;
+
+    /**
+     * @param timeZone Time zone to break the time down in
+     */
+    protected FaceClock(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        calendar = Calendar.getInstance(timeZone);
+    }
+
+    /**
+     * @return Wall clock time now, in ms since the epoch
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * @return Time now from a clock that only ever goes forward at a steady rate, for timing frames
+     * and animations. Not related to the wall clock.
+     */
+    public abstract long uptimeMillis();
+
+    /**
+     * Breaks the time down in the given time zone from now on, eg. because the user has moved.
+     * Takes effect from the next {@link #update}.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        if (!timeZone.equals(this.timeZone)) {
+            this.timeZone = timeZone;
+            calendar.setTimeZone(timeZone);
+            invalidate();
+        }
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Forgets the cached fields, so the next {@link #update} works them out again. Call when the
+     * rules of the time zone may have changed.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Reads the time now and updates the fields from it.
+     *
+     * @return true if anything other than the second has changed since the last update, including
+     * on the first update
+     */
+    public boolean update() {
+        timeMs = currentTimeMillis();
+        if (valid && (timeMs >= minuteStartMs) && (timeMs < minuteStartMs + MS_PER_MINUTE)) {
+            second = (int) ((timeMs - minuteStartMs) / 1000);
+            return false;
+        }
+
+        calendar.setTimeInMillis(timeMs);
+        year = calendar.get(Calendar.YEAR);
+        month = calendar.get(Calendar.MONTH);
+        dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+        // Calendar.DAY_OF_WEEK starts from SUNDAY = 1, ours from Sunday = 0
+        dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+        hour = calendar.get(Calendar.HOUR_OF_DAY);
+        minute = calendar.get(Calendar.MINUTE);
+        second = calendar.get(Calendar.SECOND);
+
+        minuteStartMs = timeMs - (second * 1000) - calendar.get(Calendar.MILLISECOND);
+        valid = true;
+        return true;
+    }
+
+    /**
+     * @return Wall clock time read by the last {@link #update}
+     */
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return Month, from January = 0
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * @return Day of the month, from 1
+     */
+    public int getDayOfMonth() {
+        return dayOfMonth;
+    }
+
+    /**
+     * @return Day of the week, from Sunday = 0
+     */
+    public int getDayOfWeek() {
+        return dayOfWeek;
+    }
+
+    /**
+     * @return Hour of the day, 0 to 23
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+}
@@ -0,0 +1,54 @@
+package retro.bailey.rod.retrowatchface.time;
+
+import java.util.TimeZone;
+
+/**
+ * {@link FaceClock} that only moves when told to, so that a test can step through a day or a week
+ * of the watch face in a moment, and land exactly on midnight or a daylight saving change.
+ * <p/>
+ * {@link #advance} moves the wall clock and uptime on together, as time passing does.
+ * {@link #setTimeMillis} moves only the wall clock, as the user or network setting the time does.
+ */
+public class VirtualFaceClock extends FaceClock {
+
+    private long timeMs;
+
+    private long uptimeMs;
+
+    /**
+     * @param timeMs   Wall clock time to start at
+     * @param timeZone Time zone to start in
+     */
+    public VirtualFaceClock(long timeMs, TimeZone timeZone) {
+        super(timeZone);
+        this.timeMs = timeMs;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return timeMs;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return uptimeMs;
+    }
+
+    /**
+     * Lets the given time pass.
+     */
+    public void advance(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("Time can't go backwards: " + ms);
+        }
+        timeMs += ms;
+        uptimeMs += ms;
+    }
+
+    /**
+     * Sets the wall clock, forwards or back. Uptime is unaffected.
+     */
+    public void setTimeMillis(long timeMs) {
+        this.timeMs = timeMs;
+    }
+}
@@ -0,0 +1,157 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ThemePackReader} reads the index of a pack written as by wear/themes.gradle,
+ * and that {@link LazyThemeCatalog} only reads the themes asked for.
+ */
+public class LazyThemeCatalogTest {
+
+    private static final int THEME_COUNT = 500;
+
+    /**
+     * Counts the reads made of a pack held in memory.
+     */
+    private static class CountingSource extends ByteArrayThemePackSource {
+        int reads;
+
+        CountingSource(byte[] pack) {
+            super(pack);
+        }
+
+        @Override
+        public void read(long position, byte[] buffer) throws EOFException {
+            reads++;
+            super.read(position, buffer);
+        }
+    }
+
+    @Test
+    public void readsOnlyTheIndexUpFront() throws Exception {
+        byte[] pack = pack(THEME_COUNT);
+        CountingSource source = new CountingSource(pack);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(pack);
+        LazyThemeCatalog catalog = ThemePackReader.readCatalog(inputStream, source);
+
+        // Stream left at the first record
+        assertEquals(THEME_COUNT * ThemePackReader.RECORD_LENGTH, inputStream.available());
+        assertEquals(THEME_COUNT, catalog.size());
+        assertEquals("Theme 123", catalog.getName(123));
+        assertEquals(123, catalog.indexOf("Theme 123"));
+        assertEquals(-1, catalog.indexOf("No such theme"));
+        assertEquals(0, catalog.getLoadedCount());
+        assertEquals(0, source.reads);
+    }
+
+    @Test
+    public void readsEachThemeOnceWhenAskedFor() throws Exception {
+        byte[] pack = pack(THEME_COUNT);
+        CountingSource source = new CountingSource(pack);
+        LazyThemeCatalog catalog = ThemePackReader.readCatalog(new ByteArrayInputStream(pack), source);
+
+        PackedTheme theme = catalog.get(321);
+        assertEquals("Theme 321", theme.name);
+        assertEquals(0xFF000000 | 321, theme.backgroundColor);
+        assertEquals("fonts/B.ttf", theme.time.textFont);
+        assertEquals(321 % 2 == 1, theme.showSeconds);
+
+        assertSame(theme, catalog.get(321));
+        assertEquals(1, catalog.getLoadedCount());
+        assertEquals(1, source.reads);
+    }
+
+    @Test
+    public void contentHashFollowsRecord() throws Exception {
+        LazyThemeCatalog catalog = ThemePackReader.readCatalog(new ByteArrayInputStream(pack(3)),
+                new ByteArrayThemePackSource(pack(3)));
+        assertEquals(0x1000, catalog.getContentHash(0));
+        assertEquals(0x1002, catalog.getContentHash(2));
+    }
+
+    @Test
+    public void readAllMatchesLazy() throws Exception {
+        byte[] pack = pack(20);
+        List<PackedTheme> themes = ThemePackReader.read(new ByteArrayInputStream(pack));
+        LazyThemeCatalog catalog = ThemePackReader.readCatalog(new ByteArrayInputStream(pack),
+                new ByteArrayThemePackSource(pack));
+
+        assertEquals(20, themes.size());
+        for (int i = 0; i < themes.size(); i++) {
+            assertEquals(themes.get(i).contentHash(), catalog.get(i).contentHash());
+        }
+    }
+
+    @Test
+    public void rejectsOldVersion() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x5254484D);
+        out.writeShort(1);
+        try {
+            ThemePackReader.readCatalog(new ByteArrayInputStream(bytes.toByteArray()), null);
+            fail("Read a version 1 pack");
+        } catch (IOException expected) {
+            // Packs are always rebuilt with the app, so old versions needn't be read
+        }
+    }
+
+    /**
+     * @return A pack in the format written by wear/themes.gradle, with made up content hashes
+     */
+    private static byte[] pack(int themeCount) throws IOException {
+        String[] fonts = {"fonts/A.ttf", "fonts/B.ttf"};
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(0x5254484D);
+        out.writeShort(2);
+        out.writeShort(fonts.length);
+        for (String font : fonts) {
+            out.writeUTF(font);
+        }
+        out.writeShort(themeCount);
+        for (int i = 0; i < themeCount; i++) {
+            out.writeUTF("Theme " + i);
+            out.writeInt(0);
+            out.writeInt(0x1000 + i);
+        }
+        int recordsStart = header.size();
+
+        // Same again now the offsets are known
+        header.reset();
+        out.writeInt(0x5254484D);
+        out.writeShort(2);
+        out.writeShort(fonts.length);
+        for (String font : fonts) {
+            out.writeUTF(font);
+        }
+        out.writeShort(themeCount);
+        for (int i = 0; i < themeCount; i++) {
+            out.writeUTF("Theme " + i);
+            out.writeInt(recordsStart + (i * ThemePackReader.RECORD_LENGTH));
+            out.writeInt(0x1000 + i);
+        }
+
+        for (int i = 0; i < themeCount; i++) {
+            out.writeInt(0xFF000000 | i);
+            out.writeByte(i % 2);
+            for (int panel = 0; panel < 3; panel++) {
+                out.writeInt(0xFF112233);
+                out.writeInt(0xFFFFFFFF);
+                out.writeShort(panel % 2);
+                out.writeFloat(24);
+            }
+        }
+        return header.toByteArray();
+    }
+}
@@ -0,0 +1,42 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link ThemeSnapshot} survives being saved and read back, and that anything else
+ * read back is ignored.
+ */
+public class ThemeSnapshotTest {
+
+    private static final PackedTheme DINER = new PackedTheme("Diner", 0xFF000000,
+            new PackedPanel(0xFFE53935, 0xFFFFFFFF, "fonts/Lobster-Regular.ttf", 30),
+            new PackedPanel(0x80FFEB3B, 0xFF000000, "fonts/Ultra.ttf", 48),
+            new PackedPanel(0xFF1E88E5, 0xFFFFFFFF, null, 24),
+            false);
+
+    @Test
+    public void roundTrips() throws Exception {
+        ThemeSnapshot snapshot = ThemeSnapshot.of(DINER);
+        ThemeSnapshot decoded = ThemeSnapshot.decode(snapshot.encode());
+
+        assertEquals(snapshot, decoded);
+        assertEquals("Diner", decoded.name);
+        assertEquals(0xFF000000, decoded.backgroundColor);
+        assertEquals(0x80FFEB3B, decoded.timeBackgroundColor);
+        assertEquals("fonts/Lobster-Regular.ttf", decoded.dayFont);
+        assertNull(decoded.dateFont);
+    }
+
+    @Test
+    public void unreadableSnapshotsIgnored() throws Exception {
+        String encoded = ThemeSnapshot.of(DINER).encode();
+
+        assertNull(ThemeSnapshot.decode(null));
+        assertNull(ThemeSnapshot.decode(""));
+        assertNull(ThemeSnapshot.decode("0" + encoded.substring(1)));
+        assertNull(ThemeSnapshot.decode(encoded + "\nextra"));
+        assertNull(ThemeSnapshot.decode(encoded.replace("ff000000", "black")));
+    }
+}
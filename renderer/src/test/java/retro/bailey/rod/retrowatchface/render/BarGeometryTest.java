@@ -0,0 +1,58 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks where {@link BarGeometry} makes room for complications in the top and bottom bars.
+ */
+public class BarGeometryTest {
+
+    @Test
+    public void noComplicationsByDefault() throws Exception {
+        BarGeometry geometry = new BarGeometry(320, 320, true, 30);
+
+        assertNull(geometry.complicationBounds(FaceCanvas.PANEL_DAY));
+        assertNull(geometry.complicationBounds(FaceCanvas.PANEL_TIME));
+        assertNull(geometry.complicationBounds(FaceCanvas.PANEL_DATE));
+        assertEquals(geometry.topBar.height(), geometry.dayTextBounds.height());
+    }
+
+    @Test
+    public void complicationsTakeInnerEdgeOfBars() throws Exception {
+        BarGeometry plain = new BarGeometry(320, 320, true, 30);
+        BarGeometry geometry = new BarGeometry(320, 320, true, 30, true, true);
+
+        // Beneath the day, in the same bar
+        BarGeometry.Box day = geometry.dayComplicationBounds;
+        assertEquals(geometry.dayTextBounds.bottom, day.top);
+        assertEquals(geometry.topBar.top, geometry.dayTextBounds.top);
+        assertEquals(geometry.topBar.bottom, day.bottom);
+
+        // Above the date
+        BarGeometry.Box date = geometry.dateComplicationBounds;
+        assertEquals(geometry.bottomBar.top, date.top);
+        assertEquals(date.bottom, geometry.dateTextBounds.top);
+        assertEquals(geometry.bottomBar.bottom, geometry.dateTextBounds.bottom);
+
+        // Nearer the middle of a round screen, so wider than the text above or below them
+        assertTrue(day.width() > geometry.dayTextBounds.width());
+        assertTrue(date.width() > geometry.dateTextBounds.width());
+
+        // Bars and time unchanged
+        assertTrue(geometry.isFor(320, 320, true, 30));
+        assertEquals(plain.topBar.toString(), geometry.topBar.toString());
+        assertEquals(plain.timeTextBounds.toString(), geometry.timeTextBounds.toString());
+    }
+
+    @Test
+    public void complicationsOnlyWhereAsked() throws Exception {
+        BarGeometry geometry = new BarGeometry(280, 280, false, 0, false, true);
+
+        assertNull(geometry.complicationBounds(FaceCanvas.PANEL_DAY));
+        assertNotNull(geometry.complicationBounds(FaceCanvas.PANEL_DATE));
+        // Square screens show the whole bar, less the margins
+        assertEquals(geometry.dateTextBounds.width(), geometry.dateComplicationBounds.width());
+    }
+}
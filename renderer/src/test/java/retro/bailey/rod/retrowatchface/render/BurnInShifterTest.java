@@ -0,0 +1,49 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link BurnInShifter} moves a step every minute, and only when enabled.
+ */
+public class BurnInShifterTest {
+
+    private static final long MINUTE_MS = 60 * 1000L;
+
+    private final BurnInShifter shifter = new BurnInShifter(4);
+
+    @Test
+    public void noOffsetWhenDisabled() throws Exception {
+        for (long minute = 0; minute < 20; minute++) {
+            assertEquals(0, shifter.getOffsetX(minute * MINUTE_MS));
+            assertEquals(0, shifter.getOffsetY(minute * MINUTE_MS));
+        }
+    }
+
+    @Test
+    public void sameOffsetThroughoutAMinute() throws Exception {
+        shifter.setEnabled(true);
+        long start = 1234 * MINUTE_MS;
+        assertEquals(shifter.getOffsetX(start), shifter.getOffsetX(start + MINUTE_MS - 1));
+        assertEquals(shifter.getOffsetY(start), shifter.getOffsetY(start + MINUTE_MS - 1));
+    }
+
+    @Test
+    public void movesOneStepAtATimeWithinTheLimit() throws Exception {
+        shifter.setEnabled(true);
+
+        boolean moved = false;
+        for (long minute = 0; minute < 20; minute++) {
+            int x = shifter.getOffsetX(minute * MINUTE_MS);
+            int y = shifter.getOffsetY(minute * MINUTE_MS);
+            int nextX = shifter.getOffsetX((minute + 1) * MINUTE_MS);
+            int nextY = shifter.getOffsetY((minute + 1) * MINUTE_MS);
+
+            assertTrue(Math.abs(x) <= 4 && Math.abs(y) <= 4);
+            assertTrue(Math.abs(nextX - x) <= 4 && Math.abs(nextY - y) <= 4);
+            moved |= (x != nextX) || (y != nextY);
+        }
+        assertTrue(moved);
+    }
+}
@@ -0,0 +1,95 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link DirtyTracker} finds which panels, and which digits of them, have changed.
+ */
+public class DirtyTrackerTest {
+
+    private final DirtyTracker tracker = new DirtyTracker();
+
+    @Test
+    public void everythingChangedAtFirst() throws Exception {
+        assertFalse(tracker.isAnyValid());
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_TIME, "12:37"));
+        assertTrue(tracker.isAnyValid());
+    }
+
+    @Test
+    public void sameTextUnchanged() throws Exception {
+        update(FaceCanvas.PANEL_DAY, "Monday");
+        assertEquals(DirtyTracker.UNCHANGED, update(FaceCanvas.PANEL_DAY, "Monday"));
+    }
+
+    @Test
+    public void panelsTrackedSeparately() throws Exception {
+        update(FaceCanvas.PANEL_DAY, "Monday");
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_DATE, "Monday"));
+        assertEquals(DirtyTracker.UNCHANGED, update(FaceCanvas.PANEL_DAY, "Monday"));
+    }
+
+    @Test
+    public void oneDigitChanged() throws Exception {
+        update(FaceCanvas.PANEL_TIME, "12:37");
+        assertEquals(DirtyTracker.CHANGED_DIGITS, update(FaceCanvas.PANEL_TIME, "12:38"));
+        assertEquals(4, tracker.getFirstChanged());
+        assertEquals(4, tracker.getLastChanged());
+    }
+
+    @Test
+    public void rangeOfDigitsChanged() throws Exception {
+        update(FaceCanvas.PANEL_TIME, "12:59");
+        assertEquals(DirtyTracker.CHANGED_DIGITS, update(FaceCanvas.PANEL_TIME, "13:00"));
+        assertEquals(1, tracker.getFirstChanged());
+        assertEquals(4, tracker.getLastChanged());
+    }
+
+    @Test
+    public void lengthChangeChangesAll() throws Exception {
+        update(FaceCanvas.PANEL_TIME, "9:59");
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_TIME, "10:00"));
+    }
+
+    @Test
+    public void nonDigitChangeChangesAll() throws Exception {
+        update(FaceCanvas.PANEL_DAY, "Monday");
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_DAY, "Sunday"));
+        update(FaceCanvas.PANEL_TIME, "1:00");
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_TIME, "10:0"));
+    }
+
+    @Test
+    public void invalidateAllChangesAll() throws Exception {
+        update(FaceCanvas.PANEL_TIME, "12:37");
+        tracker.invalidateAll();
+        assertFalse(tracker.isAnyValid());
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_TIME, "12:37"));
+    }
+
+    @Test
+    public void invalidateChangesOnlyThatPanel() throws Exception {
+        update(FaceCanvas.PANEL_DAY, "Monday");
+        update(FaceCanvas.PANEL_TIME, "12:37");
+        tracker.invalidate(FaceCanvas.PANEL_DAY);
+        assertTrue(tracker.isAnyValid());
+        assertEquals(DirtyTracker.CHANGED_ALL, update(FaceCanvas.PANEL_DAY, "Monday"));
+        assertEquals(DirtyTracker.UNCHANGED, update(FaceCanvas.PANEL_TIME, "12:37"));
+    }
+
+    @Test
+    public void textOffsetWithinBuffer() throws Exception {
+        char[] buffer = "xx12:37xx".toCharArray();
+        tracker.update(FaceCanvas.PANEL_TIME, buffer, 2, 5);
+        buffer[6] = '8';
+        assertEquals(DirtyTracker.CHANGED_DIGITS, tracker.update(FaceCanvas.PANEL_TIME, buffer, 2, 5));
+        assertEquals(4, tracker.getFirstChanged());
+    }
+
+    private int update(int panel, String text) {
+        char[] chars = text.toCharArray();
+        return tracker.update(panel, chars, 0, chars.length);
+    }
+}
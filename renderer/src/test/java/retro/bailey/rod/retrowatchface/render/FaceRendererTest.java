@@ -0,0 +1,118 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks what {@link FaceRenderer} draws, and where, using a {@link RecordingFaceCanvas}, and that
+ * drawing frames allocates nothing once warmed up.
+ */
+public class FaceRendererTest {
+
+    private final TimeTextFormatter formatter = new TimeTextFormatter(Locale.ENGLISH);
+
+    private final FaceRenderer renderer = new FaceRenderer(formatter);
+
+    private final BarGeometry geometry = new BarGeometry(320, 320, true, 30);
+
+    private final RecordingFaceCanvas canvas = new RecordingFaceCanvas(geometry);
+
+    @Test
+    public void drawsBarsThenTimeDayAndDate() throws Exception {
+        drawFrame(13, 7, 9, false);
+
+        assertEquals(4, canvas.getOpCount());
+        assertEquals(RecordingFaceCanvas.OP_BARS, canvas.getOpType(0));
+
+        assertText(1, FaceCanvas.PANEL_TIME, "13:07");
+        assertText(2, FaceCanvas.PANEL_DAY, "Wednesday");
+        assertText(3, FaceCanvas.PANEL_DATE, "28 September");
+    }
+
+    @Test
+    public void drawsSecondsWhenAsked() throws Exception {
+        drawFrame(13, 7, 9, true);
+        assertText(1, FaceCanvas.PANEL_TIME, "13:07:09");
+    }
+
+    @Test
+    public void centersTextInTheVisiblePartOfEachBar() throws Exception {
+        drawFrame(13, 7, 9, false);
+
+        for (int i = 1; i < canvas.getOpCount(); i++) {
+            BarGeometry.Box bounds = geometry.textBounds(canvas.getPanel(i));
+            assertEquals(geometry.centerX, canvas.getX(i), 0);
+            assertEquals(bounds.exactCenterY(), canvas.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void roundScreenTextBoundsAreInsideTheCircle() throws Exception {
+        float radius = geometry.width / 2.0F;
+        for (int panel = FaceCanvas.PANEL_DAY; panel <= FaceCanvas.PANEL_DATE; panel++) {
+            BarGeometry.Box bounds = geometry.textBounds(panel);
+            assertTrue(isInsideCircle(bounds.left, bounds.top, radius));
+            assertTrue(isInsideCircle(bounds.right, bounds.bottom, radius));
+            assertTrue(bounds.width() > 0);
+        }
+    }
+
+    @Test
+    public void steadyStateDrawingAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        char[] dayName = new char[formatter.getMaxDayNameLength()];
+        char[] date = new char[formatter.getMaxDateLength()];
+
+        // Warm up so any one-off class loading or JIT work is out of the way. Compiling the loop
+        // allocates a little, and takes a few hours of frames to finish.
+        for (int i = 0; i < 4; i++) {
+            drawOneHour(dayName, date);
+        }
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        drawOneHour(dayName, date);
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, after - before);
+    }
+
+    /**
+     * Draws a frame for every second of an hour, as the engine does in interactive mode.
+     */
+    private void drawOneHour(char[] dayName, char[] date) {
+        for (int secondOfHour = 0; secondOfHour < 60 * 60; secondOfHour++) {
+            canvas.reset();
+            renderer.drawFrame(canvas, 13, secondOfHour / 60, secondOfHour % 60, true, secondOfHour % 2 == 0, true,
+                    dayName, formatter.formatDayName(3, dayName),
+                    date, formatter.formatDate(28, 8, date));
+        }
+    }
+
+    private void drawFrame(int hour, int minute, int second, boolean showSeconds) {
+        char[] dayName = new char[formatter.getMaxDayNameLength()];
+        char[] date = new char[formatter.getMaxDateLength()];
+
+        canvas.reset();
+        renderer.drawFrame(canvas, hour, minute, second, showSeconds, true, false,
+                dayName, formatter.formatDayName(3, dayName),
+                date, formatter.formatDate(28, 8, date));
+    }
+
+    private void assertText(int index, int panel, String text) {
+        assertEquals(RecordingFaceCanvas.OP_TEXT, canvas.getOpType(index));
+        assertEquals(panel, canvas.getPanel(index));
+        assertEquals(text, canvas.getText(index).toString());
+    }
+
+    private static boolean isInsideCircle(float x, float y, float radius) {
+        float dx = x - radius;
+        float dy = y - radius;
+        return (dx * dx) + (dy * dy) <= radius * radius;
+    }
+}
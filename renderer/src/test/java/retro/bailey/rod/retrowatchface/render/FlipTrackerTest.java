@@ -0,0 +1,93 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link FlipTracker} flips only the digits that changed, and only when asked to.
+ */
+public class FlipTrackerTest {
+
+    private static final long DURATION_MS = 400;
+
+    private final FlipTracker tracker = new FlipTracker(DURATION_MS);
+
+    @Test
+    public void firstTextDoesNotFlip() throws Exception {
+        assertFalse(update("12:37", 0, true));
+        assertFalse(tracker.isFlipping());
+        assertEquals(1.0F, tracker.getProgress(), 0);
+    }
+
+    @Test
+    public void changedDigitsFlip() throws Exception {
+        update("12:59", 0, false);
+        assertTrue(update("13:00", 1000, true));
+        assertTrue(tracker.isFlipping());
+
+        assertFalse(tracker.isFlipped(0));
+        assertTrue(tracker.isFlipped(1));
+        assertFalse(tracker.isFlipped(2));
+        assertTrue(tracker.isFlipped(3));
+        assertTrue(tracker.isFlipped(4));
+        assertEquals(1, tracker.getFirstFlipped());
+        assertEquals(4, tracker.getLastFlipped());
+        assertEquals("12:59", new String(tracker.getFromText(), 0, tracker.getFromCount()));
+    }
+
+    @Test
+    public void progressFollowsFrameTime() throws Exception {
+        update("12:37", 0, false);
+        update("12:38", 1000, true);
+        assertEquals(0.0F, tracker.getProgress(), 0);
+
+        assertTrue(update("12:38", 1200, false));
+        assertEquals(0.5F, tracker.getProgress(), 0.001F);
+        assertTrue(tracker.isFlipping());
+
+        // The last frame of the flip is drawn, then no more
+        assertTrue(update("12:38", 1450, false));
+        assertEquals(1.0F, tracker.getProgress(), 0);
+        assertFalse(tracker.isFlipping());
+        assertFalse(update("12:38", 1500, false));
+    }
+
+    @Test
+    public void replacedWhenNotAskedToFlip() throws Exception {
+        update("12:37", 0, false);
+        assertFalse(update("12:38", 1000, false));
+        assertFalse(tracker.isFlipping());
+    }
+
+    @Test
+    public void nonDigitChangeReplaced() throws Exception {
+        update("9:59", 0, false);
+        assertFalse(update("10:00", 1000, true));
+        update("1:00", 2000, false);
+        assertFalse(update("10:0", 3000, true));
+    }
+
+    @Test
+    public void resetForgetsLastText() throws Exception {
+        update("12:37", 0, false);
+        update("12:38", 1000, true);
+        tracker.reset();
+        assertFalse(tracker.isFlipping());
+        assertFalse(update("12:39", 2000, true));
+    }
+
+    @Test
+    public void noFlipsWithoutDuration() throws Exception {
+        FlipTracker instant = new FlipTracker(0);
+        char[] text = "12:37".toCharArray();
+        instant.update(text, 0, text.length, 0, true);
+        text[4] = '8';
+        assertFalse(instant.update(text, 0, text.length, 1000, true));
+    }
+
+    private boolean update(String text, long frameTimeMs, boolean flipChanges) {
+        char[] chars = ("xx" + text).toCharArray();
+        return tracker.update(chars, 2, text.length(), frameTimeMs, flipChanges);
+    }
+}
@@ -0,0 +1,62 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link FramePacer} keeps frames on a fixed grid and counts those missed.
+ */
+public class FramePacerTest {
+
+    private static final long INTERVAL_MS = 33;
+
+    private final FramePacer pacer = new FramePacer(INTERVAL_MS);
+
+    @Test
+    public void firstFrameStartsRun() throws Exception {
+        assertFalse(pacer.isRunning());
+        assertEquals(INTERVAL_MS, pacer.onFrame(1000));
+        assertTrue(pacer.isRunning());
+        assertEquals(1, pacer.getFrameCount());
+    }
+
+    @Test
+    public void lateFrameDoesNotPushBackTheNext() throws Exception {
+        pacer.onFrame(1000);
+        // Due at 1033, drawn at 1040, so the next is still due at 1066
+        assertEquals(26, pacer.onFrame(1040));
+        assertEquals(0, pacer.getMissedFrameCount());
+    }
+
+    @Test
+    public void framesMissedCounted() throws Exception {
+        pacer.onFrame(1000);
+        pacer.onFrame(1033);
+        // Slots 2 and 3 missed
+        assertEquals(1000 + (5 * INTERVAL_MS) - 1140, pacer.onFrame(1140));
+        assertEquals(2, pacer.getMissedFrameCount());
+        assertEquals(3, pacer.getFrameCount());
+    }
+
+    @Test
+    public void earlyFrameSharesSlot() throws Exception {
+        pacer.onFrame(1000);
+        pacer.onFrame(1033);
+        assertEquals(20, pacer.onFrame(1046));
+        assertEquals(0, pacer.getMissedFrameCount());
+    }
+
+    @Test
+    public void stopStartsNewRun() throws Exception {
+        pacer.onFrame(1000);
+        pacer.onFrame(1200);
+        pacer.stop();
+        assertFalse(pacer.isRunning());
+        assertEquals(5, pacer.getMissedFrameCount());
+
+        assertEquals(INTERVAL_MS, pacer.onFrame(5000));
+        assertEquals(0, pacer.getMissedFrameCount());
+        assertEquals(1, pacer.getFrameCount());
+    }
+}
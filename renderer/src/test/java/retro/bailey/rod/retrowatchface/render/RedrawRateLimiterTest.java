@@ -0,0 +1,63 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link RedrawRateLimiter} draws the first change at once and gathers up those that
+ * follow quickly into one frame.
+ */
+public class RedrawRateLimiterTest {
+
+    private static final long INTERVAL_MS = 2000;
+
+    private final RedrawRateLimiter limiter = new RedrawRateLimiter(INTERVAL_MS);
+
+    @Test
+    public void firstChangeDrawnAtOnce() throws Exception {
+        assertEquals(0, limiter.request(1000));
+    }
+
+    @Test
+    public void changesAfterQuietSpellDrawnAtOnce() throws Exception {
+        limiter.onFrame(1000);
+        assertEquals(0, limiter.request(1000 + INTERVAL_MS));
+        limiter.onFrame(1000 + INTERVAL_MS);
+        assertEquals(0, limiter.request(60000));
+    }
+
+    @Test
+    public void quickChangesShareOneDelayedFrame() throws Exception {
+        limiter.request(1000);
+        assertTrue(limiter.onFrame(1000));
+
+        assertEquals(1500, limiter.request(1500));
+        assertEquals(RedrawRateLimiter.ALREADY_PENDING, limiter.request(1800));
+        assertEquals(RedrawRateLimiter.ALREADY_PENDING, limiter.request(2900));
+
+        assertTrue(limiter.onFrame(3000));
+        assertEquals(INTERVAL_MS, limiter.request(3000));
+    }
+
+    @Test
+    public void otherFrameShowsPendingChanges() throws Exception {
+        limiter.onFrame(1000);
+        assertFalse(limiter.onFrame(1500));
+
+        assertEquals(1500, limiter.request(2000));
+        // eg. the minute changed first
+        assertTrue(limiter.onFrame(2100));
+        assertEquals(2000, limiter.request(2100));
+    }
+
+    @Test
+    public void resetDropsPendingRedraw() throws Exception {
+        limiter.onFrame(1000);
+        limiter.request(1500);
+        limiter.reset();
+
+        assertFalse(limiter.onFrame(9000));
+        assertEquals(0, limiter.request(20000));
+    }
+}
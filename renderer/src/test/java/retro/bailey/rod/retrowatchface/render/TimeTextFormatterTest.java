@@ -0,0 +1,100 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the text written by {@link TimeTextFormatter} and that formatting a frame's worth of
+ * text allocates nothing once warmed up.
+ */
+public class TimeTextFormatterTest {
+
+    private final TimeTextFormatter formatter = new TimeTextFormatter(Locale.ENGLISH);
+
+    private final char[] timeChars = new char[formatter.getMaxTimeLength()];
+    private final char[] dayNameChars = new char[formatter.getMaxDayNameLength()];
+    private final char[] dateChars = new char[formatter.getMaxDateLength()];
+
+    @Test
+    public void formatTime_24Hour() throws Exception {
+        assertEquals("0:05", time(0, 5, 0, false, true, false));
+        assertEquals("9:05", time(9, 5, 0, false, true, false));
+        assertEquals("21:45", time(21, 45, 0, false, true, true));
+        assertEquals("21:45:07", time(21, 45, 7, true, true, false));
+    }
+
+    @Test
+    public void formatTime_12Hour() throws Exception {
+        assertEquals("12:05", time(0, 5, 0, false, false, false));
+        assertEquals("12:05 AM", time(0, 5, 0, false, false, true));
+        assertEquals("12:30 PM", time(12, 30, 0, false, false, true));
+        assertEquals("9:45:59 PM", time(21, 45, 59, true, false, true));
+    }
+
+    @Test
+    public void formatDayName() throws Exception {
+        assertEquals("Sunday", new String(dayNameChars, 0, formatter.formatDayName(0, dayNameChars)));
+        assertEquals("Wednesday", new String(dayNameChars, 0, formatter.formatDayName(3, dayNameChars)));
+    }
+
+    @Test
+    public void formatDate() throws Exception {
+        assertEquals("7 June", new String(dateChars, 0, formatter.formatDate(7, 5, dateChars)));
+        assertEquals("31 December", new String(dateChars, 0, formatter.formatDate(31, 11, dateChars)));
+    }
+
+    @Test
+    public void samplesCoverTheLongestText() throws Exception {
+        assertEquals(7, formatter.getDayNameSamples().length);
+        assertTrue(Arrays.asList(formatter.getDayNameSamples()).contains("Wednesday"));
+        assertTrue(Arrays.asList(formatter.getDateSamples()).contains("28 September"));
+        assertTrue(Arrays.asList(formatter.getTimeSamples(true, true)).contains("88:88:88 PM"));
+    }
+
+    @Test
+    public void samplesAreSameArrayEachTime() throws Exception {
+        // So text fitting can remember results by array
+        assertSame(formatter.getDayNameSamples(), formatter.getDayNameSamples());
+        assertSame(formatter.getDateSamples(), formatter.getDateSamples());
+        assertSame(formatter.getTimeSamples(false, true), formatter.getTimeSamples(false, true));
+        assertNotSame(formatter.getTimeSamples(false, true), formatter.getTimeSamples(true, true));
+        assertFalse(Arrays.asList(formatter.getTimeSamples(false, false)).contains("88:88:88"));
+    }
+
+    @Test
+    public void steadyStateFormattingAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up so any one-off class loading or JIT work is out of the way
+        formatOneDay();
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        formatOneDay();
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, after - before);
+    }
+
+    /**
+     * Formats the text for every minute of a day, as drawn by the engine.
+     */
+    private void formatOneDay() {
+        for (int minuteOfDay = 0; minuteOfDay < 24 * 60; minuteOfDay++) {
+            formatter.formatTime(minuteOfDay / 60, minuteOfDay % 60, 0, false, minuteOfDay % 2 == 0, true, timeChars);
+            formatter.formatDayName(minuteOfDay % 7, dayNameChars);
+            formatter.formatDate(1 + (minuteOfDay % 31), minuteOfDay % 12, dateChars);
+        }
+    }
+
+    private String time(int hour, int minute, int second, boolean showSeconds, boolean use24Hour, boolean showAmPm) {
+        int length = formatter.formatTime(hour, minute, second, showSeconds, use24Hour, showAmPm, timeChars);
+        return new String(timeChars, 0, length);
+    }
+}
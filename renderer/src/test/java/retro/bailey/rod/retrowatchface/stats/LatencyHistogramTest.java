@@ -0,0 +1,78 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the percentiles read from a {@link LatencyHistogram} and that recording allocates nothing.
+ */
+public class LatencyHistogramTest {
+
+    private static final long MS = 1000000L;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramReportsZero() throws Exception {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void percentilesAreWithinTenPercent() throws Exception {
+        // 1ms to 100ms, one sample each
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * MS);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertWithinTenPercent(50 * MS, histogram.getPercentileNanos(50));
+        assertWithinTenPercent(90 * MS, histogram.getPercentileNanos(90));
+        assertWithinTenPercent(99 * MS, histogram.getPercentileNanos(99));
+        assertEquals(100 * MS, histogram.getMaxNanos());
+        assertEquals(100 * MS, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void durationsBeyondTheLastBucketAreCounted() throws Exception {
+        histogram.record(5000 * MS);
+        assertEquals(5000 * MS, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void resetForgetsEverything() throws Exception {
+        histogram.record(3 * MS);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void recordingAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        recordMany();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        recordMany();
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, after - before);
+    }
+
+    private void recordMany() {
+        for (long nanos = 0; nanos < 100 * MS; nanos += 10000) {
+            histogram.record(nanos);
+        }
+    }
+
+    private static void assertWithinTenPercent(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                (actual >= expected) && (actual <= expected * 1.1));
+    }
+}
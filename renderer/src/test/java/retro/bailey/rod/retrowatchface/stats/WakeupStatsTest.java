@@ -0,0 +1,81 @@
+package retro.bailey.rod.retrowatchface.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link WakeupStats} splits counts and time between states, and spots unchanged frames.
+ */
+public class WakeupStatsTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final WakeupStats stats = new WakeupStats(0);
+
+    @Test
+    public void countsGoToTheCurrentState() throws Exception {
+        stats.setState(WakeupStats.STATE_INTERACTIVE, 0);
+        stats.increment(WakeupStats.COUNTER_HANDLER_MESSAGES);
+        stats.increment(WakeupStats.COUNTER_UPDATE_TIME_INVALIDATES);
+
+        stats.setState(WakeupStats.STATE_AMBIENT, 1000);
+        stats.increment(WakeupStats.COUNTER_TIME_TICK_INVALIDATES);
+
+        assertEquals(1, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_HANDLER_MESSAGES));
+        assertEquals(1, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_UPDATE_TIME_INVALIDATES));
+        assertEquals(0, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_TIME_TICK_INVALIDATES));
+        assertEquals(1, stats.getCount(WakeupStats.STATE_AMBIENT, WakeupStats.COUNTER_TIME_TICK_INVALIDATES));
+
+        // Invalidates from the update timer follow a handler message, so aren't extra wakeups
+        assertEquals(1, stats.getWakeups(WakeupStats.STATE_INTERACTIVE));
+        assertEquals(1, stats.getWakeups(WakeupStats.STATE_AMBIENT));
+    }
+
+    @Test
+    public void wakeupsPerHourUseTimeInState() throws Exception {
+        stats.setState(WakeupStats.STATE_AMBIENT, 0);
+        for (int minute = 0; minute < 60; minute++) {
+            stats.increment(WakeupStats.COUNTER_TIME_TICK_INVALIDATES);
+        }
+        stats.setState(WakeupStats.STATE_INVISIBLE, HOUR_MS / 2);
+
+        assertEquals(HOUR_MS / 2, stats.getDurationMs(WakeupStats.STATE_AMBIENT, HOUR_MS));
+        assertEquals(120.0, stats.getWakeupsPerHour(WakeupStats.STATE_AMBIENT, HOUR_MS), 0.001);
+        assertEquals(HOUR_MS / 2, stats.getDurationMs(WakeupStats.STATE_INVISIBLE, HOUR_MS));
+        assertEquals(0.0, stats.getWakeupsPerHour(WakeupStats.STATE_INTERACTIVE, HOUR_MS), 0);
+    }
+
+    @Test
+    public void unchangedFramesAreWasted() throws Exception {
+        stats.setState(WakeupStats.STATE_INTERACTIVE, 0);
+        stats.onFrame(1);
+        stats.onFrame(1);
+        stats.onFrame(2);
+        stats.onFrame(2);
+
+        assertEquals(4, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_FRAMES));
+        assertEquals(2, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_UNCHANGED_FRAMES));
+        assertEquals(0.5, stats.getWastedFrameRatio(WakeupStats.STATE_INTERACTIVE), 0);
+    }
+
+    @Test
+    public void firstFrameAfterForgettingIsNotWasted() throws Exception {
+        stats.onFrame(1);
+        stats.forgetLastFrame();
+        stats.onFrame(1);
+
+        assertEquals(0, stats.getCount(WakeupStats.STATE_INVISIBLE, WakeupStats.COUNTER_UNCHANGED_FRAMES));
+    }
+
+    @Test
+    public void resetZeroesCountsAndDurations() throws Exception {
+        stats.setState(WakeupStats.STATE_INTERACTIVE, 0);
+        stats.onFrame(1);
+        stats.reset(HOUR_MS);
+
+        assertEquals(0, stats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_FRAMES));
+        assertEquals(0, stats.getDurationMs(WakeupStats.STATE_INTERACTIVE, HOUR_MS));
+        assertEquals(WakeupStats.STATE_INTERACTIVE, stats.getState());
+    }
+}
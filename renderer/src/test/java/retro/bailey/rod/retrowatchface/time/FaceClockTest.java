@@ -0,0 +1,104 @@
+package retro.bailey.rod.retrowatchface.time;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link FaceClock} breaks the time down in its time zone, and only works it out again
+ * when the minute or time zone changes, using a {@link VirtualFaceClock}.
+ */
+public class FaceClockTest {
+
+    private static final TimeZone SYDNEY = TimeZone.getTimeZone("Australia/Sydney");
+    private static final TimeZone LONDON = TimeZone.getTimeZone("Europe/London");
+
+    @Test
+    public void breaksTimeDownInTimeZone() throws Exception {
+        VirtualFaceClock clock = new VirtualFaceClock(time(SYDNEY, 2016, Calendar.JUNE, 6, 8, 30, 15), SYDNEY);
+        assertTrue(clock.update());
+
+        assertEquals(2016, clock.getYear());
+        assertEquals(Calendar.JUNE, clock.getMonth());
+        assertEquals(6, clock.getDayOfMonth());
+        assertEquals(1, clock.getDayOfWeek());
+        assertEquals(8, clock.getHour());
+        assertEquals(30, clock.getMinute());
+        assertEquals(15, clock.getSecond());
+    }
+
+    @Test
+    public void onlySecondChangesWithinMinute() throws Exception {
+        VirtualFaceClock clock = new VirtualFaceClock(time(SYDNEY, 2016, Calendar.JUNE, 6, 8, 30, 15), SYDNEY);
+        clock.update();
+
+        clock.advance(44500);
+        assertFalse(clock.update());
+        assertEquals(59, clock.getSecond());
+        assertEquals(30, clock.getMinute());
+
+        clock.advance(500);
+        assertTrue(clock.update());
+        assertEquals(31, clock.getMinute());
+        assertEquals(0, clock.getSecond());
+    }
+
+    @Test
+    public void newTimeZoneTakesEffectOnNextUpdate() throws Exception {
+        // 8am Monday in Sydney is still 11pm Sunday in London
+        VirtualFaceClock clock = new VirtualFaceClock(time(SYDNEY, 2016, Calendar.JUNE, 6, 8, 0, 0), SYDNEY);
+        clock.update();
+
+        clock.setTimeZone(LONDON);
+        assertEquals(8, clock.getHour());
+        assertTrue(clock.update());
+        assertEquals(23, clock.getHour());
+        assertEquals(0, clock.getDayOfWeek());
+        assertEquals(5, clock.getDayOfMonth());
+    }
+
+    @Test
+    public void clockSetBackWithinMinuteOfCacheIsNoticed() throws Exception {
+        long nowMs = time(SYDNEY, 2016, Calendar.JUNE, 6, 8, 0, 30);
+        VirtualFaceClock clock = new VirtualFaceClock(nowMs, SYDNEY);
+        clock.update();
+
+        clock.setTimeMillis(nowMs - 31000);
+        assertTrue(clock.update());
+        assertEquals(7, clock.getHour());
+        assertEquals(59, clock.getMinute());
+        assertEquals(59, clock.getSecond());
+        assertEquals(0, clock.uptimeMillis());
+    }
+
+    @Test
+    public void followsDaylightSavingChange() throws Exception {
+        // London clocks went forward from 1am to 2am on 27 March 2016
+        VirtualFaceClock clock = new VirtualFaceClock(time(LONDON, 2016, Calendar.MARCH, 27, 0, 59, 0), LONDON);
+        clock.update();
+        clock.advance(60 * 1000);
+        assertTrue(clock.update());
+        assertEquals(2, clock.getHour());
+        assertEquals(0, clock.getMinute());
+    }
+
+    @Test
+    public void cannotAdvanceBackwards() throws Exception {
+        try {
+            new VirtualFaceClock(0, LONDON).advance(-1);
+            fail("Advanced backwards");
+        } catch (IllegalArgumentException expected) {
+            // Time only goes backwards through setTimeMillis
+        }
+    }
+
+    private static long time(TimeZone timeZone, int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
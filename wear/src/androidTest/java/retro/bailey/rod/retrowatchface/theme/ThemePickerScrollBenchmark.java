@@ -0,0 +1,114 @@
+package retro.bailey.rod.retrowatchface.theme;
+
+import android.os.Bundle;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import retro.bailey.rod.retrowatchface.config.ListThemeCatalog;
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+import retro.bailey.rod.retrowatchface.config.ThemeCatalog;
+import retro.bailey.rod.retrowatchface.config.ThemeRepository;
+
+/**
+ * Scrolls the theme picker from top to bottom through a catalog of {@link #CATALOG_SIZE} themes,
+ * a fixed distance each frame, and reports how many frames were dropped on the way. Run with
+ * <pre>
+ * ./gradlew :wear:connectedAndroidTest
+ * </pre>
+ * The numbers are logged and sent as instrumentation status, so show up in the test output.
+ */
+public class ThemePickerScrollBenchmark extends ActivityInstrumentationTestCase2<SelectThemeActivity> {
+
+    private static final String TAG = ThemePickerScrollBenchmark.class.getSimpleName();
+
+    private static final int CATALOG_SIZE = 1000;
+
+    /**
+     * Distance scrolled each frame, about a fast fling.
+     */
+    private static final int SCROLL_PX_PER_FRAME = 40;
+
+    private static final long TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+
+    public ThemePickerScrollBenchmark() {
+        super(SelectThemeActivity.class);
+    }
+
+    public void testScrollThousandThemes() throws Exception {
+        final SelectThemeActivity activity = getActivity();
+        final ThemeCatalog catalog = catalog(ThemeRepository.getInstance(activity));
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.getThemeListViewAdapter().setThemes(catalog);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        final float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        final long frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+        final CountDownLatch done = new CountDownLatch(1);
+        final long[] results = new long[3]; // frames, dropped frames, worst interval
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private long lastFrameNanos;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (lastFrameNanos != 0) {
+                            long interval = frameTimeNanos - lastFrameNanos;
+                            results[0]++;
+                            // Each whole frame interval beyond the first is a frame that was missed
+                            results[1] += Math.max(0, Math.round((double) interval / frameIntervalNanos) - 1);
+                            results[2] = Math.max(results[2], interval);
+                        }
+                        lastFrameNanos = frameTimeNanos;
+
+                        if (activity.getThemeListView().canScrollVertically(1)) {
+                            activity.getThemeListView().scrollBy(0, SCROLL_PX_PER_FRAME);
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+        });
+
+        assertTrue("Scroll didn't finish", done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        String summary = String.format("themes=%d frames=%d dropped=%d (%.1f%%) worstFrameMs=%.1f refreshHz=%.0f",
+                CATALOG_SIZE, results[0], results[1], (results[0] == 0) ? 0 : (100.0 * results[1] / results[0]),
+                results[2] / 1e6, refreshRate);
+        Log.i(TAG, summary);
+
+        Bundle status = new Bundle();
+        status.putString("ThemePickerScrollBenchmark", summary);
+        getInstrumentation().sendStatus(0, status);
+
+        assertTrue(results[0] > 0);
+    }
+
+    /**
+     * @return CATALOG_SIZE themes made from the shipped ones, with distinct names and colors
+     */
+    private static ThemeCatalog catalog(ThemeCatalog shipped) {
+        List<PackedTheme> catalog = new ArrayList<PackedTheme>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            PackedTheme base = shipped.get(i % shipped.size());
+            catalog.add(new PackedTheme(base.name + " " + i, base.backgroundColor ^ (i & 0xFFFF),
+                    base.day, base.time, base.date, base.showSeconds));
+        }
+        return new ListThemeCatalog(catalog);
+    }
+}
@@ -0,0 +1,89 @@
+package retro.bailey.rod.retrowatchface;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out when the content of the watch face next changes, so the engine only wakes up to redraw
+ * when there is actually something new to show. Normally that is the next minute boundary (which
+ * also covers day rollover at midnight), or the next second boundary if the theme shows seconds.
+ * Time zone, clock and theme changes are handled by calling {@link #reset()} so that the next wake
+ * up redraws immediately.
+ * <p/>
+ * The handler delays are measured against uptime rather than the wall clock, so a wake up can land
+ * slightly before the boundary it was aiming for. {@link #isDue} lets the caller detect this and
+ * simply wait out the remainder rather than redrawing the same content.
+ */
+public class RedrawScheduler {
+
+    /**
+     * Update interval when only hours and minutes are shown.
+     */
+    public static final long MINUTE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Update interval when seconds are shown.
+     */
+    public static final long SECOND_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private boolean secondsMode;
+
+    // Wall clock time at which the visible content next changes. 0 means "now".
+    private long nextChangeTimeMs;
+
+    /**
+     * @param secondsMode true if the face shows seconds and must be redrawn every second
+     */
+    public void setSecondsMode(boolean secondsMode) {
+        if (this.secondsMode != secondsMode) {
+            this.secondsMode = secondsMode;
+            reset();
+        }
+    }
+
+    public boolean isSecondsMode() {
+        return secondsMode;
+    }
+
+    /**
+     * Forgets the scheduled change time, so the next call to {@link #isDue} returns true. Call this
+     * whenever something other than the passing of time changes what is shown.
+     */
+    public void reset() {
+        nextChangeTimeMs = 0;
+    }
+
+    /**
+     * @return true if the visible content has changed since the last scheduled change, ie. a
+     * redraw is needed.
+     */
+    public boolean isDue(long nowMs) {
+        return nowMs >= nextChangeTimeMs;
+    }
+
+    /**
+     * Moves on to the next change time if the current one has been reached, and returns how long to
+     * wait for it. If called early, returns the time remaining until the change already scheduled.
+     *
+     * @param nowMs    Current wall clock time
+     * @param timeZone Time zone the face is displaying
+     * @return Delay in milliseconds until the visible content next changes
+     */
+    public long scheduleNext(long nowMs, TimeZone timeZone) {
+        if (isDue(nowMs)) {
+            nextChangeTimeMs = nextBoundaryAfter(nowMs, timeZone);
+        }
+        return nextChangeTimeMs - nowMs;
+    }
+
+    /**
+     * @return The first minute (or second, in seconds mode) boundary in local time that is strictly
+     * after nowMs
+     */
+    long nextBoundaryAfter(long nowMs, TimeZone timeZone) {
+        long intervalMs = secondsMode ? SECOND_UPDATE_RATE_MS : MINUTE_UPDATE_RATE_MS;
+        long localMs = nowMs + timeZone.getOffset(nowMs);
+        long intoIntervalMs = ((localMs % intervalMs) + intervalMs) % intervalMs;
+        return nowMs + (intervalMs - intoIntervalMs);
+    }
+}
@@ -20,7 +20,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -29,67 +28,233 @@ import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v4.content.ContextCompat;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.SystemProviders;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
+import android.text.format.DateFormat;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
-import com.google.gson.Gson;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
-
-import retro.bailey.rod.retrowatchface.config.Theme;
-import retro.bailey.rod.retrowatchface.config.Themes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+import retro.bailey.rod.retrowatchface.config.SharedPreferencesThemeConfigStore;
+import retro.bailey.rod.retrowatchface.config.ThemeConfigStore;
+import retro.bailey.rod.retrowatchface.config.ThemeRepository;
+import retro.bailey.rod.retrowatchface.config.ThemeSnapshot;
+import retro.bailey.rod.retrowatchface.config.ThemeSnapshotStore;
+import retro.bailey.rod.retrowatchface.render.BarGeometry;
+import retro.bailey.rod.retrowatchface.render.BurnInShifter;
+import retro.bailey.rod.retrowatchface.render.CalendarTextCache;
+import retro.bailey.rod.retrowatchface.render.CanvasFaceCanvas;
+import retro.bailey.rod.retrowatchface.render.ComplicationSlot;
+import retro.bailey.rod.retrowatchface.render.FaceCanvas;
+import retro.bailey.rod.retrowatchface.render.FaceRenderer;
+import retro.bailey.rod.retrowatchface.render.FramePacer;
+import retro.bailey.rod.retrowatchface.render.GlyphAtlas;
+import retro.bailey.rod.retrowatchface.render.RedrawRateLimiter;
+import retro.bailey.rod.retrowatchface.render.RenderState;
+import retro.bailey.rod.retrowatchface.render.RetainedFaceCanvas;
+import retro.bailey.rod.retrowatchface.render.TextFitter;
+import retro.bailey.rod.retrowatchface.render.TimeTextFormatter;
+import retro.bailey.rod.retrowatchface.render.TracingFrameProfiler;
+import retro.bailey.rod.retrowatchface.render.TypefaceCache;
+import retro.bailey.rod.retrowatchface.stats.FrameStats;
+import retro.bailey.rod.retrowatchface.stats.StartupStats;
+import retro.bailey.rod.retrowatchface.stats.WakeupStats;
+import retro.bailey.rod.retrowatchface.time.FaceClock;
+import retro.bailey.rod.retrowatchface.time.SystemFaceClock;
 
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face, with seconds if the theme asks for them. In ambient mode, the seconds aren't
+ * displayed.
  */
 public class RetroWatchFaceService extends CanvasWatchFaceService {
     private static final Typeface NORMAL_TYPEFACE =
             Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
+     * Handler message id for updating the time in interactive mode, sent whenever the visible
+     * content next changes.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final int MSG_UPDATE_TIME = 0;
 
     /**
-     * Handler message id for updating the time periodically in interactive mode.
+     * Handler message id for a newly built {@link RenderState}, which is the message's obj.
      */
-    private static final int MSG_UPDATE_TIME = 0;
+    private static final int MSG_RENDER_STATE_BUILT = 1;
+
+    /**
+     * Handler message id for drawing the next frame of a flip animation. Only sent while digits are
+     * flipping, so between flips the engine sleeps until the next change of time.
+     */
+    private static final int MSG_FLIP_FRAME = 2;
+
+    /**
+     * Handler message id for the theme to start up in, read from the theme pack in the background.
+     * The theme is the message's obj.
+     */
+    private static final int MSG_THEME_LOADED = 3;
 
     /**
-     * Multiply the width of the square by this scaling factor to get the size of the margin in pixels.
-     * The margin is the gap around the outside of all elements, and the vertical gap between the
-     * horizontal inner elements.
+     * Handler message id for a redraw held back by the {@link RedrawRateLimiter}, to show changed
+     * complication data.
      */
-    private static float SCALE_FACTOR_MARGIN_PX = 0.025F;
+    private static final int MSG_COMPLICATION_REDRAW = 4;
 
     /**
-     * Multiply the width of the square by this scaling factor to get the vertical height of the
-     * top and bottom elements in pixels.
+     * Complication slot ids. The day complication is in the top bar, beneath the day name, and the
+     * date complication in the bottom bar, above the date.
      */
-    private static float SCALE_FACTOR_VERTICAL_TOP_AND_BOTTOM_ELEMENTS_PX = 0.2255F;
+    private static final int DAY_COMPLICATION_ID = 0;
+    private static final int DATE_COMPLICATION_ID = 1;
 
-    private static float SCALE_FACTOR_VERTICAL_MIDDLE_ELEMENT_PX = 0.4486F;
+    /**
+     * Least time between frames drawn to show changed complication data. Providers such as the step
+     * count can update several times a minute.
+     */
+    private static final long COMPLICATION_REDRAW_INTERVAL_MS = 5000;
+
+    /**
+     * When the user has chosen a 12 hour clock, whether to append the AM/PM marker to the time.
+     */
+    private static final boolean SHOW_AM_PM = false;
+
+    /**
+     * If true the time is drawn by copying pre-rendered digits out of a {@link GlyphAtlas}. If
+     * false it is drawn with {@link Canvas#drawText}. Switch off to compare the two.
+     */
+    private static final boolean USE_GLYPH_ATLAS = true;
+
+    /**
+     * If true, text is shrunk as needed so that the longest day name, date or time fits across its
+     * bar. If false, text is drawn at the theme's size unless that is too tall for the bar.
+     */
+    private static final boolean AUTO_FIT_TEXT = true;
+
+    /**
+     * If true, each phase of drawing a frame is marked as a Trace section so it shows up in
+     * systrace.
+     */
+    private static final boolean TRACE_FRAME_PHASES = false;
+
+    /**
+     * If true, interactive frames are drawn into a bitmap kept between frames and only the bars,
+     * or digits of the time, that have changed are redrawn. If false every frame is drawn in full.
+     */
+    private static final boolean USE_DIRTY_REGIONS = true;
+
+    /**
+     * If true, digits of the time that change when the minute does flip over like a split-flap
+     * display, in interactive mode. Needs USE_DIRTY_REGIONS, and a time drawn from the glyph atlas.
+     */
+    private static final boolean FLIP_MINUTE_CHANGES = true;
+
+    /**
+     * How long digits take to flip over.
+     */
+    private static final long FLIP_DURATION_MS = 400;
+
+    /**
+     * Time between the frames of a flip, for 30 frames a second.
+     */
+    private static final long FLIP_FRAME_INTERVAL_MS = 1000 / 30;
 
     private static final String TAG = RetroWatchFaceService.class.getSimpleName();
 
+    /**
+     * Signature of a blank frame, as drawn before the first render state is ready, for
+     * {@link WakeupStats#onFrame}.
+     */
+    private static final long BLANK_FRAME_SIGNATURE = 0;
+
+    /**
+     * Stands in for the burn-in offsets in the signatures of interactive frames, which are never
+     * moved. Distinguishes them from ambient frames of the same text.
+     */
+    private static final int INTERACTIVE_OFFSET = Integer.MIN_VALUE;
+
+    /**
+     * Furthest ambient mode text is moved from its usual place, in each direction, on screens that
+     * need burn-in protection.
+     */
+    private static final int BURN_IN_MAX_SHIFT_PX = 4;
+
+    // How long the frames of all engines take to draw. Printed by dumpsys.
+    private FrameStats frameStats;
+
+    // What wakes the engines up and how many of their frames are wasted. Printed by dumpsys.
+    private WakeupStats wakeupStats;
+
+    // How long engines take to start up. Printed by dumpsys.
+    private StartupStats startupStats;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        frameStats = new FrameStats();
+        startupStats = new StartupStats();
+        wakeupStats = new WakeupStats(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return Counts of wakeups and wasted frames, for checking changes to redraw scheduling
+     */
+    public WakeupStats getWakeupStats() {
+        return wakeupStats;
+    }
+
     @Override
     public Engine onCreateEngine() {
-        return new Engine();
+        return new Engine(createClock());
+    }
+
+    /**
+     * @return Clock for a new engine to read the time from. Override to run the face in virtual
+     * time eg. for a soak test.
+     */
+    protected FaceClock createClock() {
+        return new SystemFaceClock();
+    }
+
+    /**
+     * Prints frame and wakeup stats, for "adb shell dumpsys activity service
+     * retro.bailey.rod.retrowatchface/.RetroWatchFaceService". Add "reset" to the end of that to
+     * clear them.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+
+        long nowMs = SystemClock.elapsedRealtime();
+        frameStats.dump(writer, "  ", ThemeRepository.getInstance(this));
+        startupStats.dump(writer, "  ");
+        wakeupStats.dump(writer, "  ", nowMs);
+        if ((args != null) && Arrays.asList(args).contains("reset")) {
+            frameStats.reset();
+            startupStats.reset();
+            wakeupStats.reset(nowMs);
+            writer.println("  Stats reset");
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        TypefaceCache.getInstance(this).onTrimMemory(level);
     }
 
     private static class EngineHandler extends Handler {
@@ -103,10 +268,23 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
         public void handleMessage(Message msg) {
             RetroWatchFaceService.Engine engine = mWeakReference.get();
             if (engine != null) {
+                engine.countEvent(WakeupStats.COUNTER_HANDLER_MESSAGES);
                 switch (msg.what) {
                     case MSG_UPDATE_TIME:
                         engine.handleUpdateTimeMessage();
                         break;
+                    case MSG_RENDER_STATE_BUILT:
+                        engine.handleRenderStateBuilt((RenderState) msg.obj);
+                        break;
+                    case MSG_FLIP_FRAME:
+                        engine.handleFlipFrameMessage();
+                        break;
+                    case MSG_THEME_LOADED:
+                        engine.handleThemeLoaded((PackedTheme) msg.obj);
+                        break;
+                    case MSG_COMPLICATION_REDRAW:
+                        engine.handleComplicationRedrawMessage();
+                        break;
                 }
             }
         }
@@ -116,114 +294,377 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
 
         private final Handler mUpdateTimeHandler = new EngineHandler(this);
         private boolean mRegisteredTimeZoneReceiver = false;
-        private Paint backgroundPaint;
-        private Paint dayNameBackgroundPaint;
-        private Paint timeBackgroundPaint;
-        private Paint dateBackgroundPaint;
-        private Paint timeTextPaint;
-        private Paint dayNameTextPaint;
         private boolean mAmbient;
-        private Time mTime;
+
+        // The time shown, broken down in the time zone shown
+        private final FaceClock clock;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+                    updateLocale();
+                } else if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+                    clock.setTimeZone(TimeZone.getDefault());
+                }
+
+                // The day may have changed too
+                calendarTextCache.invalidate();
+
+                // The next minute boundary has moved, so redraw now and reschedule from here
+                invalidate();
+                updateTimer();
             }
         };
-        private int mTapCount;
+
+        // Decides when the interactive mode timer next needs to wake up and redraw
+        private final RedrawScheduler redrawScheduler = new RedrawScheduler();
 
         /**
-         * Whether the display supports fewer bits for each color in ambient mode. When true, we
-         * disable anti-aliasing in ambient mode.
+         * Whether the display supports fewer bits for each color in ambient mode.
          */
         private boolean lowBitAmbientModeSupported;
 
+        // Moves ambient mode text every minute, if the screen needs burn-in protection
+        private final BurnInShifter burnInShifter = new BurnInShifter(BURN_IN_MAX_SHIFT_PX);
+
         private int watchFaceHeight;
         private int watchFaceWidth;
 
-        private int marginPx;
-        private int shortBarHeightPx;
-        private int tallBarHeightPx;
-        private Paint dateTextPaint;
+        // True if the display is round, as reported by onApplyWindowInsets
+        private boolean isRound;
+
+        // Height of the invisible area at the bottom of the screen, from onApplyWindowInsets
+        private int bottomInsetPx;
+
+        // Paints, bar bounds and cached bitmaps that everything is drawn with. Null until the first
+        // one has been built.
+        private RenderState renderState;
+
+        // Built in the background and waiting to replace renderState on the next frame
+        private RenderState pendingRenderState;
+
+        // True while a render state is being built or is waiting to be swapped in
+        private boolean renderStateBuildInProgress;
+
+        // True if the inputs to the render state have changed since the last one was requested
+        private boolean renderStateStale;
+
+        // Builds render states off the main thread, one at a time
+        private ExecutorService renderStateExecutor;
+
+        // Remembers the text sizes chosen in auto-fit mode. Only used by renderStateExecutor.
+        private final TextFitter textFitter = new TextFitter();
+
+        // True if the user has chosen a 24 hour clock in system settings
+        private boolean use24HourFormat;
+
+        // Formats the time, day and date without allocating
+        private TimeTextFormatter timeTextFormatter;
+
+        // Draws each frame, through faceCanvas onto the frame's Canvas
+        private FaceRenderer faceRenderer;
+        private final CanvasFaceCanvas faceCanvas = new CanvasFaceCanvas();
+
+        // Draws interactive frames into a retained bitmap when USE_DIRTY_REGIONS
+        private final RetainedFaceCanvas retainedFaceCanvas =
+                new RetainedFaceCanvas(FLIP_MINUTE_CHANGES ? FLIP_DURATION_MS : 0);
+
+        // Times the frames of each flip, and counts those missed
+        private final FramePacer flipPacer = new FramePacer(FLIP_FRAME_INTERVAL_MS);
+
+        // Minute shown by the last interactive frame, or -1 if there wasn't one
+        private int lastFrameMinute = -1;
+
+        // Day name and date, which only need formatting once a day
+        private CalendarTextCache calendarTextCache;
+
+        // What the complications in the top and bottom bars show
+        private ComplicationSlot dayComplication;
+        private ComplicationSlot dateComplication;
+
+        // Whether room was made for each complication in the render state last requested. The
+        // layout only changes when a complication comes or goes.
+        private boolean dayComplicationLaidOut;
+        private boolean dateComplicationLaidOut;
 
-        // Current theme for watch face (colors and fonts)
-        private Theme theme;
+        // Holds back redraws for complication data that arrives in quick succession
+        private final RedrawRateLimiter complicationRedrawLimiter =
+                new RedrawRateLimiter(COMPLICATION_REDRAW_INTERVAL_MS);
+
+        private final ComplicationSlot.OnChangeListener complicationListener = new ComplicationSlot.OnChangeListener() {
+            @Override
+            public void onComplicationChanged(ComplicationSlot slot) {
+                onComplicationContentChanged(slot);
+            }
+        };
+
+        // Current theme for watch face (colors and fonts). Null until read from the theme pack.
+        private PackedTheme theme;
+
+        // Taps since the theme was applied. Each toggles the background between two colors.
+        private int tapCount;
+
+        // Time the engine was created, from System.nanoTime(), for startupStats
+        private long createdNanos;
+
+        // Startup stages reached, for startupStats
+        private boolean firstFrameDrawn;
+        private boolean fullFidelityDrawn;
+
+        // Colors of the theme last used, drawn until the first render state is ready. Null if not
+        // known, or once the face has been drawn in full.
+        private ThemeSnapshot startupSnapshot;
+
+        // Where the bars of startupSnapshot go on the current surface
+        private BarGeometry startupGeometry;
+        private final Paint startupPaint = new Paint();
+
+        // Position of the current theme in the ThemeRepository, for frameStats
+        private int themeIndex = -1;
+
+        // Holds the user's choice of theme
+        private ThemeConfigStore themeConfigStore;
+
+        // Switches theme as soon as the user chooses one
+        private final ThemeConfigStore.Listener themeConfigListener = new ThemeConfigStore.Listener() {
+            @Override
+            public void onThemeSelected(String themeName) {
+                PackedTheme newTheme = ThemeRepository.getInstance(RetroWatchFaceService.this).findByName(themeName);
+                if ((newTheme != null) && (newTheme != theme)) {
+                    onThemeChange(newTheme);
+                }
+            }
+        };
 
         /**
          * Invoked whenever the theme of the watch face is changed, either by the user or the system.
          *
          * @param newTheme The new theme to be adopted.
          */
-        private void onThemeChange(Theme newTheme) {
+        private void onThemeChange(PackedTheme newTheme) {
             theme = newTheme;
+            tapCount = 0;
+            themeIndex = ThemeRepository.getInstance(RetroWatchFaceService.this).indexOf(theme.name);
+            ThemeSnapshotStore.getInstance(RetroWatchFaceService.this).write(ThemeSnapshot.of(theme));
 
-            Resources resources = RetroWatchFaceService.this.getResources();
+            requestRenderState();
+            preloadNeighbouringThemeFonts();
 
-            // Full background is filled with this color as first step of drawing. WHen done, this
-            // color only shows through in the margins between the bars.
-            backgroundPaint = new Paint();
-            backgroundPaint.setColor(Color.parseColor(theme.backgroundColor));
+            // Redraw straight away in the new theme, then at whatever rate it needs
+            redrawScheduler.setSecondsMode(theme.showSeconds);
+            updateTimer();
+        }
 
-            // Top most bar contains the day name e.g. "Tuesday"
-            dayNameBackgroundPaint = new Paint();
-            dayNameBackgroundPaint.setColor(Color.parseColor(theme.day.backgroundColor));
-            dayNameTextPaint = createTextPaint(Color.parseColor(theme.day.textColor), theme.day.textFont, theme.day.textSize);
+        /**
+         * Loads the fonts of the themes either side of the current one in the selection list in the
+         * background, as those are the themes the user is most likely to switch to next.
+         */
+        private void preloadNeighbouringThemeFonts() {
+            ThemeRepository themes = ThemeRepository.getInstance(RetroWatchFaceService.this);
+            TypefaceCache typefaceCache = TypefaceCache.getInstance(RetroWatchFaceService.this);
+            int index = themes.indexOf(theme.name);
+
+            for (int neighbour = index - 1; neighbour <= index + 1; neighbour += 2) {
+                if ((neighbour >= 0) && (neighbour < themes.size())) {
+                    PackedTheme neighbourTheme = themes.get(neighbour);
+                    typefaceCache.preload(neighbourTheme.day.textFont, neighbourTheme.time.textFont,
+                            neighbourTheme.date.textFont);
+                }
+            }
 
-            // Middle bar contains the time e.g. "12:33"
-            timeBackgroundPaint = new Paint();
-            timeBackgroundPaint.setColor(Color.parseColor(theme.time.backgroundColor));
-            timeTextPaint = createTextPaint(Color.parseColor(theme.time.textColor), theme.time.textFont, theme.time.textSize);
+            Log.d(TAG, "Applied theme " + theme.name + ": " + typefaceCache);
+        }
 
-            // Bottom bar contains the date e.g. "20 February"
-            dateBackgroundPaint = new Paint();
-            dateBackgroundPaint.setColor(Color.parseColor(theme.date.backgroundColor));
-            dateTextPaint = createTextPaint(Color.parseColor(theme.date.textColor), theme.date.textFont, theme.date.textSize);
+        /**
+         * Invoked whenever the size of the drawing surface is first known or changes.
+         */
+        private void onSurfaceSizeChanged(int width, int height) {
+            // A new or resized surface isn't showing the last frame, so the next one isn't wasted
+            wakeupStats.forgetLastFrame();
+
+            if ((width != watchFaceWidth) || (height != watchFaceHeight)) {
+                watchFaceWidth = width;
+                watchFaceHeight = height;
+                requestRenderState();
+            }
         }
 
-        private Theme initThemes() {
-            BufferedReader reader = null;
-            StringBuffer buffer = new StringBuffer();
+        /**
+         * Starts building a new render state in the background, from the current theme, surface
+         * size and insets. If one is already being built, another is built once it is done. Does
+         * nothing until the theme has been read, which requests one itself.
+         */
+        private void requestRenderState() {
+            if (theme == null) {
+                return;
+            }
+            if (renderStateBuildInProgress) {
+                renderStateStale = true;
+                return;
+            }
+
+            renderStateBuildInProgress = true;
+            renderStateStale = false;
 
-            try {
-                reader = new BufferedReader(new InputStreamReader(getAssets().open("themes.json")));
+            dayComplicationLaidOut = dayComplication.hasContent();
+            dateComplicationLaidOut = dateComplication.hasContent();
+            final RenderState.Inputs inputs = new RenderState.Inputs(theme, backgroundColor(),
+                    watchFaceWidth, watchFaceHeight, isRound,
+                    bottomInsetPx, RetroWatchFaceService.this.getResources().getDisplayMetrics().scaledDensity,
+                    timeTextFormatter, SHOW_AM_PM, lowBitAmbientModeSupported,
+                    dayComplicationLaidOut, dateComplicationLaidOut);
+            final RenderState previous = renderState;
+            final TypefaceCache typefaceCache = TypefaceCache.getInstance(RetroWatchFaceService.this);
 
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    buffer.append(line);
+            // Loads the fonts in parallel, while the build waits for each as it needs it
+            typefaceCache.preload(theme.day.textFont, theme.time.textFont, theme.date.textFont);
+
+            renderStateExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    RenderState built = RenderState.build(inputs, previous, typefaceCache, USE_GLYPH_ATLAS,
+                            AUTO_FIT_TEXT ? textFitter : null);
+                    mUpdateTimeHandler.obtainMessage(MSG_RENDER_STATE_BUILT, built).sendToTarget();
                 }
-            } catch (IOException iox) {
-                Log.w(TAG, iox);
-            } finally {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException e) {
-                        Log.w(TAG, e);
-                    }
+            });
+        }
+
+        /**
+         * Invoked on the main thread when a render state has finished building. It is swapped in on
+         * the next frame, unless the inputs have changed since, in which case it is thrown away and
+         * a fresh one built.
+         */
+        private void handleRenderStateBuilt(RenderState built) {
+            if (renderStateExecutor == null) {
+                // Engine destroyed while building. The current state was kept until now, as the
+                // build may have shared its parts.
+                built.releaseUnshared(renderState);
+                if (renderState != null) {
+                    renderState.releaseUnshared(null);
+                    renderState = null;
                 }
+                return;
             }
 
-            String jsonString = buffer.toString();
+            if (renderStateStale) {
+                built.releaseUnshared(renderState);
+                renderStateBuildInProgress = false;
+                requestRenderState();
+            } else {
+                pendingRenderState = built;
+                invalidate();
+            }
+        }
 
-            // By the time we get here, 'buffer' contains the JSON string from assets/themes.json
-            Log.i(TAG, "Read themes.json: " + jsonString);
+        /**
+         * Swaps in the pending render state, if there is one. Called at the start of a frame so that
+         * the whole frame is drawn with one state.
+         */
+        private void swapInPendingRenderState() {
+            if (pendingRenderState == null) {
+                return;
+            }
 
-            // Parse the JSON string into an object graph
-            Gson gson = new Gson();
-            Themes themes = gson.fromJson(jsonString, Themes.class);
+            RenderState previous = renderState;
+            renderState = pendingRenderState;
+            pendingRenderState = null;
+            renderStateBuildInProgress = false;
 
-            Log.i(TAG, "As read in from theme.json, object graph is:" + themes.toString());
+            if (previous != null) {
+                previous.releaseUnshared(renderState);
+            }
 
-            // Return the initially selected theme
-            return themes.themes.get(0); // 0 = Marine
+            if (renderStateStale) {
+                requestRenderState();
+            }
+        }
+
+        Engine(FaceClock clock) {
+            this.clock = clock;
+        }
+
+        /**
+         * Starts up in stages, so that something is on screen as soon as possible. The first frame
+         * is drawn from the snapshot of the theme last used, if it is still the one chosen, while
+         * its fonts load in parallel with the theme pack on background threads. Once the theme has
+         * been read, a render state is built as for any change of theme, and the face is drawn in
+         * full as soon as it is ready.
+         */
+        private void startUp() {
+            final String selectedThemeName = themeConfigStore.getSelectedThemeName();
+
+            ThemeSnapshot snapshot = ThemeSnapshotStore.getInstance(RetroWatchFaceService.this).read();
+            if ((snapshot != null) && ((selectedThemeName == null) || selectedThemeName.equals(snapshot.name))) {
+                startupSnapshot = snapshot;
+                TypefaceCache.getInstance(RetroWatchFaceService.this)
+                        .preload(snapshot.dayFont, snapshot.timeFont, snapshot.dateFont);
+            }
+
+            renderStateExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    PackedTheme loaded = loadTheme(selectedThemeName);
+                    mUpdateTimeHandler.obtainMessage(MSG_THEME_LOADED, loaded).sendToTarget();
+                }
+            });
+        }
+
+        /**
+         * @return The theme the user last chose if it still exists, or else the default. Reads the
+         * theme pack, so should be called on a background thread.
+         */
+        private PackedTheme loadTheme(String selectedThemeName) {
+            ThemeRepository themes = ThemeRepository.getInstance(RetroWatchFaceService.this);
+            PackedTheme selected = (selectedThemeName == null) ? null : themes.findByName(selectedThemeName);
+            return (selected != null) ? selected : themes.getDefaultTheme();
+        }
+
+        /**
+         * Invoked on the main thread when the theme to start up in has been read. Applied unless the
+         * user has chosen another in the meantime.
+         */
+        private void handleThemeLoaded(PackedTheme loaded) {
+            if (renderStateExecutor == null) {
+                // Engine destroyed while loading
+                return;
+            }
+
+            recordStartupStage(StartupStats.STAGE_THEME_LOADED);
+            if (theme == null) {
+                onThemeChange(loaded);
+            }
         }
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
-
-            onThemeChange(initThemes());
+            createdNanos = System.nanoTime();
+
+            // Needed by the first render state, for the text samples it auto-fits to
+            timeTextFormatter = new TimeTextFormatter(Locale.getDefault());
+            faceRenderer = new FaceRenderer(timeTextFormatter);
+            faceRenderer.setProfiler(TRACE_FRAME_PHASES ? new TracingFrameProfiler(frameStats) : frameStats);
+            calendarTextCache = new CalendarTextCache(timeTextFormatter);
+            use24HourFormat = DateFormat.is24HourFormat(RetroWatchFaceService.this);
+
+            dayComplication = new ComplicationSlot(FaceCanvas.PANEL_DAY, RetroWatchFaceService.this,
+                    mUpdateTimeHandler, complicationListener);
+            dateComplication = new ComplicationSlot(FaceCanvas.PANEL_DATE, RetroWatchFaceService.this,
+                    mUpdateTimeHandler, complicationListener);
+            faceCanvas.setComplications(dayComplication, dateComplication);
+            retainedFaceCanvas.setComplications(dayComplication, dateComplication);
+
+            // Steps and battery unless the user picks other providers
+            setDefaultSystemComplicationProvider(DAY_COMPLICATION_ID, SystemProviders.STEP_COUNT,
+                    ComplicationData.TYPE_SHORT_TEXT);
+            setDefaultSystemComplicationProvider(DATE_COMPLICATION_ID, SystemProviders.WATCH_BATTERY,
+                    ComplicationData.TYPE_SHORT_TEXT);
+            setActiveComplications(DAY_COMPLICATION_ID, DATE_COMPLICATION_ID);
+
+            renderStateExecutor = Executors.newSingleThreadExecutor();
+            themeConfigStore = SharedPreferencesThemeConfigStore.getInstance(RetroWatchFaceService.this);
+            themeConfigStore.addListener(themeConfigListener);
+            startUp();
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(RetroWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
@@ -237,21 +678,14 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
                 public void surfaceCreated(SurfaceHolder surfaceHolder) {
                     Log.d(TAG, "Callback: surfaceCreated: surafaceHolder: width=" + surfaceHolder.getSurfaceFrame().width()
                             + ", height=" + surfaceHolder.getSurfaceFrame().height());
-                    watchFaceHeight = (int) surfaceHolder.getSurfaceFrame().height();
-                    watchFaceWidth = (int) surfaceHolder.getSurfaceFrame().width();
-
-                    marginPx = (int) (SCALE_FACTOR_MARGIN_PX * watchFaceWidth);
-                    shortBarHeightPx = (int) (SCALE_FACTOR_VERTICAL_TOP_AND_BOTTOM_ELEMENTS_PX * watchFaceWidth);
-                    tallBarHeightPx = (int) (SCALE_FACTOR_VERTICAL_MIDDLE_ELEMENT_PX * watchFaceWidth);
-
-                    Log.d(TAG, "marginPx=" + marginPx);
-                    Log.d(TAG, "shortBarHeightPx=" + shortBarHeightPx);
-                    Log.d(TAG, "tallBarHeightPx=" + tallBarHeightPx);
+                    onSurfaceSizeChanged(surfaceHolder.getSurfaceFrame().width(),
+                            surfaceHolder.getSurfaceFrame().height());
                 }
 
                 @Override
-                public void surfaceChanged(SurfaceHolder surfaceHolder, int i, int i1, int i2) {
-                    Log.d(TAG, "Callback: surfaceChanged: i=" + i + ", i1=" + i1 + ", i2=" + i2);
+                public void surfaceChanged(SurfaceHolder surfaceHolder, int format, int width, int height) {
+                    Log.d(TAG, "Callback: surfaceChanged: format=" + format + ", width=" + width + ", height=" + height);
+                    onSurfaceSizeChanged(width, height);
                 }
 
                 @Override
@@ -259,41 +693,50 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
                     Log.d(TAG, "Callback: surfaceDestroyed");
                 }
             });
-
-            mTime = new Time();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
-            super.onDestroy();
-        }
-
-        private Paint createTextPaint(int textColor, String textFont, String textSize) {
-            Paint paint = new Paint();
-
-            paint.setColor(textColor);
-            paint.setAntiAlias(true);
-            paint.setTypeface(Typeface.createFromAsset(getAssets(), textFont));
-
-            String textSizeStr = textSize.substring(0, textSize.length() - 2);
-            Log.d(TAG, "textSize=" + textSize + ", textSizeStr=" + textSizeStr);
-
-            paint.setTextSize(Float.parseFloat(textSizeStr));
+            mUpdateTimeHandler.removeMessages(MSG_FLIP_FRAME);
+            mUpdateTimeHandler.removeMessages(MSG_COMPLICATION_REDRAW);
+            themeConfigStore.removeListener(themeConfigListener);
+
+            // Any state still being built is released when it arrives, along with the current
+            // state, whose parts the build may be reusing
+            renderStateExecutor.shutdown();
+            renderStateExecutor = null;
+            boolean building = renderStateBuildInProgress && (pendingRenderState == null);
+            if (pendingRenderState != null) {
+                pendingRenderState.releaseUnshared(renderState);
+                pendingRenderState = null;
+            }
+            if ((renderState != null) && !building) {
+                renderState.releaseUnshared(null);
+                renderState = null;
+            }
+            retainedFaceCanvas.release();
+            dayComplication.release();
+            dateComplication.release();
 
-            return paint;
+            super.onDestroy();
         }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            updateWakeupState();
 
             if (visible) {
                 registerReceiver();
 
-                // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                // Update time zone and locale in case they changed while we weren't visible.
+                clock.setTimeZone(TimeZone.getDefault());
+                calendarTextCache.invalidate();
+                updateLocale();
+
+                // Likewise the 12/24 hour setting
+                use24HourFormat = DateFormat.is24HourFormat(RetroWatchFaceService.this);
             } else {
                 unregisterReceiver();
             }
@@ -303,12 +746,31 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
             updateTimer();
         }
 
+        /**
+         * Switches to the names of days, months and AM/PM of the current locale, if it has changed.
+         */
+        private void updateLocale() {
+            Locale locale = Locale.getDefault();
+            if (locale.equals(timeTextFormatter.getLocale())) {
+                return;
+            }
+
+            timeTextFormatter = new TimeTextFormatter(locale);
+            faceRenderer.setTimeTextFormatter(timeTextFormatter);
+            calendarTextCache.setFormatter(timeTextFormatter);
+
+            // Auto-fitted text sizes depend on the names
+            requestRenderState();
+        }
+
         private void registerReceiver() {
             if (mRegisteredTimeZoneReceiver) {
                 return;
             }
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
             RetroWatchFaceService.this.registerReceiver(mTimeZoneReceiver, filter);
         }
 
@@ -324,34 +786,107 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
 
-            // Load resources that have alternate values for round watches.
-            Resources resources = RetroWatchFaceService.this.getResources();
-            boolean isRound = insets.isRound();
-
-            // Adjust text size for time
-            float timeTextSize = resources.getDimension(isRound
-                    ? R.dimen.time_text_size_round : R.dimen.time_text_size_square);
-            timeTextPaint.setTextSize(timeTextSize);
+            // The layout depends on the shape of the screen and on any part of it that can't be seen
+            // eg. the "chin" at the bottom of some round watches
+            boolean newIsRound = insets.isRound();
+            int newBottomInsetPx = insets.getSystemWindowInsetBottom();
 
-            // Adjust text size for day name
-            float dayNameTextSize = resources.getDimension(isRound
-                    ? R.dimen.day_name_text_size_round : R.dimen.day_name_text_size_square);
-            dayNameTextPaint.setTextSize(dayNameTextSize);
-
-            // Adjust text size for date
-            float dateTextSize = resources.getDimension(isRound ? R.dimen.date_text_size_round : R.dimen.date_text_size_square);
-            dateTextPaint.setTextSize(dateTextSize);
+            if ((newIsRound != isRound) || (newBottomInsetPx != bottomInsetPx)) {
+                isRound = newIsRound;
+                bottomInsetPx = newBottomInsetPx;
+                requestRenderState();
+            }
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            lowBitAmbientModeSupported = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            burnInShifter.setEnabled(properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
+
+            boolean lowBit = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            if (lowBit != lowBitAmbientModeSupported) {
+                // Ambient glyphs need rendering again, with or without anti-aliasing
+                lowBitAmbientModeSupported = lowBit;
+                requestRenderState();
+            }
+        }
+
+        @Override
+        public void onComplicationDataUpdate(int complicationId, ComplicationData complicationData) {
+            super.onComplicationDataUpdate(complicationId, complicationData);
+
+            ComplicationSlot slot;
+            switch (complicationId) {
+                case DAY_COMPLICATION_ID:
+                    slot = dayComplication;
+                    break;
+                case DATE_COMPLICATION_ID:
+                    slot = dateComplication;
+                    break;
+                default:
+                    return;
+            }
+
+            // Most updates change nothing that is shown, and need no frame
+            if (slot.setData(complicationData, clock.currentTimeMillis())) {
+                onComplicationContentChanged(slot);
+            }
+        }
+
+        /**
+         * Invoked when what a complication shows has changed. If it has come or gone, its bar needs
+         * laying out again, which redraws everything once done. Otherwise just its bar is redrawn,
+         * no sooner than the rate limit allows.
+         */
+        private void onComplicationContentChanged(ComplicationSlot slot) {
+            if (complicationCameOrWent()) {
+                requestRenderState();
+                return;
+            }
+
+            retainedFaceCanvas.invalidate(slot.getPanel());
+            if (!shouldTimerBeRunning()) {
+                // Complications aren't drawn in ambient mode. The next interactive frame shows them.
+                return;
+            }
+
+            long delayMs = complicationRedrawLimiter.request(clock.uptimeMillis());
+            if (delayMs == 0) {
+                countEvent(WakeupStats.COUNTER_COMPLICATION_INVALIDATES);
+                invalidate();
+            } else if (delayMs != RedrawRateLimiter.ALREADY_PENDING) {
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_COMPLICATION_REDRAW, delayMs);
+            }
+        }
+
+        /**
+         * Checks whether any complication's text has changed with the time, once a minute.
+         */
+        private void refreshComplication(ComplicationSlot slot, long timeMs) {
+            if (!slot.refresh(timeMs)) {
+                return;
+            }
+            if (complicationCameOrWent()) {
+                // Shown once laid out again
+                requestRenderState();
+            } else {
+                retainedFaceCanvas.invalidate(slot.getPanel());
+            }
+        }
+
+        /**
+         * @return true if a complication has content but no room has been made for it, or room has
+         * been made for one that has no content
+         */
+        private boolean complicationCameOrWent() {
+            return (dayComplication.hasContent() != dayComplicationLaidOut)
+                    || (dateComplication.hasContent() != dateComplicationLaidOut);
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            countEvent(WakeupStats.COUNTER_TIME_TICK_INVALIDATES);
             invalidate();
         }
 
@@ -360,24 +895,38 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (lowBitAmbientModeSupported) {
-                    timeTextPaint.setAntiAlias(!inAmbientMode);
+                if (mAmbient) {
+                    // Ambient frames are drawn straight to the screen, so free the retained frame
+                    // until we're interactive again
+                    retainedFaceCanvas.release();
                 }
                 invalidate();
             }
+            updateWakeupState();
 
             // Whether the timer should be running depends on whether we're visible (as well as
             // whether we're in ambient mode), so we may need to start or stop the timer.
             updateTimer();
         }
 
+        /**
+         * @return Color of the background behind the bars - the theme's until the face is tapped
+         */
+        private int backgroundColor() {
+            if (tapCount == 0) {
+                return theme.backgroundColor;
+            }
+            return ContextCompat.getColor(RetroWatchFaceService.this,
+                    (tapCount % 2 == 0) ? R.color.background : R.color.background2);
+        }
+
         /**
          * Captures tap event (and tap type) and toggles the background color if the user finishes
-         * a tap.
+         * a tap. The render state can't be changed, so one with the new color is built and swapped
+         * in.
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
-            Resources resources = RetroWatchFaceService.this.getResources();
             switch (tapType) {
                 case TAP_TYPE_TOUCH:
                     // The user has started touching the screen.
@@ -387,157 +936,211 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
                     break;
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
-                    mTapCount++;
-                    backgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
-                            R.color.background : R.color.background2));
+                    tapCount++;
+                    requestRenderState();
                     break;
             }
+            countEvent(WakeupStats.COUNTER_TAP_INVALIDATES);
             invalidate();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            long frameStartNanos = System.nanoTime();
 
             // Log.d(TAG, "onDraw: bounds: height=" + bounds.height() + ",width=" + bounds.width());
-            mTime.setToNow();
-
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
+            clock.update();
+            swapInPendingRenderState();
+
+            long frameSignature;
+            if (renderState == null) {
+                // Not ready yet
+                drawStartupFrame(canvas, bounds);
+                frameSignature = BLANK_FRAME_SIGNATURE;
+            } else if (isInAmbientMode()) {
+                // Just the outline of H:MM, moved a little each minute on screens prone to burn-in.
+                // Drawn once a minute, so does no more than copy a few glyphs.
+                long timeMs = clock.getTimeMs();
+                int offsetX = burnInShifter.getOffsetX(timeMs);
+                int offsetY = burnInShifter.getOffsetY(timeMs);
+
+                faceCanvas.setTarget(canvas, renderState, true, offsetX, offsetY);
+                faceRenderer.drawAmbientFrame(faceCanvas, clock.getHour(), clock.getMinute(), use24HourFormat, SHOW_AM_PM);
+
+                frameSignature = frameSignature(offsetX, offsetY);
             } else {
-                drawBars(canvas, bounds);
-                drawTimeInMiddleBar(canvas);
-                drawDayInTopBar(canvas);
-                drawDateInBottomBar(canvas);
-            }
-        }
+                calendarTextCache.update(clock.getTimeMs(), clock.getTimeZone());
+                refreshComplication(dayComplication, clock.getTimeMs());
+                refreshComplication(dateComplication, clock.getTimeMs());
+
+                // Draw H:MM, in 24 hour or 12 hour format as per the user's system setting. H:MM:SS if
+                // the theme shows seconds and we're in interactive mode.
+                boolean showSeconds = redrawScheduler.isSecondsMode() && !mAmbient;
+
+                // Digits only flip when the minute changes, not for every second
+                long frameTimeMs = clock.uptimeMillis();
+                boolean minuteChanged = (lastFrameMinute >= 0) && (clock.getMinute() != lastFrameMinute);
+                lastFrameMinute = clock.getMinute();
+
+                boolean retained = USE_DIRTY_REGIONS
+                        && retainedFaceCanvas.beginFrame(renderState, frameTimeMs, minuteChanged);
+                FaceCanvas target;
+                if (retained) {
+                    target = retainedFaceCanvas;
+                } else {
+                    faceCanvas.setTarget(canvas, renderState);
+                    target = faceCanvas;
+                }
 
-        private void drawBars(Canvas canvas, Rect bounds) {
-            // Draw background
-            canvas.drawRect(0, 0, bounds.width(), bounds.height(), backgroundPaint);
+                faceRenderer.drawFrame(target,
+                        clock.getHour(), clock.getMinute(), clock.getSecond(), showSeconds, use24HourFormat, SHOW_AM_PM,
+                        calendarTextCache.getDayNameChars(), calendarTextCache.getDayNameLength(),
+                        calendarTextCache.getDateChars(), calendarTextCache.getDateLength());
 
-            // Draw top bar that contains the name of the day of week
-            Rect topBar = new Rect();
-            topBar.set(marginPx, marginPx, watchFaceWidth - marginPx, marginPx + shortBarHeightPx);
-            canvas.drawRect(topBar, dayNameBackgroundPaint);
+                if (retained) {
+                    retainedFaceCanvas.endFrame(canvas);
+                    paceFlip(frameTimeMs);
+                }
 
-            // Draw middle bar that contains the time
-            Rect middleBar = new Rect();
-            middleBar.set(marginPx, marginPx * 2 + shortBarHeightPx, watchFaceWidth - marginPx, marginPx * 2 + shortBarHeightPx + tallBarHeightPx);
-            canvas.drawRect(middleBar, timeBackgroundPaint);
+                // This frame shows every complication change so far
+                if (complicationRedrawLimiter.onFrame(frameTimeMs)) {
+                    mUpdateTimeHandler.removeMessages(MSG_COMPLICATION_REDRAW);
+                }
 
-            // Draw bottom bar that contains the date
-            Rect bottomBar = new Rect();
-            bottomBar.set(marginPx, watchFaceHeight - marginPx - shortBarHeightPx, watchFaceWidth - marginPx, watchFaceHeight - marginPx);
-            canvas.drawRect(bottomBar, dateBackgroundPaint);
+                // Frames of a flip differ only in how far through it they are
+                float flipProgress = retained ? retainedFaceCanvas.getFlipProgress() : 1;
+                frameSignature = (31 * frameSignature(INTERACTIVE_OFFSET, INTERACTIVE_OFFSET))
+                        + Float.floatToIntBits(flipProgress);
+                frameSignature = (31 * ((31 * frameSignature) + dayComplication.getVersion()))
+                        + dateComplication.getVersion();
+            }
+
+            frameStats.recordFrame(isInAmbientMode() ? FrameStats.MODE_AMBIENT : FrameStats.MODE_INTERACTIVE,
+                    themeIndex, System.nanoTime() - frameStartNanos);
+            wakeupStats.onFrame(frameSignature);
+            if (!fullFidelityDrawn) {
+                onStartupFrameDrawn();
+            }
         }
 
         /**
-         * Draws the full name of the current day of the week (eg. "Monday") in the center of the
-         * top bar.
-         *
-         * @param canvas
+         * Draws the background and bars of the theme last used, until the first render state is
+         * ready. Just black if the theme isn't known.
          */
-        private void drawDayInTopBar(Canvas canvas) {
-            Calendar cal = Calendar.getInstance();
-            String dayName = mTime.format("%A");
-//            Log.d(TAG, "dayName=" + dayName);
-
-            Paint.FontMetricsInt fontMetricsInt = dayNameTextPaint.getFontMetricsInt();
-            int dayNameHeightPx = fontMetricsInt.ascent * -1;
-            int dayNameWidthPx = (int) dayNameTextPaint.measureText(dayName);
-
-            float centerX = watchFaceWidth / 2.0F;
-            float centerDayNameY = marginPx + (shortBarHeightPx / 2);
-            dayNameTextPaint.setTextAlign(Paint.Align.CENTER);
+        private void drawStartupFrame(Canvas canvas, Rect bounds) {
+            if (startupSnapshot == null) {
+                canvas.drawColor(Color.BLACK);
+                return;
+            }
 
-          /*  canvas.drawRect(
-                    centerX - (dayNameWidthPx /2), // left
-                    centerDayNameY - (dayNameHeightPx / 2), // top
-                    centerX + (dayNameWidthPx / 2), // right
-                    centerDayNameY + (dayNameHeightPx / 2), // bottom
-                    middlePanelPaint);*/
+            if ((startupGeometry == null)
+                    || !startupGeometry.isFor(bounds.width(), bounds.height(), isRound, bottomInsetPx)) {
+                startupGeometry = new BarGeometry(bounds.width(), bounds.height(), isRound, bottomInsetPx);
+            }
 
-            canvas.drawText(
-                    dayName, // "Monday"
-                    centerX, //
-                    centerDayNameY - ((fontMetricsInt.ascent + fontMetricsInt.descent) / 2), //
-                    dayNameTextPaint);
+            canvas.drawColor(startupSnapshot.backgroundColor);
+            drawStartupBar(canvas, startupGeometry.topBar, startupSnapshot.dayBackgroundColor);
+            drawStartupBar(canvas, startupGeometry.middleBar, startupSnapshot.timeBackgroundColor);
+            drawStartupBar(canvas, startupGeometry.bottomBar, startupSnapshot.dateBackgroundColor);
+        }
 
+        private void drawStartupBar(Canvas canvas, BarGeometry.Box bar, int color) {
+            startupPaint.setColor(color);
+            canvas.drawRect(bar.left, bar.top, bar.right, bar.bottom, startupPaint);
         }
 
         /**
-         * Draws the current time in the middle bar running horizontally across the middle of the screen.
-         *
-         * @param canvas
+         * Records the first frame, and the first drawn in full, in startupStats.
          */
-        private void drawTimeInMiddleBar(Canvas canvas) {
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
-            // TODO: 24 hour or am/pm?
-
-            String timeText = mAmbient
-                    ? String.format("%d:%02d", mTime.hour, mTime.minute)
-                    : String.format("%d:%02d", mTime.hour, mTime.minute);
-
-            Paint.FontMetricsInt textFontMetricsInt = timeTextPaint.getFontMetricsInt();
-            int timeHeightPx = textFontMetricsInt.ascent * -1;
-            int timeWidthPx = (int) timeTextPaint.measureText(timeText);
-
-            float centerX = watchFaceWidth / 2.0F;
-            float centerY = watchFaceHeight / 2.0F;
-            timeTextPaint.setTextAlign(Paint.Align.CENTER);
-
-            /*
-            canvas.drawRect(
-                    centerX - (timeWidthPx / 2), // left
-                    centerY - (timeHeightPx / 2), // top
-                    centerX + (timeWidthPx / 2), // right
-                    centerY + (timeHeightPx / 2), // bottom
-                    topPanelPaint); */
+        private void onStartupFrameDrawn() {
+            if (!firstFrameDrawn) {
+                firstFrameDrawn = true;
+                recordStartupStage(StartupStats.STAGE_FIRST_FRAME);
+                if ((renderState == null) && (startupSnapshot != null)) {
+                    startupStats.countSnapshotFirstFrame();
+                }
+            }
 
-            canvas.drawText(
-                    timeText, // "12:37"
-                    centerX,
-                    centerY - ((textFontMetricsInt.ascent + textFontMetricsInt.descent) / 2),
-                    timeTextPaint);
+            if (renderState != null) {
+                fullFidelityDrawn = true;
+                recordStartupStage(StartupStats.STAGE_FULL_FIDELITY);
+                startupSnapshot = null;
+                startupGeometry = null;
+            }
+        }
 
-//            Log.d(TAG, String.format("timeHeightPx= %d, timeWidthPx = %d, centreX = %f, centreY = %f, ascent = %d, descent = %d",
-//                    timeHeightPx, timeWidthPx, centerX, centerY, textFontMetricsInt.ascent, textFontMetricsInt.descent));
+        /**
+         * @param stage One of the StartupStats.STAGE_ constants
+         */
+        private void recordStartupStage(int stage) {
+            long sinceCreatedNanos = System.nanoTime() - createdNanos;
+            startupStats.record(stage, sinceCreatedNanos);
+            Log.d(TAG, "Startup stage " + stage + " reached after " + (sinceCreatedNanos / 1000000) + "ms");
         }
 
         /**
-         * Draws the current date in the bottom bar running horizontally across the bottoom of the
-         * screen. eg. "28 May 2016"
+         * Asks for the next frame of a flip, if one is under way, on the pacer's schedule. Once the
+         * last frame of the flip has been drawn, records how many frames it missed.
          *
-         * @param canvas
+         * @param frameTimeMs Time the frame just drawn started, from the clock's uptime
          */
-        private void drawDateInBottomBar(Canvas canvas) {
-            String dateStr = mTime.format("%e %B").trim();
-//            Log.d(TAG, "dateStr=" + dateStr);
-
-            Paint.FontMetricsInt textFontMetricsInt = dateTextPaint.getFontMetricsInt();
-            int dateHeightPx = textFontMetricsInt.ascent * -1;
-            int dateWidthPx = (int) dateTextPaint.measureText(dateStr);
+        private void paceFlip(long frameTimeMs) {
+            boolean flipping = retainedFaceCanvas.isFlipping();
+            if (!flipping && !flipPacer.isRunning()) {
+                return;
+            }
 
-//            Log.d(TAG, "dateWidth=" + dateWidthPx);
+            long delayMs = flipPacer.onFrame(frameTimeMs);
+            if (flipping) {
+                mUpdateTimeHandler.removeMessages(MSG_FLIP_FRAME);
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_FLIP_FRAME, delayMs);
+            } else {
+                endFlip();
+            }
+        }
 
-            float centerX = watchFaceWidth / 2.0F;
-            float centerYOfBottomBar = watchFaceHeight - marginPx - (shortBarHeightPx / 2);
+        /**
+         * Stops any flip animation, recording its frames.
+         */
+        private void endFlip() {
+            mUpdateTimeHandler.removeMessages(MSG_FLIP_FRAME);
+            if (flipPacer.isRunning()) {
+                flipPacer.stop();
+                frameStats.recordFlip(flipPacer.getFrameCount(), flipPacer.getMissedFrameCount());
+            }
+        }
 
-            dateTextPaint.setTextAlign(Paint.Align.CENTER);
+        /**
+         * @return Signature of the frame just drawn by faceRenderer. A frame looks the same as the
+         * last if it has the same text in the same render state and place.
+         */
+        private long frameSignature(int offsetX, int offsetY) {
+            long signature = (31 * faceRenderer.getLastFrameSignature()) + System.identityHashCode(renderState);
+            return (31 * ((31 * signature) + offsetX)) + offsetY;
+        }
 
-          /*  canvas.drawRect(
-                    centerX - (dateWidthPx / 2), // left
-                    centerYOfBottomBar- (dateHeightPx / 2), // top
-                    centerX + (dateWidthPx / 2), // right
-                    centerYOfBottomBar + (dateHeightPx / 2), // bottom
-                    middlePanelPaint);*/
+        /**
+         * Adds one to a counter of wakeups, invalidates or frames.
+         *
+         * @param counter One of the WakeupStats.COUNTER_ constants
+         */
+        private void countEvent(int counter) {
+            wakeupStats.increment(counter);
+        }
 
-            canvas.drawText(
-                    dateStr, // "12 JUN 2016"
-                    centerX,
-                    centerYOfBottomBar - ((textFontMetricsInt.ascent + textFontMetricsInt.descent) / 2),
-                    dateTextPaint);
+        /**
+         * Tells wakeupStats whether we're now invisible, ambient or interactive.
+         */
+        private void updateWakeupState() {
+            int state;
+            if (!isVisible()) {
+                state = WakeupStats.STATE_INVISIBLE;
+            } else if (isInAmbientMode()) {
+                state = WakeupStats.STATE_AMBIENT;
+            } else {
+                state = WakeupStats.STATE_INTERACTIVE;
+            }
+            wakeupStats.setState(state, SystemClock.elapsedRealtime());
         }
 
         /**
@@ -546,8 +1149,17 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
          */
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            redrawScheduler.reset();
             if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+            } else {
+                // No flips outside interactive mode, and none from a minute shown before
+                endFlip();
+                lastFrameMinute = -1;
+
+                // Complication changes are shown by the next interactive frame, whenever that is
+                mUpdateTimeHandler.removeMessages(MSG_COMPLICATION_REDRAW);
+                complicationRedrawLimiter.reset();
             }
         }
 
@@ -560,16 +1172,40 @@ public class RetroWatchFaceService extends CanvasWatchFaceService {
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Handle updating the time in interactive mode. Redraws only if the visible content has
+         * changed - if the handler fired a little before the change it was scheduled for, just
+         * waits out the remainder.
          */
         private void handleUpdateTimeMessage() {
-            invalidate();
+            long timeMs = clock.currentTimeMillis();
+            if (redrawScheduler.isDue(timeMs)) {
+                countEvent(WakeupStats.COUNTER_UPDATE_TIME_INVALIDATES);
+                invalidate();
+            }
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                long delayMs = redrawScheduler.scheduleNext(timeMs, clock.getTimeZone());
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
+
+        /**
+         * Draws a frame held back by the complication redraw rate limit.
+         */
+        private void handleComplicationRedrawMessage() {
+            if (shouldTimerBeRunning()) {
+                countEvent(WakeupStats.COUNTER_COMPLICATION_INVALIDATES);
+                invalidate();
+            }
+        }
+
+        /**
+         * Draws the next frame of a flip animation.
+         */
+        private void handleFlipFrameMessage() {
+            if (shouldTimerBeRunning()) {
+                countEvent(WakeupStats.COUNTER_FLIP_INVALIDATES);
+                invalidate();
+            }
+        }
     }
 }
@@ -0,0 +1,90 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the chosen theme in memory, tells listeners about new choices and coalesces the saving of
+ * them, leaving subclasses to say where the choice is saved and when a save runs.
+ * <p/>
+ * When a theme is chosen and no save is waiting, {@link #scheduleWrite} is called. The subclass
+ * calls {@link #flush} a little later, which saves whatever was chosen last - so a run of choices
+ * made before then is saved once.
+ */
+public abstract class AbstractThemeConfigStore implements ThemeConfigStore {
+
+    private final List<Listener> listeners = new ArrayList<Listener>();
+
+    private String selectedThemeName;
+
+    // false until the saved choice has been read
+    private boolean loaded;
+
+    // true if the choice in memory hasn't been saved yet
+    private boolean writePending;
+
+    /**
+     * @return The saved theme name, or null if none has been saved
+     */
+    protected abstract String read();
+
+    /**
+     * Saves the given theme name.
+     */
+    protected abstract void write(String themeName);
+
+    /**
+     * Arranges for {@link #flush} to be called soon.
+     */
+    protected abstract void scheduleWrite();
+
+    @Override
+    public String getSelectedThemeName() {
+        if (!loaded) {
+            selectedThemeName = read();
+            loaded = true;
+        }
+        return selectedThemeName;
+    }
+
+    @Override
+    public void selectTheme(String themeName) {
+        if (themeName == null) {
+            throw new IllegalArgumentException("No theme name");
+        }
+        if (themeName.equals(getSelectedThemeName())) {
+            return;
+        }
+
+        selectedThemeName = themeName;
+        if (!writePending) {
+            writePending = true;
+            scheduleWrite();
+        }
+
+        // Copied, as a listener may remove itself
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.onThemeSelected(themeName);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (writePending) {
+            writePending = false;
+            write(selectedThemeName);
+        }
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
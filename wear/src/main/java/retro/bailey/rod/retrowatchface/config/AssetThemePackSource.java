@@ -0,0 +1,62 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link ThemePackSource} reading straight from the theme pack in the APK, without loading the rest
+ * of it. Needs the pack to be stored uncompressed (see aaptOptions in wear/build.gradle), so that
+ * it can be opened as a file descriptor. The descriptor covers the whole APK, so reads are offset by
+ * where the pack starts within it. Positional reads leave the channel's own position alone, so this
+ * is safe to use from any thread.
+ */
+public class AssetThemePackSource implements ThemePackSource, Closeable {
+
+    // Held so that the file descriptor isn't closed when it is garbage collected
+    private final AssetFileDescriptor descriptor;
+
+    private final FileChannel channel;
+
+    // Where the pack starts within the APK
+    private final long startOffset;
+
+    private final long length;
+
+    /**
+     * @param descriptor Descriptor of the pack asset. Kept open until {@link #close}.
+     */
+    public AssetThemePackSource(AssetFileDescriptor descriptor) {
+        this.descriptor = descriptor;
+        this.channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+        this.startOffset = descriptor.getStartOffset();
+        this.length = descriptor.getLength();
+    }
+
+    @Override
+    public void read(long position, byte[] buffer) throws IOException {
+        if ((position < 0) || (position + buffer.length > length)) {
+            throw new EOFException("Read of " + buffer.length + " bytes at " + position + " is past end of pack");
+        }
+
+        ByteBuffer target = ByteBuffer.wrap(buffer);
+        while (target.hasRemaining()) {
+            if (channel.read(target, startOffset + position + target.position()) < 0) {
+                throw new EOFException("Pack ended early");
+            }
+        }
+    }
+
+    /**
+     * Closes the descriptor. The source can't be read after this.
+     */
+    @Override
+    public void close() throws IOException {
+        descriptor.close();
+    }
+}
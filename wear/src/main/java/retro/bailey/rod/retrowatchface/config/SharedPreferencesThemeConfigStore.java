@@ -0,0 +1,81 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Process wide {@link ThemeConfigStore} that saves the chosen theme in SharedPreferences. The
+ * selection activity and the watch face service run in the same process, so engines are told of
+ * a new choice directly, without going through the saved copy. Saves are made on the main thread
+ * {@link #WRITE_DELAY_MS} after a choice, so scrolling quickly through themes saves only the last.
+ */
+public class SharedPreferencesThemeConfigStore extends AbstractThemeConfigStore {
+
+    /**
+     * How long after a choice it is saved.
+     */
+    public static final long WRITE_DELAY_MS = 500;
+
+    private static final String PREFERENCES_NAME = "theme_config";
+
+    private static final String KEY_THEME_NAME = "theme_name";
+
+    private static volatile SharedPreferencesThemeConfigStore instance;
+
+    private final SharedPreferences preferences;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private SharedPreferencesThemeConfigStore(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The shared store. Safe to call from any thread, but the store itself must only be
+     * used from the main thread.
+     */
+    public static SharedPreferencesThemeConfigStore getInstance(Context context) {
+        SharedPreferencesThemeConfigStore result = instance;
+        if (result == null) {
+            synchronized (SharedPreferencesThemeConfigStore.class) {
+                result = instance;
+                if (result == null) {
+                    result = new SharedPreferencesThemeConfigStore(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected String read() {
+        return preferences.getString(KEY_THEME_NAME, null);
+    }
+
+    @Override
+    protected void write(String themeName) {
+        // apply() writes to disk in the background
+        preferences.edit().putString(KEY_THEME_NAME, themeName).apply();
+    }
+
+    @Override
+    protected void scheduleWrite() {
+        handler.postDelayed(flushRunnable, WRITE_DELAY_MS);
+    }
+
+    @Override
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        super.flush();
+    }
+}
@@ -0,0 +1,44 @@
+package retro.bailey.rod.retrowatchface.config;
+
+/**
+ * Where the user's choice of theme is kept. The selection activity writes to it, and running watch
+ * face engines listen to it so that they switch theme as soon as a new one is chosen. The choice
+ * survives restarts, so a newly created engine starts in the theme last chosen.
+ * <p/>
+ * Only to be used from the main thread.
+ */
+public interface ThemeConfigStore {
+
+    /**
+     * Told when a theme is chosen.
+     */
+    interface Listener {
+
+        /**
+         * @param themeName Name of the newly chosen theme, as in {@link PackedTheme#name}
+         */
+        void onThemeSelected(String themeName);
+    }
+
+    /**
+     * @return Name of the chosen theme, or null if the user has never chosen one
+     */
+    String getSelectedThemeName();
+
+    /**
+     * Chooses a theme. Listeners are told straight away, but the choice may be saved a little later
+     * so that a quick run of choices is saved just once.
+     *
+     * @param themeName Name of the theme, as in {@link PackedTheme#name}
+     */
+    void selectTheme(String themeName);
+
+    /**
+     * Saves the chosen theme now, if it hasn't been saved yet.
+     */
+    void flush();
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+}
@@ -0,0 +1,165 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Process wide, read only collection of all the available themes, shared by every watch face engine
+ * and the theme selection activity. Themes can be looked up by position (as shown in the selection
+ * list) or by name, both in constant time.
+ * <p/>
+ * Only the index of the theme pack - each theme's name and where it is - is read when the
+ * repository is first asked for. Each theme is read from the pack the first time it is used, so a
+ * large catalog costs little more to open than a small one.
+ */
+public class ThemeRepository implements ThemeCatalog {
+
+    private static final String TAG = ThemeRepository.class.getSimpleName();
+
+    private static volatile ThemeRepository instance;
+
+    private final LazyThemeCatalog catalog;
+
+    private ThemeRepository(LazyThemeCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @return The shared repository, reading the theme pack's index on first use. Safe to call
+     * from any thread.
+     */
+    public static ThemeRepository getInstance(Context context) {
+        ThemeRepository result = instance;
+        if (result == null) {
+            synchronized (ThemeRepository.class) {
+                result = instance;
+                if (result == null) {
+                    result = load(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ThemeRepository load(Context context) {
+        AssetManager assets = context.getAssets();
+        ThemePackSource source = null;
+        InputStream inputStream = null;
+
+        try {
+            // Theme pack compiled from themes.json at build time. The source stays open for as
+            // long as the process, as themes are read from it when first used.
+            source = openSource(assets);
+            // Buffered here, as nothing past the index is read from it
+            inputStream = new BufferedInputStream(assets.open(ThemePackReader.ASSET_NAME));
+            LazyThemeCatalog catalog = ThemePackReader.readCatalog(inputStream, source);
+            Log.i(TAG, "Read index of " + catalog.size() + " themes from " + ThemePackReader.ASSET_NAME);
+            return new ThemeRepository(catalog);
+        } catch (IOException iox) {
+            if (source instanceof Closeable) {
+                close((Closeable) source);
+            }
+            // Only happens if the build is broken, as the pack is validated when compiled
+            throw new IllegalStateException("Unable to read theme pack", iox);
+        } finally {
+            if (inputStream != null) {
+                close(inputStream);
+            }
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.w(TAG, e);
+        }
+    }
+
+    /**
+     * @return Random access to the pack in the APK, or to a copy in memory if it was compressed
+     */
+    private static ThemePackSource openSource(AssetManager assets) throws IOException {
+        try {
+            return new AssetThemePackSource(assets.openFd(ThemePackReader.ASSET_NAME));
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, ThemePackReader.ASSET_NAME + " is compressed, so reading it all into memory");
+        }
+
+        InputStream inputStream = assets.open(ThemePackReader.ASSET_NAME);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return new ByteArrayThemePackSource(out.toByteArray());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return Number of themes available
+     */
+    @Override
+    public int size() {
+        return catalog.size();
+    }
+
+    @Override
+    public String getName(int index) {
+        return catalog.getName(index);
+    }
+
+    @Override
+    public int getContentHash(int index) {
+        return catalog.getContentHash(index);
+    }
+
+    /**
+     * @return Theme at the given position, in the order they appear in themes.json
+     */
+    @Override
+    public PackedTheme get(int index) {
+        return catalog.get(index);
+    }
+
+    /**
+     * @return Position of the named theme, or -1 if there is no such theme
+     */
+    @Override
+    public int indexOf(String name) {
+        return catalog.indexOf(name);
+    }
+
+    /**
+     * @return The named theme, or null if there is no such theme
+     */
+    public PackedTheme findByName(String name) {
+        int index = indexOf(name);
+        return (index < 0) ? null : catalog.get(index);
+    }
+
+    /**
+     * @return Theme used until the user chooses one - the first in themes.json
+     */
+    public PackedTheme getDefaultTheme() {
+        return catalog.get(0); // 0 = Marine
+    }
+
+    @Override
+    public String toString() {
+        return "ThemeRepository[themes=" + catalog.size() + ", loaded=" + catalog.getLoadedCount() + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Process wide store of the {@link ThemeSnapshot} of the theme last applied, saved in
+ * SharedPreferences so that it survives restarts. Read once, then kept in memory.
+ * <p/>
+ * Only to be used from the main thread.
+ */
+public class ThemeSnapshotStore {
+
+    private static final String PREFERENCES_NAME = "theme_snapshot";
+
+    private static final String KEY_SNAPSHOT = "snapshot";
+
+    private static volatile ThemeSnapshotStore instance;
+
+    private final SharedPreferences preferences;
+
+    private ThemeSnapshot snapshot;
+
+    // false until the saved snapshot has been read
+    private boolean loaded;
+
+    private ThemeSnapshotStore(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The shared store. Safe to call from any thread, but the store itself must only be
+     * used from the main thread.
+     */
+    public static ThemeSnapshotStore getInstance(Context context) {
+        ThemeSnapshotStore result = instance;
+        if (result == null) {
+            synchronized (ThemeSnapshotStore.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ThemeSnapshotStore(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Snapshot of the theme last applied, or null if there isn't one that can be read
+     */
+    public ThemeSnapshot read() {
+        if (!loaded) {
+            snapshot = ThemeSnapshot.decode(preferences.getString(KEY_SNAPSHOT, null));
+            loaded = true;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Saves the snapshot of a newly applied theme, unless it is already saved.
+     */
+    public void write(ThemeSnapshot snapshot) {
+        if (snapshot.equals(read())) {
+            return;
+        }
+        this.snapshot = snapshot;
+        // apply() writes to disk in the background
+        preferences.edit().putString(KEY_SNAPSHOT, snapshot.encode()).apply();
+    }
+}
@@ -0,0 +1,127 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * How the time is drawn in ambient mode - as white outlines on black, so that few pixels are lit,
+ * and with every glyph pre-rendered into a {@link GlyphAtlas} so that the once a minute ambient
+ * wakeup only has to copy a few rectangles. On low-bit displays the glyphs are rendered without
+ * anti-aliasing, so every pixel is either fully on or off.
+ * <p/>
+ * If the widest time would light more than {@link #MAX_LIT_FRACTION} of the screen, the text is
+ * shrunk until it doesn't.
+ */
+public final class AmbientTime {
+
+    /**
+     * Most of the screen the time may light, as a fraction of the visible area.
+     */
+    public static final float MAX_LIT_FRACTION = 0.05F;
+
+    /**
+     * Width of the outlines, as a fraction of the text size. Never less than 1px.
+     */
+    private static final float STROKE_WIDTH_FRACTION = 1.0F / 40.0F;
+
+    /**
+     * Times to try shrinking the text to get within the budget. Each attempt scales by the square
+     * root of the overshoot, which almost always lands within budget first time.
+     */
+    private static final int MAX_SHRINK_ATTEMPTS = 3;
+
+    // White outline, center aligned
+    public final Paint textPaint;
+
+    // Pre-rendered outlines of the digits and colon
+    public final GlyphAtlas glyphAtlas;
+
+    public final boolean lowBit;
+
+    // Most pixels any time drawn from the atlas lights
+    public final int maxLitPixels;
+
+    private final Typeface typeface;
+
+    // Size the time panel asked for, before shrinking to fit the budget
+    private final float requestedTextSize;
+
+    private final int litPixelBudget;
+
+    private AmbientTime(Typeface typeface, float textSize, boolean lowBit, int litPixelBudget, String[] timeSamples) {
+        this.typeface = typeface;
+        this.requestedTextSize = textSize;
+        this.lowBit = lowBit;
+        this.litPixelBudget = litPixelBudget;
+
+        Paint paint = paint(typeface, textSize, lowBit);
+        GlyphAtlas atlas = GlyphAtlas.build(paint);
+        int lit = maxLitPixels(atlas, timeSamples);
+
+        for (int attempt = 0; (attempt < MAX_SHRINK_ATTEMPTS) && (lit > litPixelBudget); attempt++) {
+            // Lit pixels grow with the square of the text size
+            textSize *= (float) Math.sqrt((double) litPixelBudget / lit) * 0.95F;
+            atlas.release();
+            paint = paint(typeface, textSize, lowBit);
+            atlas = GlyphAtlas.build(paint);
+            lit = maxLitPixels(atlas, timeSamples);
+        }
+
+        textPaint = paint;
+        glyphAtlas = atlas;
+        maxLitPixels = lit;
+    }
+
+    /**
+     * @param typeface       Font of the time
+     * @param textSize       Size in px the time is drawn at in interactive mode
+     * @param lowBit         true if the display only has a few bits per pixel in ambient mode
+     * @param visiblePixels  Number of visible pixels on the screen
+     * @param timeSamples    The widest possible times, as given by {@link TimeTextFormatter#getTimeSamples}
+     */
+    public static AmbientTime build(Typeface typeface, float textSize, boolean lowBit, int visiblePixels,
+                                    String[] timeSamples) {
+        return new AmbientTime(typeface, textSize, lowBit, (int) (visiblePixels * MAX_LIT_FRACTION), timeSamples);
+    }
+
+    /**
+     * @return true if this was built with the given inputs, so can be reused rather than built again
+     */
+    public boolean isFor(Typeface typeface, float textSize, boolean lowBit, int visiblePixels) {
+        return (this.typeface == typeface)
+                && (requestedTextSize == textSize)
+                && (this.lowBit == lowBit)
+                && (litPixelBudget == (int) (visiblePixels * MAX_LIT_FRACTION));
+    }
+
+    public void release() {
+        glyphAtlas.release();
+    }
+
+    private static Paint paint(Typeface typeface, float textSize, boolean lowBit) {
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        paint.setTypeface(typeface);
+        paint.setTextSize(textSize);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(Math.max(1.0F, textSize * STROKE_WIDTH_FRACTION));
+        paint.setAntiAlias(!lowBit);
+        return paint;
+    }
+
+    private static int maxLitPixels(GlyphAtlas atlas, String[] timeSamples) {
+        int max = 0;
+        for (String sample : timeSamples) {
+            char[] chars = sample.toCharArray();
+            // AM/PM markers aren't in the atlas, so only the digits count
+            int digitCount = 0;
+            while ((digitCount < chars.length) && atlas.canDraw(chars, digitCount, 1)) {
+                digitCount++;
+            }
+            max = Math.max(max, atlas.countLitPixels(chars, 0, digitCount));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,95 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Offscreen bitmap holding the static part of the watch face - the background fill and the three
+ * colored bars. These pixels only change when the theme or the surface changes, so they are
+ * rendered once into this layer and then blitted onto the canvas with a single draw per frame.
+ */
+public class BackgroundLayer {
+
+    private Bitmap bitmap;
+
+    // Inputs the current bitmap was built from. If any of these change, the bitmap is stale.
+    private String themeName;
+    private int backgroundColor;
+    private int width;
+    private int height;
+    private boolean round;
+
+    /**
+     * @return true if the layer holds a bitmap built from exactly the given inputs.
+     */
+    public boolean isValidFor(String themeName, int backgroundColor, int width, int height, boolean round) {
+        return (bitmap != null)
+                && (this.width == width)
+                && (this.height == height)
+                && (this.round == round)
+                && (this.backgroundColor == backgroundColor)
+                && (this.themeName != null)
+                && this.themeName.equals(themeName);
+    }
+
+    /**
+     * Renders the background and bars into the offscreen bitmap, reusing the existing bitmap if it
+     * is already the right size.
+     */
+    public void rebuild(String themeName, int width, int height, boolean round,
+                        Paint backgroundPaint,
+                        Rect topBar, Paint topBarPaint,
+                        Rect middleBar, Paint middleBarPaint,
+                        Rect bottomBar, Paint bottomBarPaint) {
+        if ((width <= 0) || (height <= 0)) {
+            release();
+            return;
+        }
+
+        if ((bitmap == null) || (bitmap.getWidth() != width) || (bitmap.getHeight() != height)) {
+            release();
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawRect(0, 0, width, height, backgroundPaint);
+        canvas.drawRect(topBar, topBarPaint);
+        canvas.drawRect(middleBar, middleBarPaint);
+        canvas.drawRect(bottomBar, bottomBarPaint);
+
+        this.themeName = themeName;
+        this.backgroundColor = backgroundPaint.getColor();
+        this.width = width;
+        this.height = height;
+        this.round = round;
+    }
+
+    /**
+     * Copies the cached layer onto the given canvas. Does nothing if the layer has not been built.
+     */
+    public void draw(Canvas canvas) {
+        if (bitmap != null) {
+            canvas.drawBitmap(bitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * Drops the cached bitmap so the next {@link #isValidFor} check fails and it gets rebuilt.
+     */
+    public void invalidate() {
+        themeName = null;
+    }
+
+    /**
+     * Frees the offscreen bitmap, eg. when the surface is destroyed.
+     */
+    public void release() {
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+        themeName = null;
+    }
+}
@@ -0,0 +1,129 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * The day name and date shown on the watch face, eg. "Monday" and "12 June". These only change once
+ * a day, so they are formatted once and then reused by every frame until local midnight.
+ * <p/>
+ * The text is also worked out afresh if the time zone or formatter (ie. locale) changes, if the
+ * clock is set back before the start of the cached day, or after {@link #invalidate()}.
+ */
+public class CalendarTextCache {
+
+    private final Calendar calendar = Calendar.getInstance();
+
+    private TimeTextFormatter formatter;
+
+    private char[] dayNameChars;
+    private int dayNameLength;
+
+    private char[] dateChars;
+    private int dateLength;
+
+    // The cached text is for local times from validFromMs (inclusive) to validUntilMs (exclusive).
+    // Both 0 means nothing is cached.
+    private long validFromMs;
+    private long validUntilMs;
+
+    // Time zone the cached text is for
+    private TimeZone timeZone;
+
+    private int formatCount;
+
+    public CalendarTextCache(TimeTextFormatter formatter) {
+        setFormatter(formatter);
+    }
+
+    /**
+     * Formats with the given formatter from now on, eg. because the locale has changed.
+     */
+    public void setFormatter(TimeTextFormatter formatter) {
+        this.formatter = formatter;
+        dayNameChars = new char[formatter.getMaxDayNameLength()];
+        dateChars = new char[formatter.getMaxDateLength()];
+        invalidate();
+    }
+
+    /**
+     * Forgets the cached text, so the next call to {@link #update} formats it again. Call when the
+     * time or time zone has been changed.
+     */
+    public void invalidate() {
+        validFromMs = 0;
+        validUntilMs = 0;
+    }
+
+    /**
+     * Makes sure the cached text is for the day containing nowMs. Does nothing, and allocates
+     * nothing, unless the day or time zone has changed.
+     *
+     * @param nowMs    Current wall clock time
+     * @param timeZone Time zone the face is displaying
+     * @return true if the text had to be formatted again
+     */
+    public boolean update(long nowMs, TimeZone timeZone) {
+        if ((nowMs >= validFromMs) && (nowMs < validUntilMs) && timeZone.equals(this.timeZone)) {
+            return false;
+        }
+
+        this.timeZone = timeZone;
+        calendar.setTimeZone(timeZone);
+        calendar.setTimeInMillis(nowMs);
+
+        // Calendar.DAY_OF_WEEK starts from SUNDAY = 1, the formatter from Sunday = 0
+        dayNameLength = formatter.formatDayName(calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY, dayNameChars);
+        dateLength = formatter.formatDate(calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.MONTH), dateChars);
+
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        validFromMs = calendar.getTimeInMillis();
+
+        // Adding a day rather than 24 hours gets midnight right across daylight saving changes
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        validUntilMs = calendar.getTimeInMillis();
+
+        formatCount++;
+        return true;
+    }
+
+    /**
+     * @return Buffer holding the day name eg. "Monday". Must not be modified.
+     */
+    public char[] getDayNameChars() {
+        return dayNameChars;
+    }
+
+    public int getDayNameLength() {
+        return dayNameLength;
+    }
+
+    /**
+     * @return Buffer holding the date eg. "12 June". Must not be modified.
+     */
+    public char[] getDateChars() {
+        return dateChars;
+    }
+
+    public int getDateLength() {
+        return dateLength;
+    }
+
+    /**
+     * @return Wall clock time at which the cached text next needs to change ie. the next local
+     * midnight
+     */
+    public long getValidUntilMs() {
+        return validUntilMs;
+    }
+
+    /**
+     * @return Number of times the text has been formatted
+     */
+    public int getFormatCount() {
+        return formatCount;
+    }
+}
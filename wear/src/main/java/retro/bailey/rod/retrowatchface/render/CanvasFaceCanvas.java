@@ -0,0 +1,244 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Draws a {@link FaceRenderer} frame onto an android.graphics.Canvas, using the cached background,
+ * paints and layout of a {@link RenderState}. Point it at the frame's canvas and state with
+ * {@link #setTarget} before each frame.
+ * <p/>
+ * In ambient mode the background is black and only the time is drawn, in outline, from the
+ * state's {@link AmbientTime}, moved by the given burn-in offset.
+ * <p/>
+ * With tabular digits, the time can be drawn part way through a {@link FlipTracker}'s flip. Each
+ * flipping digit is split at the hinge across its middle: behind, the top half of the new digit and
+ * the bottom half of the old, and in front a flap that starts as the top half of the old digit and
+ * falls about the hinge, ending as the bottom half of the new one. The flap hides what is behind it.
+ * <p/>
+ * The day and date are drawn together with any {@link ComplicationSlot} in their bar, where the
+ * state's layout has made room for it.
+ */
+public class CanvasFaceCanvas implements FaceCanvas {
+
+    private Canvas canvas;
+
+    private RenderState state;
+
+    private boolean ambient;
+
+    private int offsetX;
+
+    private int offsetY;
+
+    private boolean tabularDigits;
+
+    // Flip the time is part way through, or null
+    private FlipTracker flip;
+
+    private final float[] digitRange = new float[2];
+
+    // Complications in the top and bottom bars. Null if not used.
+    private ComplicationSlot dayComplication;
+    private ComplicationSlot dateComplication;
+
+    /**
+     * @param canvas Canvas of the frame about to be drawn
+     * @param state  Render state to draw it with
+     */
+    public void setTarget(Canvas canvas, RenderState state) {
+        setTarget(canvas, state, false, 0, 0);
+    }
+
+    /**
+     * @param canvas  Canvas of the frame about to be drawn
+     * @param state   Render state to draw it with
+     * @param ambient true to draw in ambient mode
+     * @param offsetX Px to move ambient mode text right by, for burn-in protection
+     * @param offsetY Px to move ambient mode text down by, for burn-in protection
+     */
+    public void setTarget(Canvas canvas, RenderState state, boolean ambient, int offsetX, int offsetY) {
+        this.canvas = canvas;
+        this.state = state;
+        this.ambient = ambient;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * @param tabularDigits true to draw the interactive time from the glyph atlas with tabular
+     *                      digits, so each digit stays put when the others change
+     */
+    public void setTabularDigits(boolean tabularDigits) {
+        this.tabularDigits = tabularDigits;
+    }
+
+    /**
+     * @param flip Flip to draw the time part way through, from now on, or null to draw the time as
+     *             it is. Only used with tabular digits.
+     */
+    public void setFlip(FlipTracker flip) {
+        this.flip = flip;
+    }
+
+    /**
+     * @param dayComplication  Complication to draw in the top bar with the day, or null
+     * @param dateComplication Complication to draw in the bottom bar with the date, or null
+     */
+    public void setComplications(ComplicationSlot dayComplication, ComplicationSlot dateComplication) {
+        this.dayComplication = dayComplication;
+        this.dateComplication = dateComplication;
+    }
+
+    /**
+     * Draws the background and the three bars by blitting the cached background layer, or clears
+     * to black in ambient mode.
+     */
+    @Override
+    public void drawBars() {
+        if (ambient) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            drawBackgroundLayer();
+        }
+    }
+
+    @Override
+    public void drawPanelText(int panel, char[] text, int start, int count) {
+        if (ambient) {
+            drawAmbientText(panel, text, start, count);
+            return;
+        }
+
+        FaceLayout layout = state.layout;
+
+        switch (panel) {
+            case PANEL_DAY:
+                drawText(text, start, count, layout.dayBaseline, state.day.textPaint);
+                drawComplication(dayComplication, layout.dayComplicationBounds, state.day.textPaint);
+                break;
+
+            case PANEL_TIME:
+                GlyphAtlas glyphAtlas = state.time.glyphAtlas;
+                if ((glyphAtlas != null) && glyphAtlas.canDraw(text, start, count)) {
+                    if (tabularDigits) {
+                        if ((flip != null) && (flip.getProgress() < 1) && (flip.getFromCount() == count)
+                                && glyphAtlas.canDraw(flip.getFromText(), 0, count)) {
+                            drawFlippingTime(glyphAtlas, text, start, count);
+                        } else {
+                            glyphAtlas.drawTabularCentered(canvas, text, start, count, layout.centerX, layout.timeBaseline);
+                        }
+                        break;
+                    }
+                    glyphAtlas.drawCentered(canvas, text, start, count, layout.centerX, layout.timeBaseline);
+                } else {
+                    drawText(text, start, count, layout.timeBaseline, state.time.textPaint);
+                }
+                break;
+
+            case PANEL_DATE:
+                drawText(text, start, count, layout.dateBaseline, state.date.textPaint);
+                drawComplication(dateComplication, layout.dateComplicationBounds, state.date.textPaint);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown panel " + panel);
+        }
+    }
+
+    private void drawFlippingTime(GlyphAtlas glyphAtlas, char[] text, int start, int count) {
+        float centerX = state.layout.centerX;
+        float baseline = state.layout.timeBaseline;
+        char[] fromText = flip.getFromText();
+        int hingeY = glyphAtlas.getHingeY(baseline);
+
+        // Seen edge on, the flap's height goes with the cosine of the angle it has turned through.
+        // Positive while it shows the old top half, negative once over and showing the new bottom.
+        float flapScale = (float) Math.cos(Math.PI * flip.getProgress());
+
+        for (int i = 0; i < count; i++) {
+            if (!flip.isFlipped(i)) {
+                continue;
+            }
+
+            glyphAtlas.drawTabularChar(canvas, text, start, count, i, centerX, baseline, GlyphAtlas.PART_TOP, 1);
+            glyphAtlas.drawTabularChar(canvas, fromText, 0, count, i, centerX, baseline, GlyphAtlas.PART_BOTTOM, 1);
+
+            glyphAtlas.getTabularDigitRange(text, start, count, i, centerX, digitRange);
+            if (flapScale > 0) {
+                float flapTop = hingeY - (flapScale * (hingeY - glyphAtlas.getDigitTop(baseline)));
+                drawBackground(digitRange[0], flapTop, digitRange[1], hingeY);
+                glyphAtlas.drawTabularChar(canvas, fromText, 0, count, i, centerX, baseline,
+                        GlyphAtlas.PART_TOP, flapScale);
+            } else {
+                float flapBottom = hingeY - (flapScale * (glyphAtlas.getDigitBottom(baseline) - hingeY));
+                drawBackground(digitRange[0], hingeY, digitRange[1], flapBottom);
+                glyphAtlas.drawTabularChar(canvas, text, start, count, i, centerX, baseline,
+                        GlyphAtlas.PART_BOTTOM, -flapScale);
+            }
+        }
+
+        // Drawn last, so that the background drawn behind the flaps doesn't cut into them
+        for (int i = 0; i < count; i++) {
+            if (!flip.isFlipped(i)) {
+                glyphAtlas.drawTabularChar(canvas, text, start, count, i, centerX, baseline, GlyphAtlas.PART_WHOLE, 1);
+            }
+        }
+    }
+
+    /**
+     * Restores the background, bars included, within the given rectangle.
+     */
+    private void drawBackground(float left, float top, float right, float bottom) {
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        drawBackgroundLayer();
+        canvas.restore();
+    }
+
+    /**
+     * Blits the cached background layer, or draws the background and bars directly for a still
+     * state, which has none.
+     */
+    private void drawBackgroundLayer() {
+        if (state.backgroundLayer != null) {
+            state.backgroundLayer.draw(canvas);
+            return;
+        }
+        FaceLayout layout = state.layout;
+        canvas.drawPaint(state.backgroundPaint);
+        canvas.drawRect(layout.topBar, state.day.backgroundPaint);
+        canvas.drawRect(layout.middleBar, state.time.backgroundPaint);
+        canvas.drawRect(layout.bottomBar, state.date.backgroundPaint);
+    }
+
+    private void drawAmbientText(int panel, char[] text, int start, int count) {
+        if (panel != PANEL_TIME) {
+            // Only the time is shown in ambient mode
+            return;
+        }
+
+        AmbientTime ambientTime = state.ambientTime;
+        float centerX = state.layout.centerX + offsetX;
+        float baseline = state.layout.timeBaseline + offsetY;
+
+        if (ambientTime.glyphAtlas.canDraw(text, start, count)) {
+            ambientTime.glyphAtlas.drawCentered(canvas, text, start, count, centerX, baseline);
+        } else {
+            canvas.drawText(text, start, count, centerX, baseline, ambientTime.textPaint);
+        }
+    }
+
+    private void drawComplication(ComplicationSlot complication, Rect bounds, Paint panelTextPaint) {
+        if (complication != null) {
+            complication.draw(canvas, state, bounds, panelTextPaint);
+        }
+    }
+
+    private void drawText(char[] text, int start, int count, float baseline, Paint paint) {
+        // Paints are center aligned
+        canvas.drawText(text, start, count, state.layout.centerX, baseline, paint);
+    }
+}
@@ -0,0 +1,367 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+/**
+ * What one complication shows in its strip of the top or bottom bar - an icon and a little text, eg.
+ * the step count - cached so that frames only draw it. The text is formatted, and the icon loaded,
+ * when new data arrives, and the text is formatted again once a minute in case it depends on the
+ * time (eg. "in 5 min"). Where the icon and text go, the size of the text and the icon's bitmap are
+ * worked out the first time the slot is drawn with a render state or new content, then reused.
+ * <p/>
+ * Data is compared with what was shown before, so an update that changes nothing shown - which
+ * most do - reports no change and needn't cause a frame. Icons are loaded in the background, as the
+ * data only says where to find them, and once loaded are compared pixel for pixel with the icon
+ * shown, as the data gives no other way to tell whether the icon has changed. Changes found then are
+ * reported to the {@link OnChangeListener}.
+ * <p/>
+ * Only to be used from the main thread.
+ */
+public class ComplicationSlot {
+
+    /**
+     * Told when what a slot shows changes other than through {@link #setData} or {@link #refresh},
+     * ie. when an icon has been loaded.
+     */
+    public interface OnChangeListener {
+        void onComplicationChanged(ComplicationSlot slot);
+    }
+
+    // Short text is at most 7 chars, so this is plenty
+    private static final int MAX_TEXT_LENGTH = 16;
+
+    private static final long MS_PER_MINUTE = 60 * 1000;
+
+    // Icon and text sizes as fractions of the height of the slot's bounds, and the gap between them
+    // as a fraction of the icon size
+    private static final float ICON_SIZE_FRACTION = 0.7F;
+    private static final float TEXT_SIZE_FRACTION = 0.6F;
+    private static final float ICON_GAP_FRACTION = 0.2F;
+
+    private final int panel;
+
+    private final Context context;
+
+    private final Handler handler;
+
+    private final OnChangeListener listener;
+
+    private ComplicationData data;
+
+    private boolean hasContent;
+
+    // Formatted text, and a buffer to format into for comparison
+    private char[] text = new char[MAX_TEXT_LENGTH];
+    private char[] formatted = new char[MAX_TEXT_LENGTH];
+    private int textLength;
+
+    // Minute, since the epoch, the text was last formatted for
+    private long formattedMinute = -1;
+
+    private Drawable iconDrawable;
+
+    // Identifies the latest icon load, so that the results of any earlier ones are ignored
+    private int iconLoadSequence;
+
+    // Changed whenever what is shown changes
+    private int version;
+
+    // Layout for the render state last drawn with. Null if it must be worked out again.
+    private RenderState measuredState;
+    private final Paint textPaint = new Paint();
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private boolean textFits;
+    private float textX;
+    private float baseline;
+    private float iconLeft;
+    private float iconTop;
+    private int iconSize;
+
+    // Icon drawn at iconSize in the text color, and a spare the same size to draw newly loaded
+    // icons into for comparison
+    private Bitmap iconBitmap;
+    private Bitmap spareIconBitmap;
+
+    /**
+     * @param panel    FaceCanvas.PANEL_DAY or PANEL_DATE, for the bar the slot is in
+     * @param context  Used to format text and load icons
+     * @param handler  Main thread handler, that loaded icons are delivered to
+     * @param listener Told when an icon has been loaded that changes what is shown
+     */
+    public ComplicationSlot(int panel, Context context, Handler handler, OnChangeListener listener) {
+        this.panel = panel;
+        this.context = context;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * @return One of the FaceCanvas.PANEL_ constants, for the bar the slot is in
+     */
+    public int getPanel() {
+        return panel;
+    }
+
+    /**
+     * @return true if the slot has something to show, and so needs room in its bar
+     */
+    public boolean hasContent() {
+        return hasContent;
+    }
+
+    /**
+     * @return A number that changes whenever what the slot shows changes
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Takes new data from the complication's provider, and starts loading its icon if it has one.
+     *
+     * @param data  As given to onComplicationDataUpdate
+     * @param nowMs Current wall clock time
+     * @return true if what is shown has changed. Any change to the icon is reported later, to the
+     * listener.
+     */
+    public boolean setData(ComplicationData data, long nowMs) {
+        this.data = data;
+        formattedMinute = -1;
+        boolean changed = refresh(nowMs);
+
+        Icon icon = hasContent ? data.getIcon() : null;
+        final int sequence = ++iconLoadSequence;
+        if (icon != null) {
+            icon.loadDrawableAsync(context, new Icon.OnDrawableLoadedListener() {
+                @Override
+                public void onDrawableLoaded(Drawable drawable) {
+                    if (sequence == iconLoadSequence) {
+                        onIconLoaded(drawable);
+                    }
+                }
+            }, handler);
+        } else if (iconDrawable != null) {
+            iconDrawable = null;
+            onContentChanged();
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Formats the text again if the minute has changed since it was last formatted, as it may depend
+     * on the time, and checks the data is still active. Cheap to call every frame.
+     *
+     * @param nowMs Current wall clock time
+     * @return true if what is shown has changed
+     */
+    public boolean refresh(long nowMs) {
+        long minute = nowMs / MS_PER_MINUTE;
+        if (minute == formattedMinute) {
+            return false;
+        }
+        formattedMinute = minute;
+
+        boolean newHasContent = isShown(data, nowMs);
+        int newLength = newHasContent ? format(data, nowMs, formatted) : 0;
+        boolean changed = (newHasContent != hasContent) || !sameText(formatted, newLength);
+
+        char[] previous = text;
+        text = formatted;
+        formatted = previous;
+        textLength = newLength;
+        hasContent = newHasContent;
+
+        if (changed) {
+            onContentChanged();
+        }
+        return changed;
+    }
+
+    /**
+     * Draws the slot's icon and text centered in bounds, or nothing if it has no content.
+     *
+     * @param canvas         Canvas to draw on
+     * @param state          Render state of the frame
+     * @param bounds         The visible part of the slot's strip of its bar
+     * @param panelTextPaint Text paint of the slot's bar, whose font and color the text is drawn in
+     */
+    public void draw(Canvas canvas, RenderState state, Rect bounds, Paint panelTextPaint) {
+        if (!hasContent || bounds.isEmpty()) {
+            return;
+        }
+        if (state != measuredState) {
+            measure(bounds, panelTextPaint);
+            measuredState = state;
+        }
+
+        if (iconBitmap != null) {
+            canvas.drawBitmap(iconBitmap, iconLeft, iconTop, null);
+        }
+        if (textFits) {
+            canvas.drawText(text, 0, textLength, textX, baseline, textPaint);
+        }
+    }
+
+    /**
+     * Frees the icon bitmaps. They are created again when next drawn.
+     */
+    public void release() {
+        recycle(iconBitmap);
+        recycle(spareIconBitmap);
+        iconBitmap = null;
+        spareIconBitmap = null;
+        measuredState = null;
+    }
+
+    private void onIconLoaded(Drawable drawable) {
+        if (drawable != null) {
+            // Tinted, so must not share state with other users of the same resource
+            drawable = drawable.mutate();
+        }
+        Drawable previous = iconDrawable;
+        iconDrawable = drawable;
+
+        if ((drawable != null) && (previous != null) && (iconBitmap != null)) {
+            // Only shown differently if it looks different
+            spareIconBitmap = renderIcon(drawable, iconSize, textPaint.getColor(), spareIconBitmap);
+            if (spareIconBitmap.sameAs(iconBitmap)) {
+                return;
+            }
+            Bitmap shown = iconBitmap;
+            iconBitmap = spareIconBitmap;
+            spareIconBitmap = shown;
+            version++;
+        } else if ((drawable == null) && (previous == null)) {
+            return;
+        } else {
+            onContentChanged();
+        }
+        listener.onComplicationChanged(this);
+    }
+
+    private void onContentChanged() {
+        version++;
+        measuredState = null;
+    }
+
+    /**
+     * Works out the layout of the icon and text in bounds, shrinking the text if both don't fit
+     * side by side, and draws the icon at its size.
+     */
+    private void measure(Rect bounds, Paint panelTextPaint) {
+        textPaint.set(panelTextPaint);
+        textPaint.setTextAlign(Paint.Align.LEFT);
+        textPaint.setTextSize(Math.min(panelTextPaint.getTextSize(), TEXT_SIZE_FRACTION * bounds.height()));
+
+        iconSize = (iconDrawable == null) ? 0 : (int) (ICON_SIZE_FRACTION * bounds.height());
+        float gap = ((iconSize > 0) && (textLength > 0)) ? ICON_GAP_FRACTION * iconSize : 0;
+        float textWidth = textPaint.measureText(text, 0, textLength);
+
+        float available = bounds.width() - iconSize - gap;
+        textFits = (textLength > 0) && (available > 0);
+        if (textFits && (textWidth > available)) {
+            // Text width scales linearly with text size
+            textPaint.setTextSize(textPaint.getTextSize() * available / textWidth);
+            textWidth = available;
+        }
+
+        float contentWidth = iconSize + gap + (textFits ? textWidth : 0);
+        iconLeft = bounds.exactCenterX() - (contentWidth / 2);
+        iconTop = bounds.exactCenterY() - (iconSize / 2.0F);
+        textX = iconLeft + iconSize + gap;
+
+        textPaint.getFontMetrics(fontMetrics);
+        baseline = bounds.exactCenterY() - ((fontMetrics.ascent + fontMetrics.descent) / 2);
+
+        if (iconSize > 0) {
+            iconBitmap = renderIcon(iconDrawable, iconSize, textPaint.getColor(), iconBitmap);
+        } else {
+            recycle(iconBitmap);
+            iconBitmap = null;
+        }
+    }
+
+    /**
+     * Draws the icon into a square bitmap of the given size, tinted with the given color, reusing
+     * the given bitmap if it is the right size.
+     */
+    private static Bitmap renderIcon(Drawable drawable, int size, int color, Bitmap reuse) {
+        Bitmap bitmap = reuse;
+        if ((bitmap == null) || (bitmap.getWidth() != size)) {
+            recycle(bitmap);
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        drawable.setBounds(0, 0, size, size);
+        drawable.setTint(color);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void recycle(Bitmap bitmap) {
+        if (bitmap != null) {
+            bitmap.recycle();
+        }
+    }
+
+    private boolean sameText(char[] newText, int newLength) {
+        if (newLength != textLength) {
+            return false;
+        }
+        for (int i = 0; i < newLength; i++) {
+            if (newText[i] != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the data is of a type this draws, and is active at the given time
+     */
+    private static boolean isShown(ComplicationData data, long nowMs) {
+        if ((data == null) || !data.isActive(nowMs)) {
+            return false;
+        }
+        switch (data.getType()) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+            case ComplicationData.TYPE_RANGED_VALUE:
+            case ComplicationData.TYPE_ICON:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Formats the data's short text at the given time into out, cut short if it doesn't fit.
+     *
+     * @return Length of the text
+     */
+    private int format(ComplicationData data, long nowMs, char[] out) {
+        ComplicationText shortText = data.getShortText();
+        CharSequence chars = (shortText == null) ? null : shortText.getText(context, nowMs);
+        if (chars == null) {
+            return 0;
+        }
+
+        int length = Math.min(chars.length(), out.length);
+        for (int i = 0; i < length; i++) {
+            out[i] = chars.charAt(i);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,188 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+/**
+ * Where everything goes on the watch face for a particular surface size, set of window insets, theme
+ * and set of complications - the bounds of the three bars and of the complications within them,
+ * the area within each bar that text can occupy, the text sizes and the baselines that vertically
+ * center the text in its bar. Computed once whenever one of those inputs changes and never
+ * modified afterwards, so drawing a frame only has to read it.
+ * <p/>
+ * Text is normally drawn at the theme's size, shrunk only if it is too tall for its bar. In auto-fit
+ * mode it is also shrunk so that the widest text that could appear in the bar (eg. "Wednesday") fits
+ * across the visible part of it.
+ */
+public final class FaceLayout {
+
+    // Bar and text bounds, which don't depend on the theme
+    public final BarGeometry geometry;
+
+    public final int width;
+    public final int height;
+    public final boolean round;
+    // Pixels at the bottom of the surface that can't be seen eg. the "chin" of some round watches
+    public final int bottomInsetPx;
+
+    // Bounds of the bars, which are also the regions to clip to when redrawing one. Must not be
+    // modified.
+    public final Rect topBar = new Rect();
+    public final Rect middleBar = new Rect();
+    public final Rect bottomBar = new Rect();
+
+    // The part of each bar that is actually visible, and so can hold text. On a round screen this
+    // excludes the corners of the bar that are cut off by the edge of the screen. Must not be
+    // modified.
+    public final Rect dayTextBounds = new Rect();
+    public final Rect timeTextBounds = new Rect();
+    public final Rect dateTextBounds = new Rect();
+
+    // The visible part of the strip of the top or bottom bar given to a complication, or empty if the
+    // bar has none. Must not be modified.
+    public final Rect dayComplicationBounds = new Rect();
+    public final Rect dateComplicationBounds = new Rect();
+
+    // Horizontal center of all text
+    public final float centerX;
+
+    // Text size in px for each bar - the theme's size, shrunk if needed to fit the bar
+    public final float dayTextSize;
+    public final float timeTextSize;
+    public final float dateTextSize;
+
+    // Baselines that vertically center the text in each bar
+    public final float dayBaseline;
+    public final float timeBaseline;
+    public final float dateBaseline;
+
+    /**
+     * @param width            Width of the surface in px
+     * @param height           Height of the surface in px
+     * @param round            true if the screen is round
+     * @param bottomInsetPx    Height in px of the invisible area at the bottom of the surface
+     * @param dayComplication  true to make room for a complication beneath the day name
+     * @param dateComplication true to make room for a complication above the date
+     * @param dayTypeface      Font of the day name
+     * @param dayTextSize      Requested text size in px for the day name
+     * @param timeTypeface     Font of the time
+     * @param timeTextSize     Requested text size in px for the time
+     * @param dateTypeface     Font of the date
+     * @param dateTextSize     Requested text size in px for the date
+     * @param textFitter       Fits the text to the width of the bars too, or null to only fit the height
+     * @param daySamples       Every day name. Unused without a textFitter.
+     * @param timeSamples      The widest possible times. Unused without a textFitter.
+     * @param dateSamples      The widest possible dates. Unused without a textFitter.
+     */
+    public FaceLayout(int width, int height, boolean round, int bottomInsetPx,
+                      boolean dayComplication, boolean dateComplication,
+                      Typeface dayTypeface, float dayTextSize,
+                      Typeface timeTypeface, float timeTextSize,
+                      Typeface dateTypeface, float dateTextSize,
+                      TextFitter textFitter, String[] daySamples, String[] timeSamples, String[] dateSamples) {
+        this.width = width;
+        this.height = height;
+        this.round = round;
+        this.bottomInsetPx = bottomInsetPx;
+
+        geometry = new BarGeometry(width, height, round, bottomInsetPx, dayComplication, dateComplication);
+
+        toRect(geometry.topBar, topBar);
+        toRect(geometry.middleBar, middleBar);
+        toRect(geometry.bottomBar, bottomBar);
+
+        toRect(geometry.dayTextBounds, dayTextBounds);
+        toRect(geometry.timeTextBounds, timeTextBounds);
+        toRect(geometry.dateTextBounds, dateTextBounds);
+
+        if (geometry.dayComplicationBounds != null) {
+            toRect(geometry.dayComplicationBounds, dayComplicationBounds);
+        }
+        if (geometry.dateComplicationBounds != null) {
+            toRect(geometry.dateComplicationBounds, dateComplicationBounds);
+        }
+
+        centerX = geometry.centerX;
+
+        Paint paint = new Paint();
+        Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+
+        this.dayTextSize = fit(paint, fontMetrics, dayTypeface, dayTextSize, dayTextBounds, textFitter, daySamples);
+        dayBaseline = baseline(paint, fontMetrics, dayTextBounds);
+
+        this.timeTextSize = fit(paint, fontMetrics, timeTypeface, timeTextSize, timeTextBounds, textFitter, timeSamples);
+        timeBaseline = baseline(paint, fontMetrics, timeTextBounds);
+
+        this.dateTextSize = fit(paint, fontMetrics, dateTypeface, dateTextSize, dateTextBounds, textFitter, dateSamples);
+        dateBaseline = baseline(paint, fontMetrics, dateTextBounds);
+    }
+
+    /**
+     * @return true if this layout was computed for the given surface and insets
+     */
+    public boolean isFor(int width, int height, boolean round, int bottomInsetPx) {
+        return geometry.isFor(width, height, round, bottomInsetPx);
+    }
+
+    private static void toRect(BarGeometry.Box box, Rect rect) {
+        rect.set(box.left, box.top, box.right, box.bottom);
+    }
+
+    /**
+     * Sets up the paint with the given typeface and the largest size, up to the requested size,
+     * at which the text fits in bounds - the widest sample across it if there is a textFitter, and
+     * ascent plus descent down it in any case.
+     *
+     * @return The chosen text size
+     */
+    private static float fit(Paint paint, Paint.FontMetrics fontMetrics, Typeface typeface, float textSize,
+                             Rect bounds, TextFitter textFitter, String[] samples) {
+        if (textFitter == null) {
+            return fitHeight(paint, fontMetrics, typeface, textSize, bounds.height());
+        }
+
+        float fittedTextSize = textFitter.fit(typeface, samples, bounds.width(), bounds.height(), textSize);
+        paint.setTypeface(typeface);
+        paint.setTextSize(fittedTextSize);
+        return fittedTextSize;
+    }
+
+    /**
+     * Sets up the paint with the given typeface and the largest size, up to the requested size,
+     * whose ascent plus descent fits in maxHeight.
+     *
+     * @return The chosen text size
+     */
+    private static float fitHeight(Paint paint, Paint.FontMetrics fontMetrics, Typeface typeface, float textSize,
+                                   int maxHeight) {
+        paint.setTypeface(typeface);
+        paint.setTextSize(textSize);
+        paint.getFontMetrics(fontMetrics);
+
+        float textHeight = fontMetrics.descent - fontMetrics.ascent;
+        if ((textHeight > maxHeight) && (textHeight > 0)) {
+            // Font metrics scale linearly with text size
+            textSize = textSize * maxHeight / textHeight;
+            paint.setTextSize(textSize);
+            paint.getFontMetrics(fontMetrics);
+        }
+        return textSize;
+    }
+
+    /**
+     * @return Baseline that vertically centers text in the paint's current font and size in bounds
+     */
+    private static float baseline(Paint paint, Paint.FontMetrics fontMetrics, Rect bounds) {
+        paint.getFontMetrics(fontMetrics);
+        return bounds.exactCenterY() - ((fontMetrics.ascent + fontMetrics.descent) / 2);
+    }
+
+    @Override
+    public String toString() {
+        return "FaceLayout:width=" + width + ",height=" + height + ",round=" + round + ",bottomInsetPx=" + bottomInsetPx
+                + ",topBar=" + topBar + ",middleBar=" + middleBar + ",bottomBar=" + bottomBar
+                + ",complications=" + dayComplicationBounds + "/" + dateComplicationBounds
+                + ",textSizes=" + dayTextSize + "/" + timeTextSize + "/" + dateTextSize;
+    }
+}
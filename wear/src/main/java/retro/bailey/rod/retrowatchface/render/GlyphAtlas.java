@@ -0,0 +1,431 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+/**
+ * Pre-rendered bitmaps of the glyphs needed to draw the time - the digits 0-9 and a colon - in a
+ * particular font, color and size. Drawing the time is then a matter of copying a few rectangles
+ * out of the atlas rather than having the text paint shape and rasterize the string every frame.
+ * <p/>
+ * The advance of each glyph and the kerning between each pair of glyphs are measured when the atlas
+ * is built, so glyphs are placed exactly where {@link Canvas#drawText} would have put them. So is
+ * the number of pixels each glyph lights, for keeping ambient mode within its lit pixel budget.
+ * <p/>
+ * The time can also be drawn with tabular digits, each centered in a cell as wide as the widest
+ * digit. Every digit then stays in the same place whatever the others are, so one digit can be
+ * redrawn on its own. Each char of such text can also be drawn alone, or just its top or bottom
+ * half squashed towards the line across the middle of the digits, for the flaps of a split-flap
+ * display.
+ */
+public class GlyphAtlas {
+
+    /**
+     * The glyphs held in the atlas, in atlas order.
+     */
+    public static final String GLYPHS = "0123456789:";
+
+    private static final int GLYPH_COUNT = GLYPHS.length();
+
+    private static final int COLON_INDEX = GLYPH_COUNT - 1;
+
+    /**
+     * Pixels of transparent padding around each glyph so anti-aliased edges aren't clipped.
+     */
+    private static final int PADDING_PX = 1;
+
+    /**
+     * The whole glyph, for {@link #drawTabularChar}
+     */
+    public static final int PART_WHOLE = 0;
+
+    /**
+     * The part of the glyph above the hinge, for {@link #drawTabularChar}
+     */
+    public static final int PART_TOP = 1;
+
+    /**
+     * The part of the glyph below the hinge, for {@link #drawTabularChar}
+     */
+    public static final int PART_BOTTOM = 2;
+
+    private final Bitmap bitmap;
+
+    // Where each glyph lives in the atlas bitmap
+    private final Rect[] cells = new Rect[GLYPH_COUNT];
+
+    // Offset from the glyph origin (on the baseline) to the top left of its cell
+    private final int[] cellOffsetX = new int[GLYPH_COUNT];
+    private final int[] cellOffsetY = new int[GLYPH_COUNT];
+
+    private final float[] advances = new float[GLYPH_COUNT];
+
+    // kerning[previous][next] is added to the pen position between the two glyphs
+    private final float[][] kerning = new float[GLYPH_COUNT][GLYPH_COUNT];
+
+    // Pixels of each glyph that are at least half opaque
+    private final int[] litPixels = new int[GLYPH_COUNT];
+
+    // Width of a digit cell when drawing tabular digits
+    private final float maxDigitAdvance;
+
+    // Furthest left and right that any digit's ink reaches, relative to the left of its tabular cell
+    private final float minDigitInkLeft;
+    private final float maxDigitInkRight;
+
+    // Highest and lowest any digit's cell reaches, and the line halfway between, relative to the baseline
+    private final int digitTop;
+    private final int digitBottom;
+    private final int hingeOffset;
+
+    // Attributes of the text paint the atlas was rendered with
+    private final Typeface typeface;
+    private final float textSize;
+    private final int textColor;
+    private final boolean antiAlias;
+    private final Paint.Style style;
+    private final float strokeWidth;
+
+    private final Rect destination = new Rect();
+
+    private final Rect source = new Rect();
+
+    private final RectF scaledDestination = new RectF();
+
+    // Smooths glyphs when they are squashed
+    private final Paint scaledPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private GlyphAtlas(Paint textPaint) {
+        Paint paint = new Paint(textPaint);
+        paint.setTextAlign(Paint.Align.LEFT);
+
+        typeface = textPaint.getTypeface();
+        textSize = textPaint.getTextSize();
+        textColor = textPaint.getColor();
+        antiAlias = textPaint.isAntiAlias();
+        style = textPaint.getStyle();
+        strokeWidth = textPaint.getStrokeWidth();
+
+        paint.getTextWidths(GLYPHS, advances);
+
+        // Measure the ink bounds of each glyph and lay them out left to right in the atlas
+        Rect inkBounds = new Rect();
+        int atlasWidth = 0;
+        int atlasHeight = 1;
+        for (int i = 0; i < GLYPH_COUNT; i++) {
+            paint.getTextBounds(GLYPHS, i, i + 1, inkBounds);
+            int cellWidth = Math.max(1, inkBounds.width()) + (2 * PADDING_PX);
+            int cellHeight = Math.max(1, inkBounds.height()) + (2 * PADDING_PX);
+
+            cells[i] = new Rect(atlasWidth, 0, atlasWidth + cellWidth, cellHeight);
+            cellOffsetX[i] = inkBounds.left - PADDING_PX;
+            cellOffsetY[i] = inkBounds.top - PADDING_PX;
+
+            atlasWidth += cellWidth;
+            atlasHeight = Math.max(atlasHeight, cellHeight);
+        }
+
+        bitmap = Bitmap.createBitmap(atlasWidth, atlasHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        for (int i = 0; i < GLYPH_COUNT; i++) {
+            canvas.drawText(GLYPHS, i, i + 1, cells[i].left - cellOffsetX[i], -cellOffsetY[i], paint);
+        }
+
+        int[] pixels = new int[atlasWidth * atlasHeight];
+        bitmap.getPixels(pixels, 0, atlasWidth, 0, 0, atlasWidth, atlasHeight);
+        for (int i = 0; i < GLYPH_COUNT; i++) {
+            Rect cell = cells[i];
+            for (int y = cell.top; y < cell.bottom; y++) {
+                for (int x = cell.left; x < cell.right; x++) {
+                    if ((pixels[(y * atlasWidth) + x] >>> 24) >= 0x80) {
+                        litPixels[i]++;
+                    }
+                }
+            }
+        }
+
+        float maxAdvance = 0;
+        for (int i = 0; i < COLON_INDEX; i++) {
+            maxAdvance = Math.max(maxAdvance, advances[i]);
+        }
+        maxDigitAdvance = maxAdvance;
+
+        float minInkLeft = Float.MAX_VALUE;
+        float maxInkRight = -Float.MAX_VALUE;
+        for (int i = 0; i < COLON_INDEX; i++) {
+            float inkLeft = tabularOrigin(0, i) + cellOffsetX[i];
+            minInkLeft = Math.min(minInkLeft, inkLeft);
+            maxInkRight = Math.max(maxInkRight, inkLeft + cells[i].width());
+        }
+        // Allow for the origin being rounded to a whole pixel when drawn
+        minDigitInkLeft = minInkLeft - 1;
+        maxDigitInkRight = maxInkRight + 1;
+
+        int top = Integer.MAX_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < COLON_INDEX; i++) {
+            top = Math.min(top, cellOffsetY[i]);
+            bottom = Math.max(bottom, cellOffsetY[i] + cells[i].height());
+        }
+        digitTop = top;
+        digitBottom = bottom;
+        hingeOffset = (top + bottom) / 2;
+
+        // Kerning is whatever the pair measures beyond the sum of the two individual advances
+        char[] pair = new char[2];
+        for (int previous = 0; previous < GLYPH_COUNT; previous++) {
+            for (int next = 0; next < GLYPH_COUNT; next++) {
+                pair[0] = GLYPHS.charAt(previous);
+                pair[1] = GLYPHS.charAt(next);
+                kerning[previous][next] = paint.measureText(pair, 0, 2) - advances[previous] - advances[next];
+            }
+        }
+    }
+
+    /**
+     * Renders a new atlas with the typeface, size, color, style and anti-aliasing of the given paint.
+     * Without anti-aliasing, every pixel of the atlas is either fully lit or not lit at all.
+     */
+    public static GlyphAtlas build(Paint textPaint) {
+        return new GlyphAtlas(textPaint);
+    }
+
+    /**
+     * @return true if this atlas was rendered with the same attributes as the given paint, and so
+     * can stand in for it.
+     */
+    public boolean matches(Paint textPaint) {
+        return (typeface == textPaint.getTypeface())
+                && (textSize == textPaint.getTextSize())
+                && (textColor == textPaint.getColor())
+                && (antiAlias == textPaint.isAntiAlias())
+                && (style == textPaint.getStyle())
+                && (strokeWidth == textPaint.getStrokeWidth());
+    }
+
+    /**
+     * @return true if every char in the given range has a glyph in the atlas.
+     */
+    public boolean canDraw(char[] text, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            if (indexOf(text[i]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Width of the given text as it would be drawn from the atlas, including kerning.
+     */
+    public float measure(char[] text, int start, int count) {
+        float width = 0;
+        int previous = -1;
+        for (int i = start; i < start + count; i++) {
+            int glyph = indexOf(text[i]);
+            if (previous >= 0) {
+                width += kerning[previous][glyph];
+            }
+            width += advances[glyph];
+            previous = glyph;
+        }
+        return width;
+    }
+
+    /**
+     * @return Number of pixels drawing the given text, which must satisfy {@link #canDraw}, would
+     * light
+     */
+    public int countLitPixels(char[] text, int start, int count) {
+        int lit = 0;
+        for (int i = start; i < start + count; i++) {
+            lit += litPixels[indexOf(text[i])];
+        }
+        return lit;
+    }
+
+    /**
+     * Draws the given text, which must satisfy {@link #canDraw}, horizontally centered on centerX.
+     */
+    public void drawCentered(Canvas canvas, char[] text, int start, int count, float centerX, float baselineY) {
+        float penX = centerX - (measure(text, start, count) / 2.0F);
+        int baseline = Math.round(baselineY);
+        int previous = -1;
+
+        for (int i = start; i < start + count; i++) {
+            int glyph = indexOf(text[i]);
+            if (previous >= 0) {
+                penX += kerning[previous][glyph];
+            }
+
+            Rect cell = cells[glyph];
+            int left = Math.round(penX) + cellOffsetX[glyph];
+            int top = baseline + cellOffsetY[glyph];
+            destination.set(left, top, left + cell.width(), top + cell.height());
+            canvas.drawBitmap(bitmap, cell, destination, null);
+
+            penX += advances[glyph];
+            previous = glyph;
+        }
+    }
+
+    /**
+     * @return Width of the given text drawn with tabular digits
+     */
+    public float measureTabular(char[] text, int start, int count) {
+        float width = 0;
+        for (int i = start; i < start + count; i++) {
+            width += tabularAdvance(indexOf(text[i]));
+        }
+        return width;
+    }
+
+    /**
+     * Draws the given text, which must satisfy {@link #canDraw}, with tabular digits and
+     * horizontally centered on centerX.
+     */
+    public void drawTabularCentered(Canvas canvas, char[] text, int start, int count, float centerX, float baselineY) {
+        float cellLeft = centerX - (measureTabular(text, start, count) / 2.0F);
+        int baseline = Math.round(baselineY);
+
+        for (int i = start; i < start + count; i++) {
+            int glyph = indexOf(text[i]);
+
+            Rect cell = cells[glyph];
+            int left = Math.round(tabularOrigin(cellLeft, glyph)) + cellOffsetX[glyph];
+            int top = baseline + cellOffsetY[glyph];
+            destination.set(left, top, left + cell.width(), top + cell.height());
+            canvas.drawBitmap(bitmap, cell, destination, null);
+
+            cellLeft += tabularAdvance(glyph);
+        }
+    }
+
+    /**
+     * Finds the horizontal range that any digit could cover, drawn in the given position of the
+     * given text with {@link #drawTabularCentered}. Redrawing that range is enough to replace the
+     * digit there with any other.
+     *
+     * @param index Position in the text, from start
+     * @param range Set to the left and right of the range
+     */
+    public void getTabularDigitRange(char[] text, int start, int count, int index, float centerX, float[] range) {
+        float cellLeft = tabularCellLeft(text, start, count, index, centerX);
+        range[0] = cellLeft + minDigitInkLeft;
+        range[1] = cellLeft + maxDigitInkRight;
+    }
+
+    /**
+     * Draws one char, or part of one, of the given text as {@link #drawTabularCentered} would place
+     * it. The top and bottom parts are split at the hinge, and can be squashed vertically towards
+     * it.
+     *
+     * @param index  Position of the char in the text, from start
+     * @param part   PART_WHOLE, PART_TOP or PART_BOTTOM
+     * @param scaleY Height to draw the top or bottom part at, as a fraction of its own. Ignored
+     *               for the whole glyph.
+     */
+    public void drawTabularChar(Canvas canvas, char[] text, int start, int count, int index,
+                                float centerX, float baselineY, int part, float scaleY) {
+        int glyph = indexOf(text[start + index]);
+        float cellLeft = tabularCellLeft(text, start, count, index, centerX);
+
+        Rect cell = cells[glyph];
+        int baseline = Math.round(baselineY);
+        int left = Math.round(tabularOrigin(cellLeft, glyph)) + cellOffsetX[glyph];
+        int top = baseline + cellOffsetY[glyph];
+        int hinge = baseline + hingeOffset;
+
+        // Rows of the glyph's cell above the hinge
+        int split = Math.max(0, Math.min(cell.height(), hinge - top));
+
+        source.set(cell);
+        float destinationTop;
+        float destinationBottom;
+        switch (part) {
+            case PART_TOP:
+                source.bottom = cell.top + split;
+                destinationTop = hinge - (split * scaleY);
+                destinationBottom = hinge;
+                break;
+
+            case PART_BOTTOM:
+                source.top = cell.top + split;
+                destinationTop = hinge;
+                destinationBottom = hinge + ((cell.height() - split) * scaleY);
+                break;
+
+            default:
+                destinationTop = top;
+                destinationBottom = top + cell.height();
+                break;
+        }
+
+        if ((source.height() > 0) && (destinationBottom > destinationTop)) {
+            scaledDestination.set(left, destinationTop, left + cell.width(), destinationBottom);
+            canvas.drawBitmap(bitmap, source, scaledDestination, scaledPaint);
+        }
+    }
+
+    /**
+     * @return Y of the hinge, the line across the middle of the digits where the top and bottom parts
+     * of {@link #drawTabularChar} meet, for text drawn on the given baseline
+     */
+    public int getHingeY(float baselineY) {
+        return Math.round(baselineY) + hingeOffset;
+    }
+
+    /**
+     * @return Highest Y that any digit drawn on the given baseline reaches
+     */
+    public int getDigitTop(float baselineY) {
+        return Math.round(baselineY) + digitTop;
+    }
+
+    /**
+     * @return Y just below the lowest that any digit drawn on the given baseline reaches
+     */
+    public int getDigitBottom(float baselineY) {
+        return Math.round(baselineY) + digitBottom;
+    }
+
+    /**
+     * @return Left of the tabular cell of the char at the given position in the text, from start
+     */
+    private float tabularCellLeft(char[] text, int start, int count, int index, float centerX) {
+        float cellLeft = centerX - (measureTabular(text, start, count) / 2.0F);
+        for (int i = start; i < start + index; i++) {
+            cellLeft += tabularAdvance(indexOf(text[i]));
+        }
+        return cellLeft;
+    }
+
+    private float tabularAdvance(int glyph) {
+        return (glyph == COLON_INDEX) ? advances[glyph] : maxDigitAdvance;
+    }
+
+    /**
+     * @return Where the origin of a glyph goes to center it in a tabular cell starting at cellLeft
+     */
+    private float tabularOrigin(float cellLeft, int glyph) {
+        return cellLeft + ((tabularAdvance(glyph) - advances[glyph]) / 2.0F);
+    }
+
+    /**
+     * Frees the atlas bitmap. The atlas must not be drawn after this.
+     */
+    public void release() {
+        bitmap.recycle();
+    }
+
+    private static int indexOf(char c) {
+        if ((c >= '0') && (c <= '9')) {
+            return c - '0';
+        }
+        return (c == ':') ? COLON_INDEX : -1;
+    }
+}
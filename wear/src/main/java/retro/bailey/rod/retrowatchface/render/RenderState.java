@@ -0,0 +1,285 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import retro.bailey.rod.retrowatchface.config.PackedPanel;
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+
+/**
+ * Everything needed to draw a frame of the watch face in a particular theme on a particular surface
+ * - paints, layout and cached bitmaps. A render state is built in full, off the
+ * main thread, and never modified afterwards, so the engine can swap from one theme to the next
+ * between two frames without ever drawing a mix of the two.
+ * <p/>
+ * When a new state is built from a previous one, any panel whose font, colors and size are
+ * unchanged, and the background layer if no colors or sizes changed, are carried over rather than
+ * rebuilt.
+ */
+public final class RenderState {
+
+    /**
+     * What a render state is built from. If any of these change, a new render state is needed.
+     */
+    public static final class Inputs {
+        public final PackedTheme theme;
+        // Color filling the background behind the bars - the theme's, unless the user has tapped
+        // the face to toggle it
+        public final int backgroundColor;
+        public final int width;
+        public final int height;
+        public final boolean round;
+        // Height in px of the invisible area at the bottom of the surface, from the window insets
+        public final int bottomInsetPx;
+        // Converts the theme's text sizes from sp to px
+        public final float scaledDensity;
+        // Formats the text for the current locale. Provides the samples text is auto-fitted to.
+        public final TimeTextFormatter textFormatter;
+        // True if the AM/PM marker is appended to the time
+        public final boolean showAmPm;
+        // True if the display only has a few bits per pixel in ambient mode
+        public final boolean lowBitAmbient;
+        // True to make room for a complication in the top or bottom bar. Only changes when a
+        // complication comes or goes, not with every update of its data.
+        public final boolean dayComplication;
+        public final boolean dateComplication;
+
+        public Inputs(PackedTheme theme, int width, int height, boolean round, int bottomInsetPx, float scaledDensity,
+                      TimeTextFormatter textFormatter, boolean showAmPm, boolean lowBitAmbient) {
+            this(theme, theme.backgroundColor, width, height, round, bottomInsetPx, scaledDensity, textFormatter,
+                    showAmPm, lowBitAmbient, false, false);
+        }
+
+        public Inputs(PackedTheme theme, int backgroundColor, int width, int height, boolean round, int bottomInsetPx, float scaledDensity,
+                      TimeTextFormatter textFormatter, boolean showAmPm, boolean lowBitAmbient,
+                      boolean dayComplication, boolean dateComplication) {
+            this.theme = theme;
+            this.backgroundColor = backgroundColor;
+            this.width = width;
+            this.height = height;
+            this.round = round;
+            this.bottomInsetPx = bottomInsetPx;
+            this.scaledDensity = scaledDensity;
+            this.textFormatter = textFormatter;
+            this.showAmPm = showAmPm;
+            this.lowBitAmbient = lowBitAmbient;
+            this.dayComplication = dayComplication;
+            this.dateComplication = dateComplication;
+        }
+
+        @Override
+        public String toString() {
+            return "Inputs:theme=" + theme.name + ",backgroundColor=" + Integer.toHexString(backgroundColor)
+                    + ",width=" + width + ",height=" + height + ",round=" + round
+                    + ",bottomInsetPx=" + bottomInsetPx + ",scaledDensity=" + scaledDensity + ",lowBitAmbient=" + lowBitAmbient
+                    + ",complications=" + dayComplication + "/" + dateComplication;
+        }
+    }
+
+    /**
+     * Paints for one of the three bars.
+     */
+    public static final class Panel {
+        public final PackedPanel spec;
+        public final Paint backgroundPaint;
+        // Center aligned, in the panel's font, color and size
+        public final Paint textPaint;
+        // Pre-rendered digits, for the time panel only. Null if not used.
+        public final GlyphAtlas glyphAtlas;
+
+        private Panel(PackedPanel spec, Typeface typeface, float textSize, boolean withGlyphAtlas) {
+            this.spec = spec;
+
+            backgroundPaint = new Paint();
+            backgroundPaint.setColor(spec.backgroundColor);
+
+            textPaint = new Paint();
+            textPaint.setColor(spec.textColor);
+            textPaint.setAntiAlias(true);
+            textPaint.setTypeface(typeface);
+            textPaint.setTextSize(textSize);
+            textPaint.setTextAlign(Paint.Align.CENTER);
+
+            glyphAtlas = withGlyphAtlas ? GlyphAtlas.build(textPaint) : null;
+        }
+
+        private boolean canBeReusedFor(PackedPanel newSpec, Typeface typeface, float textSize, boolean withGlyphAtlas) {
+            return (spec.backgroundColor == newSpec.backgroundColor)
+                    && (spec.textColor == newSpec.textColor)
+                    && (textPaint.getTypeface() == typeface)
+                    && (textPaint.getTextSize() == textSize)
+                    && ((glyphAtlas != null) == withGlyphAtlas);
+        }
+
+        private void release() {
+            if (glyphAtlas != null) {
+                glyphAtlas.release();
+            }
+        }
+    }
+
+    public final Inputs inputs;
+
+    public final Paint backgroundPaint;
+
+    public final Panel day;
+    public final Panel time;
+    public final Panel date;
+
+    // Where everything goes, for this theme and surface
+    public final FaceLayout layout;
+
+    // Background and bars, pre-rendered for this surface size. Null in a still state.
+    public final BackgroundLayer backgroundLayer;
+
+    // How the time is drawn in ambient mode. Null in a still state.
+    public final AmbientTime ambientTime;
+
+    private RenderState(Inputs inputs, RenderState previous, TypefaceCache typefaceCache, boolean useGlyphAtlas,
+                        TextFitter textFitter, boolean still) {
+        this.inputs = inputs;
+        PackedTheme theme = inputs.theme;
+
+        // Full background is filled with this color as first step of drawing. When done, this
+        // color only shows through in the margins between the bars.
+        backgroundPaint = new Paint();
+        backgroundPaint.setColor(inputs.backgroundColor);
+
+        Typeface dayTypeface = typefaceCache.get(theme.day.textFont);
+        Typeface timeTypeface = typefaceCache.get(theme.time.textFont);
+        Typeface dateTypeface = typefaceCache.get(theme.date.textFont);
+
+        TimeTextFormatter textFormatter = inputs.textFormatter;
+        boolean autoFit = (textFitter != null);
+
+        layout = new FaceLayout(inputs.width, inputs.height, inputs.round, inputs.bottomInsetPx,
+                inputs.dayComplication, inputs.dateComplication,
+                dayTypeface, theme.day.textSize * inputs.scaledDensity,
+                timeTypeface, theme.time.textSize * inputs.scaledDensity,
+                dateTypeface, theme.date.textSize * inputs.scaledDensity,
+                textFitter,
+                autoFit ? textFormatter.getDayNameSamples() : null,
+                autoFit ? textFormatter.getTimeSamples(theme.showSeconds, inputs.showAmPm) : null,
+                autoFit ? textFormatter.getDateSamples() : null);
+
+        // Top most bar contains the day name e.g. "Tuesday"
+        day = panel(theme.day, dayTypeface, layout.dayTextSize, false,
+                (previous == null) ? null : previous.day);
+
+        // Middle bar contains the time e.g. "12:33"
+        time = panel(theme.time, timeTypeface, layout.timeTextSize, useGlyphAtlas,
+                (previous == null) ? null : previous.time);
+
+        // Bottom bar contains the date e.g. "20 February"
+        date = panel(theme.date, dateTypeface, layout.dateTextSize, false,
+                (previous == null) ? null : previous.date);
+
+        if (still) {
+            // Drawn once, so nothing worth pre-rendering
+            backgroundLayer = null;
+            ambientTime = null;
+            return;
+        }
+
+        if ((previous != null)
+                && (previous.day.backgroundPaint == day.backgroundPaint)
+                && (previous.time.backgroundPaint == time.backgroundPaint)
+                && (previous.date.backgroundPaint == date.backgroundPaint)
+                && previous.backgroundLayer.isValidFor(theme.name, inputs.backgroundColor, inputs.width, inputs.height, inputs.round)
+                && previous.layout.isFor(inputs.width, inputs.height, inputs.round, inputs.bottomInsetPx)) {
+            backgroundLayer = previous.backgroundLayer;
+        } else {
+            backgroundLayer = new BackgroundLayer();
+            backgroundLayer.rebuild(theme.name, inputs.width, inputs.height, inputs.round,
+                    backgroundPaint,
+                    layout.topBar, day.backgroundPaint,
+                    layout.middleBar, time.backgroundPaint,
+                    layout.bottomBar, date.backgroundPaint);
+        }
+
+        int visiblePixels = visiblePixels(inputs);
+        if ((previous != null)
+                && previous.ambientTime.isFor(timeTypeface, layout.timeTextSize, inputs.lowBitAmbient, visiblePixels)) {
+            ambientTime = previous.ambientTime;
+        } else {
+            ambientTime = AmbientTime.build(timeTypeface, layout.timeTextSize, inputs.lowBitAmbient, visiblePixels,
+                    textFormatter.getTimeSamples(false, inputs.showAmPm));
+        }
+    }
+
+    /**
+     * @return Number of pixels on the screen that can actually be seen
+     */
+    private static int visiblePixels(Inputs inputs) {
+        double area = inputs.round
+                ? Math.PI * (inputs.width / 2.0) * (inputs.width / 2.0)
+                : (double) inputs.width * inputs.height;
+        // Near enough for a flat tyre at the bottom of a round screen too
+        return (int) Math.max(0, area - ((double) inputs.width * inputs.bottomInsetPx));
+    }
+
+    /**
+     * Builds a new render state. This loads fonts and renders bitmaps, so should be called on a
+     * background thread.
+     *
+     * @param inputs        What to build the state for
+     * @param previous      State currently in use, whose parts can be reused if they haven't
+     *                      changed. May be null.
+     * @param typefaceCache Where to get the theme's fonts from
+     * @param useGlyphAtlas true to pre-render the time digits into a {@link GlyphAtlas}
+     * @param textFitter    Shrinks text to fit the width of its bar (auto-fit mode), or null to
+     *                      only shrink text that is too tall
+     */
+    public static RenderState build(Inputs inputs, RenderState previous, TypefaceCache typefaceCache, boolean useGlyphAtlas,
+                                    TextFitter textFitter) {
+        return new RenderState(inputs, previous, typefaceCache, useGlyphAtlas, textFitter, false);
+    }
+
+    /**
+     * Builds a render state for drawing one frame once, eg. a thumbnail. It has only the paints and
+     * the layout: no glyph atlas, background layer or ambient time, so it can't be drawn in ambient
+     * mode.
+     *
+     * @param inputs        What to build the state for
+     * @param typefaceCache Where to get the theme's fonts from
+     * @param textFitter    As for {@link #build}
+     */
+    public static RenderState buildStill(Inputs inputs, TypefaceCache typefaceCache, TextFitter textFitter) {
+        return new RenderState(inputs, null, typefaceCache, false, textFitter, true);
+    }
+
+    private static Panel panel(PackedPanel spec, Typeface typeface, float textSize, boolean withGlyphAtlas,
+                               Panel previous) {
+        if ((previous != null) && previous.canBeReusedFor(spec, typeface, textSize, withGlyphAtlas)) {
+            return previous;
+        }
+        return new Panel(spec, typeface, textSize, withGlyphAtlas);
+    }
+
+    /**
+     * Frees the bitmaps of this state that the replacement state hasn't carried over. Call once the
+     * replacement is in use and this state will no longer be drawn.
+     */
+    public void releaseUnshared(RenderState replacement) {
+        releaseIfUnshared(day, replacement);
+        releaseIfUnshared(time, replacement);
+        releaseIfUnshared(date, replacement);
+
+        if ((backgroundLayer != null)
+                && ((replacement == null) || (replacement.backgroundLayer != backgroundLayer))) {
+            backgroundLayer.release();
+        }
+
+        if ((ambientTime != null)
+                && ((replacement == null) || (replacement.ambientTime != ambientTime))) {
+            ambientTime.release();
+        }
+    }
+
+    private static void releaseIfUnshared(Panel panel, RenderState replacement) {
+        if ((replacement == null)
+                || ((replacement.day != panel) && (replacement.time != panel) && (replacement.date != panel))) {
+            panel.release();
+        }
+    }
+}
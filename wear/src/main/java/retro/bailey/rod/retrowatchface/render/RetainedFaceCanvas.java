@@ -0,0 +1,248 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Draws interactive mode frames into a bitmap kept from one frame to the next, redrawing only the
+ * parts that have changed, then copies the whole bitmap to the screen. The watch face's own canvas
+ * can't be used for this, as its contents aren't kept between frames.
+ * <p/>
+ * A {@link DirtyTracker} decides what has changed. A panel whose text has changed has its bar
+ * restored from the state's background layer, clipped to the bar, and its text drawn again. If only
+ * digits of the time have changed, and the time is drawn from the glyph atlas, only those digits'
+ * cells are restored and redrawn - the time is drawn with tabular digits so that the others stay
+ * where they are. Everything is redrawn when the render state changes, as that is when the theme
+ * or surface size changes. A bar whose complication has changed is redrawn after
+ * {@link #invalidate(int)}.
+ * <p/>
+ * Digits of the time can flip over rather than change at once, tracked by a {@link FlipTracker}.
+ * While they do, the flipping digits are redrawn every frame, and the caller should keep drawing
+ * frames while {@link #isFlipping}.
+ * <p/>
+ * Call {@link #beginFrame}, draw the frame through this with {@link FaceRenderer}, then
+ * {@link #endFrame}.
+ */
+public class RetainedFaceCanvas implements FaceCanvas {
+
+    // Draws into the retained bitmap
+    private final CanvasFaceCanvas target = new CanvasFaceCanvas();
+
+    private final DirtyTracker dirtyTracker = new DirtyTracker();
+
+    private final FlipTracker flipTracker;
+
+    private final Rect clip = new Rect();
+
+    private final float[] digitRange = new float[2];
+
+    private Bitmap bitmap;
+
+    private Canvas bitmapCanvas;
+
+    private RenderState state;
+
+    // State the retained bitmap was last drawn with
+    private RenderState drawnState;
+
+    // true if the whole frame has been redrawn this frame, so bars needn't be restored again
+    private boolean redrawingAll;
+
+    // Number of panels drawn, or partly drawn, since the last frame
+    private int dirtyPanelCount;
+
+    private long frameTimeMs;
+
+    private boolean flipChanges;
+
+    /**
+     * @param flipDurationMs How long digits of the time take to flip over. 0 to never flip them.
+     */
+    public RetainedFaceCanvas(long flipDurationMs) {
+        flipTracker = new FlipTracker(flipDurationMs);
+        target.setTabularDigits(true);
+    }
+
+    /**
+     * Gets ready to draw a frame with the given state into the retained bitmap.
+     *
+     * @param frameTimeMs Time of the frame, from a monotonic clock, for timing flips
+     * @param flipChanges true to flip digits of the time that have changed since the last frame,
+     *                    false to just redraw them
+     * @return false if the state's surface is empty, so there is nothing to retain and the frame
+     * should be drawn some other way
+     */
+    public boolean beginFrame(RenderState state, long frameTimeMs, boolean flipChanges) {
+        FaceLayout layout = state.layout;
+        if ((layout.width <= 0) || (layout.height <= 0)) {
+            return false;
+        }
+
+        if ((bitmap == null) || (bitmap.getWidth() != layout.width) || (bitmap.getHeight() != layout.height)) {
+            release();
+            bitmap = Bitmap.createBitmap(layout.width, layout.height, Bitmap.Config.ARGB_8888);
+            bitmapCanvas = new Canvas(bitmap);
+        }
+
+        if (state != drawnState) {
+            dirtyTracker.invalidateAll();
+            drawnState = state;
+        }
+
+        this.state = state;
+        this.frameTimeMs = frameTimeMs;
+        this.flipChanges = flipChanges;
+        target.setTarget(bitmapCanvas, state);
+        redrawingAll = false;
+        dirtyPanelCount = 0;
+        return true;
+    }
+
+    /**
+     * Copies the retained bitmap, now holding the whole frame, onto the screen.
+     */
+    public void endFrame(Canvas screen) {
+        screen.drawBitmap(bitmap, 0, 0, null);
+    }
+
+    /**
+     * Makes the next frame redraw everything.
+     */
+    public void invalidate() {
+        dirtyTracker.invalidateAll();
+    }
+
+    /**
+     * Makes the next frame redraw the given panel's bar in full, eg. because its complication has
+     * changed.
+     *
+     * @param panel One of the FaceCanvas.PANEL_ constants
+     */
+    public void invalidate(int panel) {
+        dirtyTracker.invalidate(panel);
+    }
+
+    /**
+     * @param dayComplication  Complication to draw in the top bar with the day, or null
+     * @param dateComplication Complication to draw in the bottom bar with the date, or null
+     */
+    public void setComplications(ComplicationSlot dayComplication, ComplicationSlot dateComplication) {
+        target.setComplications(dayComplication, dateComplication);
+    }
+
+    /**
+     * @return Number of panels redrawn, in full or in part, in the last frame
+     */
+    public int getDirtyPanelCount() {
+        return dirtyPanelCount;
+    }
+
+    /**
+     * @return true if digits of the time are part way through flipping, so another frame is needed
+     */
+    public boolean isFlipping() {
+        return flipTracker.isFlipping();
+    }
+
+    /**
+     * @return How far through flipping the digits of the time were in the last frame, from 0 to 1.
+     * 1 if they weren't flipping.
+     */
+    public float getFlipProgress() {
+        return flipTracker.getProgress();
+    }
+
+    /**
+     * Frees the retained bitmap. It is created again by the next {@link #beginFrame}.
+     */
+    public void release() {
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+            bitmapCanvas = null;
+        }
+        drawnState = null;
+        dirtyTracker.invalidateAll();
+        flipTracker.reset();
+    }
+
+    /**
+     * Draws the background and bars only if nothing has been drawn since everything was last
+     * invalidated. Otherwise the retained bitmap already holds them.
+     */
+    @Override
+    public void drawBars() {
+        if (!dirtyTracker.isAnyValid()) {
+            target.drawBars();
+            redrawingAll = true;
+        }
+    }
+
+    @Override
+    public void drawPanelText(int panel, char[] text, int start, int count) {
+        int change = dirtyTracker.update(panel, text, start, count);
+        boolean flipping = (panel == PANEL_TIME) && flipTracker.update(text, start, count, frameTimeMs, flipChanges);
+        if ((change == DirtyTracker.UNCHANGED) && !flipping) {
+            return;
+        }
+        dirtyPanelCount++;
+
+        target.setFlip(flipping ? flipTracker : null);
+
+        if (redrawingAll) {
+            // Bar has just been drawn afresh
+            target.drawPanelText(panel, text, start, count);
+        } else {
+            Rect bar = barOf(panel);
+            clip.set(bar);
+
+            // Digits that have changed, or are flipping
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            if (change == DirtyTracker.CHANGED_DIGITS) {
+                first = dirtyTracker.getFirstChanged();
+                last = dirtyTracker.getLastChanged();
+            }
+            if (flipping) {
+                first = Math.min(first, flipTracker.getFirstFlipped());
+                last = Math.max(last, flipTracker.getLastFlipped());
+            }
+
+            GlyphAtlas glyphAtlas = state.time.glyphAtlas;
+            if ((change != DirtyTracker.CHANGED_ALL) && (panel == PANEL_TIME)
+                    && (glyphAtlas != null) && glyphAtlas.canDraw(text, start, count)) {
+                float centerX = state.layout.centerX;
+                glyphAtlas.getTabularDigitRange(text, start, count, first, centerX, digitRange);
+                float left = digitRange[0];
+                glyphAtlas.getTabularDigitRange(text, start, count, last, centerX, digitRange);
+                float right = digitRange[1];
+
+                clip.left = Math.max(bar.left, (int) Math.floor(left));
+                clip.right = Math.min(bar.right, (int) Math.ceil(right));
+            }
+
+            bitmapCanvas.save();
+            bitmapCanvas.clipRect(clip);
+            state.backgroundLayer.draw(bitmapCanvas);
+            target.drawPanelText(panel, text, start, count);
+            bitmapCanvas.restore();
+        }
+
+        target.setFlip(null);
+    }
+
+    private Rect barOf(int panel) {
+        FaceLayout layout = state.layout;
+        switch (panel) {
+            case PANEL_DAY:
+                return layout.topBar;
+            case PANEL_TIME:
+                return layout.middleBar;
+            case PANEL_DATE:
+                return layout.bottomBar;
+            default:
+                throw new IllegalArgumentException("Unknown panel " + panel);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.LruCache;
+
+/**
+ * Finds the largest text size at which every one of a set of strings fits in a box, eg. the largest
+ * size at which the longest day name fits in the top bar. Sizes are found by binary search and the
+ * results remembered, so each combination of font, box size and strings is only ever measured and
+ * searched once. The strings are told apart by the identity of their array, so pass the same array
+ * each time eg. as returned by {@link TimeTextFormatter#getDayNameSamples}.
+ * <p/>
+ * Fitting is done when a {@link RenderState} is built, never while drawing a frame.
+ */
+public class TextFitter {
+
+    /**
+     * Smallest text size, in px, that will ever be chosen.
+     */
+    private static final float MIN_TEXT_SIZE_PX = 8.0F;
+
+    /**
+     * The search stops when the size is known to within this many px.
+     */
+    private static final float PRECISION_PX = 0.5F;
+
+    /**
+     * Size at which the samples are measured to find the widest. Width is close enough to
+     * proportional to text size for this to pick the right one at any size.
+     */
+    private static final float REFERENCE_TEXT_SIZE_PX = 100.0F;
+
+    private static final int MAX_CACHED_FITS = 64;
+
+    private final LruCache<FitKey, Float> fits = new LruCache<FitKey, Float>(MAX_CACHED_FITS);
+
+    private final Paint paint = new Paint();
+
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+
+    private int searchCount;
+
+    /**
+     * @param typeface    Font the text is drawn in
+     * @param samples     Every string that may be drawn in the box, or a representative of each class
+     *                    of string eg. "00:00" for all times. Must not be modified afterwards.
+     * @param maxWidth    Width of the box in px
+     * @param maxHeight   Height of the box in px
+     * @param maxTextSize Largest size to consider, in px
+     * @return The largest text size, no more than maxTextSize, at which all the samples fit
+     */
+    public synchronized float fit(Typeface typeface, String[] samples, int maxWidth, int maxHeight, float maxTextSize) {
+        FitKey key = new FitKey(typeface, samples, maxWidth, maxHeight, maxTextSize);
+
+        Float cached = fits.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        String widest = widestSample(typeface, samples);
+        float textSize = search(typeface, widest, maxWidth, maxHeight, maxTextSize);
+        fits.put(key, textSize);
+        return textSize;
+    }
+
+    /**
+     * @return Number of times the samples have actually had to be measured and a size searched for,
+     * rather than remembered
+     */
+    public synchronized int getSearchCount() {
+        return searchCount;
+    }
+
+    private String widestSample(Typeface typeface, String[] samples) {
+        paint.setTypeface(typeface);
+        paint.setTextSize(REFERENCE_TEXT_SIZE_PX);
+
+        String widest = "";
+        float widestWidth = -1;
+        for (String sample : samples) {
+            float width = paint.measureText(sample);
+            if (width > widestWidth) {
+                widest = sample;
+                widestWidth = width;
+            }
+        }
+        return widest;
+    }
+
+    private float search(Typeface typeface, String text, int maxWidth, int maxHeight, float maxTextSize) {
+        searchCount++;
+        paint.setTypeface(typeface);
+
+        if (fits(text, maxTextSize, maxWidth, maxHeight)) {
+            return maxTextSize;
+        }
+
+        // Invariant: 'low' fits (or is the minimum allowed), 'high' doesn't
+        float low = MIN_TEXT_SIZE_PX;
+        float high = maxTextSize;
+        while ((high - low) > PRECISION_PX) {
+            float middle = (low + high) / 2.0F;
+            if (fits(text, middle, maxWidth, maxHeight)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean fits(String text, float textSize, int maxWidth, int maxHeight) {
+        paint.setTextSize(textSize);
+        paint.getFontMetrics(fontMetrics);
+        return (paint.measureText(text) <= maxWidth) && ((fontMetrics.descent - fontMetrics.ascent) <= maxHeight);
+    }
+
+    private static final class FitKey {
+        private final Typeface typeface;
+        // Compared by identity
+        private final String[] samples;
+        private final int maxWidth;
+        private final int maxHeight;
+        private final float maxTextSize;
+
+        FitKey(Typeface typeface, String[] samples, int maxWidth, int maxHeight, float maxTextSize) {
+            this.typeface = typeface;
+            this.samples = samples;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.maxTextSize = maxTextSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FitKey)) {
+                return false;
+            }
+            FitKey other = (FitKey) o;
+            return (typeface == other.typeface)
+                    && (samples == other.samples)
+                    && (maxWidth == other.maxWidth)
+                    && (maxHeight == other.maxHeight)
+                    && (maxTextSize == other.maxTextSize);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(typeface);
+            result = 31 * result + System.identityHashCode(samples);
+            result = 31 * result + maxWidth;
+            result = 31 * result + maxHeight;
+            result = 31 * result + Float.floatToIntBits(maxTextSize);
+            return result;
+        }
+    }
+}
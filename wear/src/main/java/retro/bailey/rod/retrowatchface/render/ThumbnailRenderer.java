@@ -0,0 +1,94 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Path;
+
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+
+/**
+ * Draws a small picture of the watch face in a given theme, for the theme selection list. It is
+ * drawn by the same {@link RenderState}, {@link FaceRenderer} and {@link CanvasFaceCanvas} as the
+ * watch face itself, at a fixed time and date, with text sized as it would be on a full size face
+ * and then scaled down with it.
+ * <p/>
+ * Loads fonts and renders bitmaps, so should only be used on a background thread. Not thread safe.
+ */
+public class ThumbnailRenderer {
+
+    /**
+     * Width of the face the theme's text sizes are meant for. Text is scaled by the thumbnail size
+     * over this.
+     */
+    private static final int REFERENCE_FACE_SIZE_PX = 320;
+
+    // Shown in every thumbnail: 10:10 on Wednesday 7 June
+    private static final int SAMPLE_HOUR = 10;
+    private static final int SAMPLE_MINUTE = 10;
+    private static final int SAMPLE_WEEK_DAY = 3;
+    private static final int SAMPLE_MONTH_DAY = 7;
+    private static final int SAMPLE_MONTH = 5;
+
+    private final TypefaceCache typefaceCache;
+
+    private final float scaledDensity;
+
+    private final TimeTextFormatter formatter;
+
+    private final FaceRenderer faceRenderer;
+
+    private final CanvasFaceCanvas faceCanvas = new CanvasFaceCanvas();
+
+    private final TextFitter textFitter = new TextFitter();
+
+    private final char[] dayName;
+    private final int dayNameLength;
+
+    private final char[] date;
+    private final int dateLength;
+
+    private final Path circle = new Path();
+
+    /**
+     * @param typefaceCache Where to get the themes' fonts from
+     * @param scaledDensity Scaled density of the display, as used by the watch face
+     * @param formatter     Formats the sample time, day and date in the current locale
+     */
+    public ThumbnailRenderer(TypefaceCache typefaceCache, float scaledDensity, TimeTextFormatter formatter) {
+        this.typefaceCache = typefaceCache;
+        this.scaledDensity = scaledDensity;
+        this.formatter = formatter;
+        this.faceRenderer = new FaceRenderer(formatter);
+
+        dayName = new char[formatter.getMaxDayNameLength()];
+        dayNameLength = formatter.formatDayName(SAMPLE_WEEK_DAY, dayName);
+        date = new char[formatter.getMaxDateLength()];
+        dateLength = formatter.formatDate(SAMPLE_MONTH_DAY, SAMPLE_MONTH, date);
+    }
+
+    /**
+     * @param theme  Theme to draw the face in
+     * @param sizePx Width and height of the thumbnail
+     * @param round  true to draw a round face, transparent outside the circle
+     * @return A new bitmap holding the thumbnail
+     */
+    public Bitmap render(PackedTheme theme, int sizePx, boolean round) {
+        float thumbnailDensity = scaledDensity * sizePx / REFERENCE_FACE_SIZE_PX;
+        RenderState.Inputs inputs = new RenderState.Inputs(theme, sizePx, sizePx, round, 0, thumbnailDensity,
+                formatter, false, false);
+        RenderState state = RenderState.buildStill(inputs, typefaceCache, textFitter);
+
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (round) {
+            circle.reset();
+            circle.addCircle(sizePx / 2.0F, sizePx / 2.0F, sizePx / 2.0F, Path.Direction.CW);
+            canvas.clipPath(circle);
+        }
+
+        faceCanvas.setTarget(canvas, state);
+        faceRenderer.drawFrame(faceCanvas, SAMPLE_HOUR, SAMPLE_MINUTE, 0, false, true, false,
+                dayName, dayNameLength, date, dateLength);
+        return bitmap;
+    }
+}
@@ -0,0 +1,44 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.os.Trace;
+
+/**
+ * Marks each phase of a frame as a {@link Trace} section, so the phases show up in systrace, then
+ * passes it on to another profiler.
+ */
+public class TracingFrameProfiler implements FrameProfiler {
+
+    // Section names, made once so that tracing allocates nothing
+    private static final String[] SECTION_NAMES = new String[PHASE_COUNT];
+
+    static {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            SECTION_NAMES[phase] = "RetroWatchFace:" + PHASE_NAMES[phase];
+        }
+    }
+
+    private final FrameProfiler delegate;
+
+    /**
+     * @param delegate Also told about each phase. May be null.
+     */
+    public TracingFrameProfiler(FrameProfiler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void beginPhase(int phase) {
+        Trace.beginSection(SECTION_NAMES[phase]);
+        if (delegate != null) {
+            delegate.beginPhase(phase);
+        }
+    }
+
+    @Override
+    public void endPhase(int phase) {
+        if (delegate != null) {
+            delegate.endPhase(phase);
+        }
+        Trace.endSection();
+    }
+}
@@ -0,0 +1,257 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide cache of the typefaces loaded from the fonts in assets, keyed by asset path eg.
+ * "fonts/Ultra.ttf". Loading a font means reading and parsing the whole TTF, so each is loaded at
+ * most once while it stays in the cache. Only the few most recently used fonts are kept, and fewer
+ * still when the system is short of memory.
+ * <p/>
+ * Fonts that are likely to be needed soon, eg. those of the theme being started up in or the themes
+ * next to the current one in the selection list, can be loaded ahead of time with {@link #preload}.
+ * Fonts are preloaded in parallel, one to a thread. A font asked for while it is loading is waited
+ * for rather than loaded a second time.
+ */
+public class TypefaceCache {
+
+    private static final String TAG = TypefaceCache.class.getSimpleName();
+
+    /**
+     * Most fonts kept in the cache. A theme uses at most three, so this covers the current theme
+     * and a neighbour or two.
+     */
+    private static final int MAX_FONTS = 4;
+
+    /**
+     * Fonts kept when the system asks us to trim memory.
+     */
+    private static final int MAX_FONTS_WHEN_TRIMMED = 1;
+
+    /**
+     * Most fonts loaded at once in the background - enough for all those of a theme.
+     */
+    private static final int PRELOAD_THREADS = 3;
+
+    /**
+     * How long a preload thread waits for more work before it finishes.
+     */
+    private static final long PRELOAD_THREAD_KEEP_ALIVE_MS = 1000;
+
+    private static volatile TypefaceCache instance;
+
+    private final AssetManager assets;
+
+    private final LruCache<String, Typeface> cache = new LruCache<String, Typeface>(MAX_FONTS);
+
+    // Fonts being loaded, by asset path. Also guards moving a font from here into the cache.
+    private final Map<String, FutureTask<Typeface>> loads = new HashMap<String, FutureTask<Typeface>>();
+
+    private final ThreadPoolExecutor preloadExecutor;
+
+    // Lookups by get() that found the font cached, and that had to load it or wait for it to load.
+    // Counted here rather than by the LruCache, which also counts the checks made by preload().
+    // Guarded by the loads lock.
+    private int hitCount;
+    private int missCount;
+
+    private TypefaceCache(AssetManager assets) {
+        this.assets = assets;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        preloadExecutor = new ThreadPoolExecutor(PRELOAD_THREADS, PRELOAD_THREADS,
+                PRELOAD_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "TypefacePreloader-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // Nothing is kept running between bursts of preloading
+        preloadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return The shared cache. Safe to call from any thread.
+     */
+    public static TypefaceCache getInstance(Context context) {
+        TypefaceCache result = instance;
+        if (result == null) {
+            synchronized (TypefaceCache.class) {
+                result = instance;
+                if (result == null) {
+                    result = new TypefaceCache(context.getApplicationContext().getAssets());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param assetPath Path of the font in assets eg. "fonts/Ultra.ttf"
+     * @return The typeface, loading it on this thread if it isn't cached or already being loaded
+     */
+    public Typeface get(String assetPath) {
+        FutureTask<Typeface> load;
+        boolean started;
+        synchronized (loads) {
+            Typeface typeface = cache.get(assetPath);
+            if (typeface != null) {
+                hitCount++;
+                return typeface;
+            }
+            missCount++;
+
+            load = loads.get(assetPath);
+            started = (load == null);
+            if (started) {
+                load = newLoad(assetPath);
+            }
+        }
+
+        if (started) {
+            load.run();
+        }
+        return await(load, assetPath);
+    }
+
+    /**
+     * Starts loading each of the given fonts on a background thread, unless it is already cached or
+     * being loaded. Fonts are loaded in parallel, in the order given.
+     */
+    public void preload(String... assetPaths) {
+        for (String assetPath : assetPaths) {
+            if (assetPath == null) {
+                continue;
+            }
+
+            FutureTask<Typeface> load;
+            synchronized (loads) {
+                if ((cache.get(assetPath) != null) || loads.containsKey(assetPath)) {
+                    continue;
+                }
+                load = newLoad(assetPath);
+            }
+            preloadExecutor.execute(load);
+        }
+    }
+
+    /**
+     * @return Task that loads the font into the cache, recorded as in progress. Must hold the loads
+     * lock.
+     */
+    private FutureTask<Typeface> newLoad(final String assetPath) {
+        FutureTask<Typeface> load = new FutureTask<Typeface>(new Callable<Typeface>() {
+            @Override
+            public Typeface call() {
+                Typeface typeface = null;
+                try {
+                    typeface = Typeface.createFromAsset(assets, assetPath);
+                    return typeface;
+                } finally {
+                    synchronized (loads) {
+                        loads.remove(assetPath);
+                        if (typeface != null) {
+                            cache.put(assetPath, typeface);
+                        }
+                    }
+                }
+            }
+        });
+        loads.put(assetPath, load);
+        return load;
+    }
+
+    /**
+     * @return The font loaded by the task, once it has finished
+     */
+    private static Typeface await(FutureTask<Typeface> load, String assetPath) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return load.get();
+                } catch (InterruptedException e) {
+                    // Fonts load quickly, so finish waiting and pass the interrupt on afterwards
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // Only happens if the build is broken, as theme fonts are checked when the pack is compiled
+            throw new IllegalStateException("Unable to load " + assetPath, e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Shrinks the cache in response to {@link ComponentCallbacks2#onTrimMemory}.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(MAX_FONTS_WHEN_TRIMMED);
+        }
+        Log.d(TAG, "onTrimMemory: level=" + level + ", " + this);
+    }
+
+    /**
+     * @return Number of lookups that found the font already loaded
+     */
+    public int getHitCount() {
+        synchronized (loads) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * @return Number of lookups that had to load the font, or wait for it to finish loading
+     */
+    public int getMissCount() {
+        synchronized (loads) {
+            return missCount;
+        }
+    }
+
+    /**
+     * @return Number of fonts dropped to make room or free memory
+     */
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return "TypefaceCache:size=" + cache.size() + ",hits=" + getHitCount() + ",misses=" + getMissCount()
+                + ",evictions=" + getEvictionCount();
+    }
+}
@@ -2,9 +2,12 @@ package retro.bailey.rod.retrowatchface.theme;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.app.Activity;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
 import android.support.wearable.view.WearableListView;
 import android.util.Log;
 import android.widget.ListView;
@@ -12,16 +15,11 @@ import android.widget.ListView;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.Wearable;
-import com.google.gson.Gson;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.LinkedList;
-import java.util.List;
 
 import retro.bailey.rod.retrowatchface.R;
-import retro.bailey.rod.retrowatchface.config.*;
+import retro.bailey.rod.retrowatchface.config.SharedPreferencesThemeConfigStore;
+import retro.bailey.rod.retrowatchface.config.ThemeConfigStore;
+import retro.bailey.rod.retrowatchface.config.ThemeRepository;
 
 /**
  * Activity for setting the current "theme" of the RetroWatchService.
@@ -37,7 +35,10 @@ public class SelectThemeActivity extends Activity {
         public void onClick(WearableListView.ViewHolder viewHolder) {
             Log.d(TAG, "onClick: itemId=" + viewHolder.getItemId() + ",tag=" + viewHolder.itemView.getTag()
                     + ",adapterPosition=" + viewHolder.getAdapterPosition());
-//            updateConfigDataItem(viewHolder.)
+
+            // The tag is the theme name, set by ThemeListViewAdapter. Running engines switch to it
+            // straight away.
+            themeConfigStore.selectTheme((String) viewHolder.itemView.getTag());
             finish();
         }
 
@@ -49,14 +50,27 @@ public class SelectThemeActivity extends Activity {
 
     private static final String TAG = SelectThemeActivity.class.getSimpleName();
 
+    /**
+     * Row views created before the list is first scrolled. A screenful plus a couple either side.
+     */
+    private static final int PREWARMED_ROWS = 6;
+
+    /**
+     * Rows beyond the last visible one, in the direction of scrolling, whose thumbnails are loaded
+     * ahead of time.
+     */
+    private static final int PREFETCH_ROWS = 4;
+
     private WearableListView themeListView;
 
     private ThemeListViewAdapter themeListViewAdapter;
 
-    private Themes THEMES;
-
     private GoogleApiClient googleApiClient;
 
+    private ThemeConfigStore themeConfigStore;
+
+    private ThemeThumbnailCache thumbnailCache;
+
     private final ListViewClickListener listViewClickListener = new ListViewClickListener();
 
     @Override
@@ -65,16 +79,37 @@ public class SelectThemeActivity extends Activity {
 
         super.onCreate(savedInstanceState);
 
-        initThemes();
-
         setContentView(R.layout.activity_retro_watch_face_configuration);
 
-        themeListViewAdapter = new ThemeListViewAdapter(getApplicationContext(), getThemes());
+        themeConfigStore = SharedPreferencesThemeConfigStore.getInstance(this);
+
+        ThemeRepository themes = ThemeRepository.getInstance(this);
+        thumbnailCache = new ThemeThumbnailCache(this, themes,
+                getResources().getDimensionPixelSize(R.dimen.theme_thumbnail_size),
+                getResources().getConfiguration().isScreenRound());
+
+        themeListViewAdapter = new ThemeListViewAdapter(this, themes, thumbnailCache);
         themeListView = (WearableListView) findViewById(R.id.wearable_list);
         themeListView.setAdapter(themeListViewAdapter);
         themeListView.setHasFixedSize(true);
         themeListView.setClickListener(listViewClickListener);
-//        themeListView.addOnScrollListener();
+        themeListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                prefetchAhead(dy);
+            }
+        });
+
+        // Inflate spare rows once the first frame is up, rather than during the first scroll
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!isDestroyed()) {
+                    themeListViewAdapter.prewarm(themeListView.getRecycledViewPool(), themeListView, PREWARMED_ROWS);
+                }
+                return false;
+            }
+        });
 
         googleApiClient = new GoogleApiClient.Builder(this)
                 .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
@@ -110,44 +145,55 @@ public class SelectThemeActivity extends Activity {
         if ((googleApiClient != null) && googleApiClient.isConnected()) {
             googleApiClient.disconnect();
         }
+        // Save the choice now rather than risk the process going before the delayed save
+        themeConfigStore.flush();
         super.onStop();
     }
 
-    private Themes getThemes() {
-        return THEMES;
-    }
-
-    private void initThemes() {
-        BufferedReader reader = null;
-        StringBuffer buffer = new StringBuffer();
-
-        try {
-            reader = new BufferedReader(new InputStreamReader(getAssets().open("themes.json")));
+    /**
+     * Loads the thumbnails of the rows about to scroll into view.
+     *
+     * @param dy Distance just scrolled. Positive if scrolling towards the end of the list.
+     */
+    private void prefetchAhead(int dy) {
+        int childCount = themeListView.getChildCount();
+        if ((childCount == 0) || (dy == 0)) {
+            return;
+        }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                buffer.append(line);
+        if (dy > 0) {
+            int last = themeListView.getChildAdapterPosition(themeListView.getChildAt(childCount - 1));
+            for (int i = 1; i <= PREFETCH_ROWS; i++) {
+                themeListViewAdapter.prefetch(last + i);
             }
-        } catch (IOException iox) {
-            Log.w(TAG, iox);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    Log.w(TAG, e);
-                }
+        } else {
+            int first = themeListView.getChildAdapterPosition(themeListView.getChildAt(0));
+            for (int i = 1; i <= PREFETCH_ROWS; i++) {
+                themeListViewAdapter.prefetch(first - i);
             }
         }
+    }
+
+    WearableListView getThemeListView() {
+        return themeListView;
+    }
 
-        String jsonString = buffer.toString();
+    ThemeListViewAdapter getThemeListViewAdapter() {
+        return themeListViewAdapter;
+    }
 
-        // By the time we get here, 'buffer' contains the JSON string from assets/themes.json
-        Log.i(TAG, "Read themes.json: " + jsonString);
+    @Override
+    protected void onDestroy() {
+        thumbnailCache.shutdown();
+        super.onDestroy();
+    }
 
-        // Parse the JSON string into an object graph
-        Gson gson = new Gson();
-        THEMES = gson.fromJson(jsonString, Themes.class);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            thumbnailCache.trimMemory();
+        }
     }
 
     @Override
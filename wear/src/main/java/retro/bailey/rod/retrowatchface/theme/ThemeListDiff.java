@@ -0,0 +1,98 @@
+package retro.bailey.rod.retrowatchface.theme;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retro.bailey.rod.retrowatchface.config.ThemeCatalog;
+
+/**
+ * Works out the inserts, removals, moves and changes that turn one catalog of themes into another,
+ * so that the theme list can animate just the rows affected when the catalog changes rather than
+ * rebinding every row. Themes are matched by name, and a theme whose
+ * {@link ThemeCatalog#getContentHash} differs between the two catalogs has changed. Only names and
+ * hashes are compared, so no theme has to be loaded.
+ * <p/>
+ * Removals are reported first, from the end of the list back, then everything else from the top
+ * down. Positions are those of the list as it stands after the steps already reported, which is
+ * what RecyclerView's notifyItem... methods expect.
+ */
+public final class ThemeListDiff {
+
+    /**
+     * Told each step, in order.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position);
+    }
+
+    private ThemeListDiff() {
+        // Not instantiable
+    }
+
+    /**
+     * Reports the steps that turn oldThemes into newThemes.
+     */
+    public static void dispatch(ThemeCatalog oldThemes, ThemeCatalog newThemes, Callback callback) {
+        // Removals, as runs from the end back so that positions before each run still hold
+        int runEnd = -1;
+        for (int i = oldThemes.size() - 1; i >= -1; i--) {
+            boolean removed = (i >= 0) && (newThemes.indexOf(oldThemes.getName(i)) < 0);
+            if (removed && (runEnd < 0)) {
+                runEnd = i;
+            } else if (!removed && (runEnd >= 0)) {
+                callback.onRemoved(i + 1, runEnd - i);
+                runEnd = -1;
+            }
+        }
+
+        // Names of the kept themes, in order, updated as each step is reported
+        List<String> current = new ArrayList<String>(newThemes.size());
+        for (int i = 0; i < oldThemes.size(); i++) {
+            String name = oldThemes.getName(i);
+            if (newThemes.indexOf(name) >= 0) {
+                current.add(name);
+            }
+        }
+
+        int insertStart = -1;
+        for (int i = 0; i < newThemes.size(); i++) {
+            String name = newThemes.getName(i);
+            int oldIndex = oldThemes.indexOf(name);
+
+            if (oldIndex < 0) {
+                // Inserts at consecutive positions are reported as one
+                current.add(i, name);
+                if (insertStart < 0) {
+                    insertStart = i;
+                }
+                continue;
+            }
+
+            if (insertStart >= 0) {
+                callback.onInserted(insertStart, i - insertStart);
+                insertStart = -1;
+            }
+
+            if (!current.get(i).equals(name)) {
+                int from = current.indexOf(name);
+                current.remove(from);
+                current.add(i, name);
+                callback.onMoved(from, i);
+            }
+
+            if (oldThemes.getContentHash(oldIndex) != newThemes.getContentHash(i)) {
+                callback.onChanged(i);
+            }
+        }
+
+        if (insertStart >= 0) {
+            callback.onInserted(insertStart, newThemes.size() - insertStart);
+        }
+    }
+}
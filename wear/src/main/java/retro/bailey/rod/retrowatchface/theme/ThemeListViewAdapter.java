@@ -1,6 +1,8 @@
 package retro.bailey.rod.retrowatchface.theme;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v7.widget.RecyclerView;
 import android.support.wearable.view.WearableListView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -8,37 +10,71 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import retro.bailey.rod.retrowatchface.R;
-import retro.bailey.rod.retrowatchface.config.Themes;
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+import retro.bailey.rod.retrowatchface.config.ThemeCatalog;
 
 /**
  * Data source for the list view in the configuration activity. Each item in the list
  * is a particular "theme" - a set of colours and fonts with which the retro watch face
  * is rendered. This adapter vends a "view" for each "theme" in the list. Recycling logic is
  * included.
+ * <p/>
+ * Each row shows a thumbnail of the face in its theme, from a {@link ThemeThumbnailCache}. Rows
+ * whose thumbnail isn't loaded yet are bound without one, then just their thumbnail is bound again
+ * when it arrives.
+ * <p/>
+ * Built to cope with catalogs of hundreds of themes: every theme has a stable id, so rows keep
+ * their views across catalog changes, and {@link #setThemes} reports only the rows that changed.
+ * A row rebound to the theme it already shows doesn't set its text again. Themes are only loaded
+ * from the catalog when their rows are bound or prefetched.
  */
-public class ThemeListViewAdapter extends WearableListView.Adapter {
+public class ThemeListViewAdapter extends WearableListView.Adapter implements ThemeThumbnailCache.Listener {
+
+    /**
+     * Payload of a change that only affects a row's thumbnail.
+     */
+    private static final Object PAYLOAD_THUMBNAIL = new Object();
 
     private Context context;
 
     private final LayoutInflater inflater;
 
-    private Themes themes;
+    private ThemeCatalog themes;
+
+    // Position of each theme in themes, by name
+    private final Map<String, Integer> positionByName = new HashMap<String, Integer>();
+
+    // Ids handed out to themes, by name. Kept for themes that leave the catalog, in case they return.
+    private final Map<String, Long> idByName = new HashMap<String, Long>();
+
+    private long nextId;
+
+    private final ThemeThumbnailCache thumbnails;
 
-    public ThemeListViewAdapter(Context context, Themes themes) {
+    public ThemeListViewAdapter(Context context, ThemeCatalog themes, ThemeThumbnailCache thumbnails) {
         this.context = context;
         this.inflater = LayoutInflater.from(context);
-        this.themes = themes;
+        this.thumbnails = thumbnails;
+        thumbnails.setListener(this);
+
+        setHasStableIds(true);
+        useThemes(themes);
     }
 
-    /** Provides a referenc eto the type of views you're using */
+    /** Provides a reference to the type of views you're using */
     public static class ThemeListItemViewHolder extends WearableListView.ViewHolder {
 
         private ImageView iconImageView;
         private TextView textView;
 
+        // Theme whose name the row shows, or null if not yet bound
+        private PackedTheme boundTheme;
+
         public ThemeListItemViewHolder(View itemView) {
             super(itemView);
             iconImageView = (ImageView) itemView.findViewById(R.id.theme_icon);
@@ -54,28 +90,133 @@ public class ThemeListViewAdapter extends WearableListView.Adapter {
         }
     }
 
+    /**
+     * Replaces the catalog, telling the list which rows were inserted, removed, moved or changed.
+     */
+    public void setThemes(ThemeCatalog newThemes) {
+        ThemeCatalog oldThemes = themes;
+        useThemes(newThemes);
+
+        ThemeListDiff.dispatch(oldThemes, themes, new ThemeListDiff.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                notifyItemChanged(position);
+            }
+        });
+    }
+
+    private void useThemes(ThemeCatalog newThemes) {
+        themes = newThemes;
+        positionByName.clear();
+        for (int i = 0; i < themes.size(); i++) {
+            String name = themes.getName(i);
+            positionByName.put(name, i);
+            if (!idByName.containsKey(name)) {
+                idByName.put(name, nextId++);
+            }
+        }
+    }
+
+    /**
+     * @return Theme at the given position
+     */
+    public PackedTheme getTheme(int position) {
+        return themes.get(position);
+    }
+
+    /**
+     * Starts loading the thumbnail of the theme at the given position, if there is one, behind any
+     * rows already waiting for theirs.
+     */
+    public void prefetch(int position) {
+        if ((position >= 0) && (position < themes.size())) {
+            thumbnails.prefetch(themes.get(position));
+        }
+    }
+
+    /**
+     * Creates views for rows ahead of time and puts them in the pool, so that the first scroll
+     * doesn't have to inflate them.
+     *
+     * @param parent The list the views are for
+     * @param count  Number of views to create
+     */
+    public void prewarm(RecyclerView.RecycledViewPool pool, ViewGroup parent, int count) {
+        pool.setMaxRecycledViews(0, count);
+        for (int i = 0; i < count; i++) {
+            pool.putRecycledView(createViewHolder(parent, 0));
+        }
+    }
+
     @Override
     public WearableListView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        // Inflate custom layout for list item
-        return new ThemeListItemViewHolder(inflater.inflate(R.layout.list_adapter_item_theme, null));
+        // Inflate custom layout for list item, with the list's layout params
+        return new ThemeListItemViewHolder(inflater.inflate(R.layout.list_adapter_item_theme, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(WearableListView.ViewHolder holder, int position, List<Object> payloads) {
+        ThemeListItemViewHolder itemViewHolder = (ThemeListItemViewHolder) holder;
+        PackedTheme theme = themes.get(position);
+
+        if (payloads.contains(PAYLOAD_THUMBNAIL) && (itemViewHolder.boundTheme == theme)) {
+            itemViewHolder.getIconImageView().setImageBitmap(thumbnails.get(theme));
+        } else {
+            onBindViewHolder(holder, position);
+        }
     }
 
     @Override
     public void onBindViewHolder(WearableListView.ViewHolder holder, int position) {
         ThemeListItemViewHolder itemViewHolder = (ThemeListItemViewHolder) holder;
 
-        String themeName = themes.themes.get(position).name;
+        PackedTheme theme = themes.get(position);
+
+        // Never waits for the thumbnail. If it isn't ready, onThumbnailReady rebinds the row.
+        Bitmap thumbnail = thumbnails.get(theme);
+        itemViewHolder.getIconImageView().setImageBitmap(thumbnail);
 
-        TextView textView = itemViewHolder.getTextView();
-        textView.setText(themeName);
+        if ((itemViewHolder.boundTheme == null) || !itemViewHolder.boundTheme.name.equals(theme.name)) {
+            String themeName = theme.name;
+            itemViewHolder.getTextView().setText(themeName);
 
-        // The tag will contain the theme name. This can be used later as an id
-        // so that when selected, we can retrieve the chosen theme from the Themes database.
-        ((ThemeListItemViewHolder) holder).itemView.setTag(themeName);
+            // The tag will contain the theme name. This can be used later as an id
+            // so that when selected, we can retrieve the chosen theme from the ThemeRepository.
+            itemViewHolder.itemView.setTag(themeName);
+        }
+        itemViewHolder.boundTheme = theme;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return idByName.get(themes.getName(position));
     }
 
     @Override
     public int getItemCount() {
-        return themes.themes.size();
+        return themes.size();
+    }
+
+    @Override
+    public void onThumbnailReady(PackedTheme theme) {
+        Integer position = positionByName.get(theme.name);
+        if ((position != null) && (themes.get(position) == theme)) {
+            notifyItemChanged(position, PAYLOAD_THUMBNAIL);
+        }
     }
 }
@@ -0,0 +1,388 @@
+package retro.bailey.rod.retrowatchface.theme;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+import retro.bailey.rod.retrowatchface.config.ThemeCatalog;
+import retro.bailey.rod.retrowatchface.render.ThumbnailRenderer;
+import retro.bailey.rod.retrowatchface.render.TimeTextFormatter;
+import retro.bailey.rod.retrowatchface.render.TypefaceCache;
+
+/**
+ * Thumbnails of the watch face in each theme, for the theme selection list. {@link #get} only ever
+ * looks in memory, so never blocks. A miss queues the thumbnail to be read from disk or, failing
+ * that, rendered by a {@link ThumbnailRenderer} on a background thread, and the listener is told
+ * on the main thread when it is ready. The most recently asked for thumbnails are loaded first, so
+ * the rows in view come before those scrolled past.
+ * <p/>
+ * Thumbnails are kept in a memory LRU bounded in bytes, and in an LRU of PNG files on disk keyed by
+ * the theme's {@link PackedTheme#contentHash} and the thumbnail size. The files live in a
+ * directory named after a hash of the whole theme pack and locale, so changing themes.json starts
+ * a new directory and the old one is deleted.
+ * <p/>
+ * Only to be used from the main thread, apart from the work it does on its own thread.
+ */
+public class ThemeThumbnailCache {
+
+    /**
+     * Told on the main thread when a thumbnail has been loaded.
+     */
+    public interface Listener {
+        void onThumbnailReady(PackedTheme theme);
+    }
+
+    private static final String TAG = ThemeThumbnailCache.class.getSimpleName();
+
+    /**
+     * Bump when the way thumbnails are drawn changes, so those on disk are drawn again.
+     */
+    private static final int RENDER_VERSION = 1;
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+
+    /**
+     * Largest fraction of the heap thumbnails may take in memory.
+     */
+    private static final int MEMORY_FRACTION = 32;
+
+    /**
+     * Most bytes of thumbnails kept on disk.
+     */
+    private static final long MAX_DISK_BYTES = 1024 * 1024;
+
+    private final ThemeCatalog themes;
+
+    private final int sizePx;
+
+    private final boolean round;
+
+    // Keyed by PackedTheme.contentHash, so a changed theme gets a new thumbnail
+    private final LruCache<Integer, Bitmap> memoryCache;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Themes waiting to be loaded, most recently asked for first. Guarded by itself.
+    private final Deque<PackedTheme> pending = new ArrayDeque<PackedTheme>();
+
+    // Content hashes of themes being loaded or waiting to be, or whose thumbnail couldn't be drawn
+    // so mustn't be asked for again. Main thread only.
+    private final Set<Integer> requested = new HashSet<Integer>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ThumbnailLoader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Context context;
+
+    // Set up by the first task on the executor thread, and only used there
+    private ThumbnailRenderer renderer;
+    private File directory;
+
+    private Listener listener;
+
+    /**
+     * @param context Context of the selection activity
+     * @param themes  All themes
+     * @param sizePx  Width and height of each thumbnail
+     * @param round   true to draw round faces
+     */
+    public ThemeThumbnailCache(Context context, ThemeCatalog themes, int sizePx, boolean round) {
+        this.context = context.getApplicationContext();
+        this.themes = themes;
+        this.sizePx = sizePx;
+        this.round = round;
+
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        memoryCache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer contentHash, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                openDirectory();
+            }
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return The theme's thumbnail if it is in memory, otherwise null, in which case it is loaded
+     * in the background and the listener told when it's ready
+     */
+    public Bitmap get(PackedTheme theme) {
+        Bitmap bitmap = memoryCache.get(theme.contentHash());
+        if (bitmap == null) {
+            request(theme, true);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Starts loading the theme's thumbnail, if it isn't in memory, behind those already asked for by
+     * {@link #get}. For rows about to scroll into view.
+     */
+    public void prefetch(PackedTheme theme) {
+        if (memoryCache.get(theme.contentHash()) == null) {
+            request(theme, false);
+        }
+    }
+
+    /**
+     * @param urgent true to load the theme before any others waiting, false to load it after them
+     */
+    private void request(PackedTheme theme, boolean urgent) {
+        if (requested.add(theme.contentHash())) {
+            synchronized (pending) {
+                if (urgent) {
+                    pending.addFirst(theme);
+                } else {
+                    pending.addLast(theme);
+                }
+            }
+            // One task for each theme added
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    loadNext();
+                }
+            });
+        } else if (urgent) {
+            synchronized (pending) {
+                // Move it to the front if it's still waiting
+                if (pending.remove(theme)) {
+                    pending.addFirst(theme);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the thumbnails in memory, eg. when the system is short of memory. Those on disk are kept.
+     */
+    public void trimMemory() {
+        memoryCache.evictAll();
+    }
+
+    /**
+     * Stops loading thumbnails. The cache must not be used after this.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        listener = null;
+        memoryCache.evictAll();
+    }
+
+    /**
+     * Loads the most recently asked for theme still waiting. Runs on the executor thread, once for
+     * each theme asked for.
+     */
+    private void loadNext() {
+        final PackedTheme theme;
+        synchronized (pending) {
+            theme = pending.pollFirst();
+        }
+        if (theme == null) {
+            return;
+        }
+
+        Bitmap bitmap = readFromDisk(theme);
+        if (bitmap == null) {
+            try {
+                bitmap = renderer.render(theme, sizePx, round);
+            } catch (RuntimeException e) {
+                // eg. a font missing from the theme pack. Left in requested, so the row keeps its
+                // placeholder and the theme isn't tried again.
+                Log.w(TAG, "Unable to draw thumbnail of " + theme.name, e);
+                return;
+            }
+            writeToDisk(theme, bitmap);
+        }
+
+        final Bitmap loaded = bitmap;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (executor.isShutdown()) {
+                    return;
+                }
+                requested.remove(theme.contentHash());
+                memoryCache.put(theme.contentHash(), loaded);
+                if (listener != null) {
+                    listener.onThumbnailReady(theme);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the renderer and the disk cache directory for the current theme pack, deleting those
+     * of any other pack.
+     */
+    private void openDirectory() {
+        Locale locale = Locale.getDefault();
+        renderer = new ThumbnailRenderer(TypefaceCache.getInstance(context),
+                context.getResources().getDisplayMetrics().scaledDensity,
+                new TimeTextFormatter(locale));
+
+        int packHash = RENDER_VERSION;
+        // From the catalog's index, so no theme has to be read
+        for (int i = 0; i < themes.size(); i++) {
+            packHash = (31 * packHash) + themes.getContentHash(i);
+        }
+        packHash = (31 * packHash) + locale.toString().hashCode();
+
+        File root = new File(context.getCacheDir(), DIRECTORY_NAME);
+        String name = Integer.toHexString(packHash);
+        File[] existing = root.listFiles();
+        if (existing != null) {
+            for (File stale : existing) {
+                if (!stale.getName().equals(name)) {
+                    deleteRecursively(stale);
+                }
+            }
+        }
+
+        directory = new File(root, name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + directory + ", thumbnails won't be kept on disk");
+            directory = null;
+        }
+    }
+
+    private Bitmap readFromDisk(PackedTheme theme) {
+        if (directory == null) {
+            return null;
+        }
+        File file = fileFor(theme);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            // Corrupt, so render it again
+            file.delete();
+        } else {
+            // Most recently used
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return bitmap;
+    }
+
+    private void writeToDisk(PackedTheme theme, Bitmap bitmap) {
+        if (directory == null) {
+            return;
+        }
+
+        // Written to a temporary file then renamed, so a half written file is never read
+        File file = fileFor(theme);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temporary);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.close();
+            out = null;
+            if (!temporary.renameTo(file)) {
+                temporary.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + file, e);
+            temporary.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.w(TAG, e);
+                }
+            }
+        }
+
+        trimDisk();
+    }
+
+    /**
+     * Deletes the least recently used files until those left fit within {@link #MAX_DISK_BYTES}.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified) ? -1 : ((lhsModified == rhsModified) ? 0 : 1);
+            }
+        });
+        for (int i = 0; (i < files.length) && (totalBytes > MAX_DISK_BYTES); i++) {
+            totalBytes -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private File fileFor(PackedTheme theme) {
+        return new File(directory, Integer.toHexString(theme.contentHash()) + "_" + sizePx + (round ? "r" : "") + ".png");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
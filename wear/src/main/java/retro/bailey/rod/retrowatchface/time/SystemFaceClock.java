@@ -0,0 +1,26 @@
+package retro.bailey.rod.retrowatchface.time;
+
+import android.os.SystemClock;
+
+import java.util.TimeZone;
+
+/**
+ * {@link FaceClock} reading the real time, in the device's time zone. Uptime comes from
+ * {@link SystemClock#uptimeMillis()}, the clock that Handler delays are measured against.
+ */
+public class SystemFaceClock extends FaceClock {
+
+    public SystemFaceClock() {
+        super(TimeZone.getDefault());
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -0,0 +1,65 @@
+package retro.bailey.rod.retrowatchface;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link RedrawScheduler} wakes on minute (or second) boundaries in local time and
+ * copes with early wake ups.
+ */
+public class RedrawSchedulerTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // Offset by 5:45, so local minute boundaries are not at whole UTC hours
+    private static final TimeZone KATHMANDU = TimeZone.getTimeZone("Asia/Kathmandu");
+
+    // 2016-06-07T10:15:20.250Z
+    private static final long NOW_MS = 1465294520250L;
+
+    @Test
+    public void wakesAtNextMinuteBoundary() throws Exception {
+        RedrawScheduler scheduler = new RedrawScheduler();
+
+        assertTrue(scheduler.isDue(NOW_MS));
+        assertEquals(39750, scheduler.scheduleNext(NOW_MS, UTC));
+        assertEquals(39750, scheduler.scheduleNext(NOW_MS, KATHMANDU));
+    }
+
+    @Test
+    public void wakesAtNextSecondBoundaryInSecondsMode() throws Exception {
+        RedrawScheduler scheduler = new RedrawScheduler();
+        scheduler.setSecondsMode(true);
+
+        assertEquals(750, scheduler.scheduleNext(NOW_MS, UTC));
+    }
+
+    @Test
+    public void earlyWakeUpWaitsOutTheRemainder() throws Exception {
+        RedrawScheduler scheduler = new RedrawScheduler();
+        long delayMs = scheduler.scheduleNext(NOW_MS, UTC);
+
+        // Handler fires 5ms before the minute changes
+        long earlyMs = NOW_MS + delayMs - 5;
+        assertFalse(scheduler.isDue(earlyMs));
+        assertEquals(5, scheduler.scheduleNext(earlyMs, UTC));
+
+        // On time, it moves on a whole minute
+        long onTimeMs = NOW_MS + delayMs;
+        assertTrue(scheduler.isDue(onTimeMs));
+        assertEquals(60000, scheduler.scheduleNext(onTimeMs, UTC));
+    }
+
+    @Test
+    public void resetMakesRedrawDueImmediately() throws Exception {
+        RedrawScheduler scheduler = new RedrawScheduler();
+        scheduler.scheduleNext(NOW_MS, UTC);
+        assertFalse(scheduler.isDue(NOW_MS + 1));
+
+        scheduler.reset();
+        assertTrue(scheduler.isDue(NOW_MS + 1));
+    }
+}
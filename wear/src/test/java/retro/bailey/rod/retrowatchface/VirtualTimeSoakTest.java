@@ -0,0 +1,208 @@
+package retro.bailey.rod.retrowatchface;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import retro.bailey.rod.retrowatchface.render.BarGeometry;
+import retro.bailey.rod.retrowatchface.render.CalendarTextCache;
+import retro.bailey.rod.retrowatchface.render.FaceCanvas;
+import retro.bailey.rod.retrowatchface.render.FaceRenderer;
+import retro.bailey.rod.retrowatchface.render.RecordingFaceCanvas;
+import retro.bailey.rod.retrowatchface.render.TimeTextFormatter;
+import retro.bailey.rod.retrowatchface.stats.WakeupStats;
+import retro.bailey.rod.retrowatchface.time.VirtualFaceClock;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the interactive mode update loop of the engine - wake when the {@link RedrawScheduler} says,
+ * read the time, draw the frame - for days at a time on a {@link VirtualFaceClock}, checking what
+ * is drawn across midnight and daylight saving changes, and counting wakeups, frames and the bytes
+ * allocated.
+ */
+public class VirtualTimeSoakTest {
+
+    private static final TimeZone LONDON = TimeZone.getTimeZone("Europe/London");
+
+    private static final long MS_PER_MINUTE = 60 * 1000;
+
+    private static final long MS_PER_DAY = 24 * 60 * MS_PER_MINUTE;
+
+    private final TimeTextFormatter formatter = new TimeTextFormatter(Locale.ENGLISH);
+
+    private final FaceRenderer renderer = new FaceRenderer(formatter);
+
+    private final RecordingFaceCanvas canvas = new RecordingFaceCanvas(new BarGeometry(320, 320, true, 30));
+
+    private final CalendarTextCache calendarTextCache = new CalendarTextCache(formatter);
+
+    private final RedrawScheduler scheduler = new RedrawScheduler();
+
+    private VirtualFaceClock clock;
+
+    private WakeupStats wakeupStats;
+
+    @Test
+    public void weekWakesOncePerMinuteAndWastesNoFrames() throws Exception {
+        // Saturday, the day before London clocks go forward
+        start(time(2016, Calendar.MARCH, 26, 0, 0));
+        run(7 * MS_PER_DAY);
+
+        // Minute boundaries come every minute of real time, daylight saving or not
+        int minutes = 7 * 24 * 60;
+        assertEquals(minutes, wakeupStats.getWakeups(WakeupStats.STATE_INTERACTIVE));
+        assertEquals(minutes, wakeupStats.getCount(WakeupStats.STATE_INTERACTIVE, WakeupStats.COUNTER_FRAMES));
+        assertEquals(0, wakeupStats.getWastedFrameRatio(WakeupStats.STATE_INTERACTIVE), 0);
+        assertEquals(60, wakeupStats.getWakeupsPerHour(WakeupStats.STATE_INTERACTIVE, clock.uptimeMillis()), 0);
+
+        // Once for each day, the last being the one the run ends at the start of
+        assertEquals(8, calendarTextCache.getFormatCount());
+        assertEquals("Saturday", panelText(FaceCanvas.PANEL_DAY));
+        assertEquals("2 April", panelText(FaceCanvas.PANEL_DATE));
+    }
+
+    @Test
+    public void secondsModeWakesOncePerSecond() throws Exception {
+        scheduler.setSecondsMode(true);
+        start(time(2016, Calendar.JUNE, 6, 12, 0));
+        run(MS_PER_DAY);
+
+        assertEquals(24 * 60 * 60, wakeupStats.getWakeups(WakeupStats.STATE_INTERACTIVE));
+        assertEquals(0, wakeupStats.getWastedFrameRatio(WakeupStats.STATE_INTERACTIVE), 0);
+        assertEquals("12:00:00", panelText(FaceCanvas.PANEL_TIME));
+        assertEquals("Tuesday", panelText(FaceCanvas.PANEL_DAY));
+    }
+
+    @Test
+    public void timeSkipsAheadWhenClocksGoForward() throws Exception {
+        // 1am becomes 2am on 27 March 2016
+        start(time(2016, Calendar.MARCH, 27, 0, 59));
+        assertEquals("0:59", panelText(FaceCanvas.PANEL_TIME));
+
+        run(MS_PER_MINUTE);
+        assertEquals("2:00", panelText(FaceCanvas.PANEL_TIME));
+    }
+
+    @Test
+    public void timeRepeatsHourWhenClocksGoBack() throws Exception {
+        // 2am becomes 1am on 30 October 2016, so 1:00 to 1:59 is shown twice
+        start(time(2016, Calendar.OCTOBER, 30, 0, 59));
+        run(60 * MS_PER_MINUTE);
+        assertEquals("1:59", panelText(FaceCanvas.PANEL_TIME));
+        run(MS_PER_MINUTE);
+        assertEquals("1:00", panelText(FaceCanvas.PANEL_TIME));
+
+        run(59 * MS_PER_MINUTE);
+        assertEquals("1:59", panelText(FaceCanvas.PANEL_TIME));
+        run(MS_PER_MINUTE);
+        assertEquals("2:00", panelText(FaceCanvas.PANEL_TIME));
+        assertEquals(0, wakeupStats.getWastedFrameRatio(WakeupStats.STATE_INTERACTIVE), 0);
+    }
+
+    @Test
+    public void dayAndDateRollOverAtMidnight() throws Exception {
+        start(time(2016, Calendar.JUNE, 30, 23, 59));
+        assertEquals("Thursday", panelText(FaceCanvas.PANEL_DAY));
+        assertEquals("30 June", panelText(FaceCanvas.PANEL_DATE));
+
+        run(MS_PER_MINUTE);
+        assertEquals("0:00", panelText(FaceCanvas.PANEL_TIME));
+        assertEquals("Friday", panelText(FaceCanvas.PANEL_DAY));
+        assertEquals("1 July", panelText(FaceCanvas.PANEL_DATE));
+        assertEquals(2, calendarTextCache.getFormatCount());
+    }
+
+    @Test
+    public void dayOfFramesAllocatesNothing() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            // Allocations can't be counted on this JVM
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        // A day to warm up, then a day of frames including midnight
+        start(time(2016, Calendar.JUNE, 6, 0, 0));
+        run(MS_PER_DAY);
+
+        long beforeBytes = allocations.getThreadAllocatedBytes(threadId);
+        run(MS_PER_DAY);
+        long allocatedBytes = allocations.getThreadAllocatedBytes(threadId) - beforeBytes;
+
+        assertEquals("Bytes allocated in a day of frames", 0, allocatedBytes);
+    }
+
+    /**
+     * Becomes visible and interactive at the given time, and draws the first frame.
+     */
+    private void start(long timeMs) {
+        clock = new VirtualFaceClock(timeMs, LONDON);
+        wakeupStats = new WakeupStats(clock.uptimeMillis());
+        wakeupStats.setState(WakeupStats.STATE_INTERACTIVE, clock.uptimeMillis());
+        scheduler.reset();
+        wakeUp();
+        wakeupStats.reset(clock.uptimeMillis());
+    }
+
+    /**
+     * Lets the given time pass, waking up whenever the scheduler asks to.
+     */
+    private void run(long durationMs) {
+        long endMs = clock.uptimeMillis() + durationMs;
+        while (true) {
+            long delayMs = scheduler.scheduleNext(clock.currentTimeMillis(), clock.getTimeZone());
+            if (clock.uptimeMillis() + delayMs > endMs) {
+                clock.advance(endMs - clock.uptimeMillis());
+                return;
+            }
+            clock.advance(delayMs);
+            wakeUp();
+        }
+    }
+
+    /**
+     * As the engine does for MSG_UPDATE_TIME, with the invalidate and draw that follow.
+     */
+    private void wakeUp() {
+        wakeupStats.increment(WakeupStats.COUNTER_HANDLER_MESSAGES);
+        if (!scheduler.isDue(clock.currentTimeMillis())) {
+            return;
+        }
+        wakeupStats.increment(WakeupStats.COUNTER_UPDATE_TIME_INVALIDATES);
+
+        clock.update();
+        calendarTextCache.update(clock.getTimeMs(), clock.getTimeZone());
+
+        canvas.reset();
+        renderer.drawFrame(canvas,
+                clock.getHour(), clock.getMinute(), clock.getSecond(), scheduler.isSecondsMode(), true, false,
+                calendarTextCache.getDayNameChars(), calendarTextCache.getDayNameLength(),
+                calendarTextCache.getDateChars(), calendarTextCache.getDateLength());
+        wakeupStats.onFrame(renderer.getLastFrameSignature());
+    }
+
+    /**
+     * @return Text drawn in the given panel by the last frame
+     */
+    private String panelText(int panel) {
+        for (int i = 0; i < canvas.getOpCount(); i++) {
+            if ((canvas.getOpType(i) == RecordingFaceCanvas.OP_TEXT) && (canvas.getPanel(i) == panel)) {
+                return canvas.getText(i).toString();
+            }
+        }
+        throw new AssertionError("Nothing drawn in panel " + panel);
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(LONDON);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,63 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ThemeConfigStore} for tests, which "saves" to a field and only writes when the test calls
+ * {@link #runScheduledWrite}.
+ */
+public class InMemoryThemeConfigStore extends AbstractThemeConfigStore {
+
+    private String savedThemeName;
+
+    private boolean writeScheduled;
+
+    // Every theme name written, in order
+    private final List<String> writes = new ArrayList<String>();
+
+    /**
+     * @param savedThemeName Theme name saved before the store was created, or null for none
+     */
+    public InMemoryThemeConfigStore(String savedThemeName) {
+        this.savedThemeName = savedThemeName;
+    }
+
+    @Override
+    protected String read() {
+        return savedThemeName;
+    }
+
+    @Override
+    protected void write(String themeName) {
+        savedThemeName = themeName;
+        writes.add(themeName);
+    }
+
+    @Override
+    protected void scheduleWrite() {
+        writeScheduled = true;
+    }
+
+    /**
+     * Runs the write scheduled by the store, as its timer would.
+     */
+    public void runScheduledWrite() {
+        if (writeScheduled) {
+            writeScheduled = false;
+            flush();
+        }
+    }
+
+    public boolean isWriteScheduled() {
+        return writeScheduled;
+    }
+
+    public String getSavedThemeName() {
+        return savedThemeName;
+    }
+
+    public List<String> getWrites() {
+        return writes;
+    }
+}
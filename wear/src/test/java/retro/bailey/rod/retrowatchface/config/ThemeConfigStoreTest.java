@@ -0,0 +1,96 @@
+package retro.bailey.rod.retrowatchface.config;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link AbstractThemeConfigStore} restores the saved theme, tells listeners about new
+ * choices straight away and saves a run of choices once.
+ */
+public class ThemeConfigStoreTest {
+
+    private final List<String> selected = new ArrayList<String>();
+
+    private final ThemeConfigStore.Listener listener = new ThemeConfigStore.Listener() {
+        @Override
+        public void onThemeSelected(String themeName) {
+            selected.add(themeName);
+        }
+    };
+
+    @Test
+    public void nothingSelectedAtFirst() throws Exception {
+        assertNull(new InMemoryThemeConfigStore(null).getSelectedThemeName());
+    }
+
+    @Test
+    public void restoresSavedSelection() throws Exception {
+        assertEquals("Rose", new InMemoryThemeConfigStore("Rose").getSelectedThemeName());
+    }
+
+    @Test
+    public void listenersToldStraightAway() throws Exception {
+        InMemoryThemeConfigStore store = new InMemoryThemeConfigStore(null);
+        store.addListener(listener);
+
+        store.selectTheme("Marine");
+
+        assertEquals(Arrays.asList("Marine"), selected);
+        assertEquals("Marine", store.getSelectedThemeName());
+        assertNull(store.getSavedThemeName());
+    }
+
+    @Test
+    public void reselectingIsIgnored() throws Exception {
+        InMemoryThemeConfigStore store = new InMemoryThemeConfigStore("Marine");
+        store.addListener(listener);
+
+        store.selectTheme("Marine");
+
+        assertTrue(selected.isEmpty());
+        assertFalse(store.isWriteScheduled());
+    }
+
+    @Test
+    public void rapidSelectionsSavedOnce() throws Exception {
+        InMemoryThemeConfigStore store = new InMemoryThemeConfigStore(null);
+        store.addListener(listener);
+
+        store.selectTheme("Marine");
+        store.selectTheme("Rose");
+        store.selectTheme("Desert");
+        store.runScheduledWrite();
+
+        assertEquals(Arrays.asList("Marine", "Rose", "Desert"), selected);
+        assertEquals(Arrays.asList("Desert"), store.getWrites());
+        assertEquals("Desert", new InMemoryThemeConfigStore(store.getSavedThemeName()).getSelectedThemeName());
+    }
+
+    @Test
+    public void flushSavesPendingSelectionOnly() throws Exception {
+        InMemoryThemeConfigStore store = new InMemoryThemeConfigStore(null);
+        store.flush();
+        assertTrue(store.getWrites().isEmpty());
+
+        store.selectTheme("Rose");
+        store.flush();
+        store.runScheduledWrite();
+        assertEquals(Arrays.asList("Rose"), store.getWrites());
+    }
+
+    @Test
+    public void removedListenerNotTold() throws Exception {
+        InMemoryThemeConfigStore store = new InMemoryThemeConfigStore(null);
+        store.addListener(listener);
+        store.removeListener(listener);
+
+        store.selectTheme("Rose");
+
+        assertTrue(selected.isEmpty());
+    }
+}
@@ -0,0 +1,96 @@
+package retro.bailey.rod.retrowatchface.render;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CalendarTextCache} formats the day name and date once per local day, and again
+ * whenever the day, time zone or formatter changes.
+ */
+public class CalendarTextCacheTest {
+
+    private static final TimeZone SYDNEY = TimeZone.getTimeZone("Australia/Sydney");
+    private static final TimeZone LONDON = TimeZone.getTimeZone("Europe/London");
+
+    private final CalendarTextCache cache = new CalendarTextCache(new TimeTextFormatter(Locale.ENGLISH));
+
+    @Test
+    public void formatsOncePerDay() throws Exception {
+        assertTrue(cache.update(time(SYDNEY, 2016, Calendar.JUNE, 6, 0, 0), SYDNEY));
+        assertEquals("Monday", dayName());
+        assertEquals("6 June", date());
+
+        assertFalse(cache.update(time(SYDNEY, 2016, Calendar.JUNE, 6, 12, 30), SYDNEY));
+        assertFalse(cache.update(time(SYDNEY, 2016, Calendar.JUNE, 6, 23, 59), SYDNEY));
+        assertEquals(1, cache.getFormatCount());
+    }
+
+    @Test
+    public void rollsOverExactlyAtMidnight() throws Exception {
+        long midnight = time(SYDNEY, 2016, Calendar.JUNE, 7, 0, 0);
+        cache.update(midnight - 1, SYDNEY);
+        assertEquals(midnight, cache.getValidUntilMs());
+
+        assertTrue(cache.update(midnight, SYDNEY));
+        assertEquals("Tuesday", dayName());
+        assertEquals("7 June", date());
+    }
+
+    @Test
+    public void rollsOverAtMidnightAcrossDaylightSavingChange() throws Exception {
+        // Sydney daylight saving starts at 2am on 2 October 2016, so that day is 23 hours long
+        cache.update(time(SYDNEY, 2016, Calendar.OCTOBER, 2, 12, 0), SYDNEY);
+        assertEquals(time(SYDNEY, 2016, Calendar.OCTOBER, 3, 0, 0), cache.getValidUntilMs());
+    }
+
+    @Test
+    public void formatsAgainWhenTimeZoneChanges() throws Exception {
+        // 8am Monday in Sydney is still 11pm Sunday in London
+        long nowMs = time(SYDNEY, 2016, Calendar.JUNE, 6, 8, 0);
+        cache.update(nowMs, SYDNEY);
+        assertTrue(cache.update(nowMs, LONDON));
+        assertEquals("Sunday", dayName());
+        assertEquals("5 June", date());
+    }
+
+    @Test
+    public void formatsAgainWhenClockIsSetBack() throws Exception {
+        cache.update(time(SYDNEY, 2016, Calendar.JUNE, 6, 0, 0), SYDNEY);
+        assertTrue(cache.update(time(SYDNEY, 2016, Calendar.JUNE, 5, 23, 59), SYDNEY));
+        assertEquals("Sunday", dayName());
+    }
+
+    @Test
+    public void formatsAgainAfterInvalidateOrNewFormatter() throws Exception {
+        long nowMs = time(SYDNEY, 2016, Calendar.JUNE, 6, 9, 0);
+        cache.update(nowMs, SYDNEY);
+
+        cache.invalidate();
+        assertTrue(cache.update(nowMs, SYDNEY));
+
+        cache.setFormatter(new TimeTextFormatter(Locale.FRENCH));
+        assertTrue(cache.update(nowMs, SYDNEY));
+        assertEquals("lundi", dayName());
+        assertEquals("6 juin", date());
+    }
+
+    private String dayName() {
+        return new String(cache.getDayNameChars(), 0, cache.getDayNameLength());
+    }
+
+    private String date() {
+        return new String(cache.getDateChars(), 0, cache.getDateLength());
+    }
+
+    private static long time(TimeZone timeZone, int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
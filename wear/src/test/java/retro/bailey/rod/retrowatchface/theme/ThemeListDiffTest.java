@@ -0,0 +1,149 @@
+package retro.bailey.rod.retrowatchface.theme;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import retro.bailey.rod.retrowatchface.config.ListThemeCatalog;
+import retro.bailey.rod.retrowatchface.config.PackedPanel;
+import retro.bailey.rod.retrowatchface.config.PackedTheme;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the steps reported by {@link ThemeListDiff}, applied in order to the old list, give
+ * the new list.
+ */
+public class ThemeListDiffTest {
+
+    private static final PackedPanel PANEL = new PackedPanel(0xFF000000, 0xFFFFFFFF, "fonts/Ultra.ttf", 20);
+
+    /**
+     * Applies each step to a copy of the old list, as RecyclerView would, and records them.
+     */
+    private static class Replayer implements ThemeListDiff.Callback {
+        final List<PackedTheme> list;
+        final List<PackedTheme> target;
+        final List<String> steps = new ArrayList<String>();
+
+        Replayer(List<PackedTheme> list, List<PackedTheme> target) {
+            this.list = new ArrayList<PackedTheme>(list);
+            this.target = target;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            steps.add("insert " + position + "+" + count);
+            for (int i = 0; i < count; i++) {
+                list.add(position + i, target.get(position + i));
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            steps.add("remove " + position + "+" + count);
+            for (int i = 0; i < count; i++) {
+                list.remove(position);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            steps.add("move " + fromPosition + ">" + toPosition);
+            list.add(toPosition, list.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position) {
+            steps.add("change " + position);
+            assertEquals(target.get(position).name, list.get(position).name);
+            list.set(position, target.get(position));
+        }
+    }
+
+    @Test
+    public void sameListNoSteps() throws Exception {
+        List<PackedTheme> themes = themes("A", "B", "C");
+        assertEquals(Collections.<String>emptyList(), replay(themes, themes("A", "B", "C")));
+    }
+
+    @Test
+    public void insertsCoalesced() throws Exception {
+        assertEquals(Arrays.asList("insert 1+2"), replay(themes("A", "D"), themes("A", "B", "C", "D")));
+        assertEquals(Arrays.asList("insert 2+2"), replay(themes("A", "B"), themes("A", "B", "C", "D")));
+    }
+
+    @Test
+    public void removalsCoalescedFromTheEnd() throws Exception {
+        assertEquals(Arrays.asList("remove 4+1", "remove 1+2"),
+                replay(themes("A", "B", "C", "D", "E"), themes("A", "D")));
+    }
+
+    @Test
+    public void moveReported() throws Exception {
+        assertEquals(Arrays.asList("move 2>0"), replay(themes("A", "B", "C"), themes("C", "A", "B")));
+    }
+
+    @Test
+    public void changedContentReported() throws Exception {
+        List<PackedTheme> next = themes("A", "B", "C");
+        next.set(1, new PackedTheme("B", 0xFF123456, PANEL, PANEL, PANEL, false));
+        assertEquals(Arrays.asList("change 1"), replay(themes("A", "B", "C"), next));
+    }
+
+    @Test
+    public void randomEditsReplayToNewList() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<PackedTheme> before = new ArrayList<PackedTheme>();
+            List<PackedTheme> after = new ArrayList<PackedTheme>();
+            for (int i = 0; i < 30; i++) {
+                PackedTheme theme = theme("T" + i);
+                if (random.nextInt(4) != 0) {
+                    before.add(theme);
+                }
+                if (random.nextInt(4) != 0) {
+                    after.add(random.nextInt(5) == 0
+                            ? new PackedTheme(theme.name, random.nextInt(), PANEL, PANEL, PANEL, false)
+                            : theme);
+                }
+            }
+            Collections.shuffle(after, random);
+
+            Replayer replayer = new Replayer(before, after);
+            ThemeListDiff.dispatch(new ListThemeCatalog(before), new ListThemeCatalog(after), replayer);
+            assertEquals(signatures(after), signatures(replayer.list));
+        }
+    }
+
+    private static List<String> replay(List<PackedTheme> before, List<PackedTheme> after) {
+        Replayer replayer = new Replayer(before, after);
+        ThemeListDiff.dispatch(new ListThemeCatalog(before), new ListThemeCatalog(after), replayer);
+        assertEquals(signatures(after), signatures(replayer.list));
+        return replayer.steps;
+    }
+
+    private static List<String> signatures(List<PackedTheme> themes) {
+        List<String> signatures = new ArrayList<String>();
+        for (PackedTheme theme : themes) {
+            signatures.add(theme.name + "#" + theme.contentHash());
+        }
+        return signatures;
+    }
+
+    private static List<PackedTheme> themes(String... names) {
+        List<PackedTheme> themes = new ArrayList<PackedTheme>();
+        for (String name : names) {
+            themes.add(theme(name));
+        }
+        return themes;
+    }
+
+    private static PackedTheme theme(String name) {
+        return new PackedTheme(name, 0xFF000000, PANEL, PANEL, PANEL, false);
+    }
+}